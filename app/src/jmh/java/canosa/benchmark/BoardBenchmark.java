@@ -0,0 +1,78 @@
+package canosa.benchmark;
+
+import canosa.game.Game;
+import canosa.game.PieceType;
+import canosa.game.board.BitBoard;
+import canosa.game.board.Board;
+import canosa.game.board.Cell;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Board queries the computer players lean on, each run over the whole position corpus per operation.
+ *
+ * @author aaron.mitchell
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    private Board[] boards;
+
+    @Setup
+    public void setUp(){
+        List<Game> positions = Positions.midGame(Positions.DEFAULT_COUNT);
+        boards = new Board[positions.size()];
+        for (int i = 0; i < boards.length; ++i)
+            boards[i] = positions.get(i).getBoard();
+    }
+
+    @Benchmark
+    public void getCell(Blackhole blackhole){
+        for (Board board: boards){
+            for (int y = 0; y < BitBoard.SIZE; ++y)
+                for (int x = 0; x < BitBoard.SIZE; ++x)
+                    blackhole.consume(board.getCell(x, y));
+        }
+    }
+
+    @Benchmark
+    public void getNeighboringCells(Blackhole blackhole){
+        for (Board board: boards){
+            for (Cell cell: board.getCells()){
+                blackhole.consume(board.getNeighboringCells(cell, false));
+                blackhole.consume(board.getNeighboringCells(cell, true));
+            }
+        }
+    }
+
+    @Benchmark
+    public void findClosestUncontrolledSailors(Blackhole blackhole){
+        for (Board board: boards){
+            blackhole.consume(board.findClosestUncontrolledSailors(board.getSirenCell(PieceType.GOLD_SIREN)));
+            blackhole.consume(board.findClosestUncontrolledSailors(board.getSirenCell(PieceType.SILVER_SIREN)));
+        }
+    }
+
+    @Benchmark
+    public void findFarthestControlledSailors(Blackhole blackhole){
+        for (Board board: boards){
+            blackhole.consume(board.findFarthestControlledSailors(board.getSirenCell(PieceType.GOLD_SIREN)));
+            blackhole.consume(board.findFarthestControlledSailors(board.getSirenCell(PieceType.SILVER_SIREN)));
+        }
+    }
+}
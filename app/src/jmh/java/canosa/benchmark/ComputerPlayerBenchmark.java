@@ -0,0 +1,58 @@
+package canosa.benchmark;
+
+import canosa.Model;
+import canosa.ai.EasyComputerPlayer;
+import canosa.game.Game;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * One EasyComputerPlayer decision for the player to move in each corpus position.  Logging is turned
+ * down to warnings so the console does not dominate the measurement.
+ *
+ * @author aaron.mitchell
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComputerPlayerBenchmark {
+    private Model[] models;
+    private EasyComputerPlayer[] players;
+
+    @Setup
+    public void setUp(){
+        Logger.getLogger("canosa").setLevel(Level.WARNING);
+        List<Game> positions = Positions.midGame(Positions.DEFAULT_COUNT);
+        models = new Model[positions.size()];
+        players = new EasyComputerPlayer[positions.size()];
+        for (int i = 0; i < positions.size(); ++i){
+            models[i] = new Model();
+            models[i].setGame(positions.get(i));
+            players[i] = new EasyComputerPlayer(models[i], null);
+            players[i].setSiren(positions.get(i).getCurrentPlayer());
+            players[i].getReady();
+        }
+    }
+
+    @Benchmark
+    public void easyChooseAction(Blackhole blackhole){
+        for (EasyComputerPlayer player: players)
+            blackhole.consume(player.chooseAction());
+    }
+}
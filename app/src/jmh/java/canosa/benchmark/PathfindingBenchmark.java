@@ -0,0 +1,81 @@
+package canosa.benchmark;
+
+import canosa.game.Game;
+import canosa.game.PieceType;
+import canosa.game.board.AStarAlgorithm;
+import canosa.game.board.Board;
+import canosa.game.board.Cell;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The paths EasyComputerPlayer asks for: every controlled sailor home to its island, and each siren to
+ * its closest uncontrolled sailor.
+ *
+ * @author aaron.mitchell
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathfindingBenchmark {
+    // Path requests as (board, from, to, mustMoveTowardEnd)
+    private List<Board> boards = new ArrayList<>();
+    private List<Cell> from = new ArrayList<>();
+    private List<Cell> to = new ArrayList<>();
+    private List<Boolean> towardEnd = new ArrayList<>();
+
+    private AStarAlgorithm astar = new AStarAlgorithm();
+    private int[] path = new int[64];
+
+    @Setup
+    public void setUp(){
+        for (Game game: Positions.midGame(Positions.DEFAULT_COUNT)){
+            Board board = game.getBoard();
+            for (PieceType siren: new PieceType[]{ PieceType.GOLD_SIREN, PieceType.SILVER_SIREN }){
+                Cell sirenCell = board.getSirenCell(siren);
+                for (Cell sailor: board.findFarthestControlledSailors(sirenCell))
+                    add(board, sailor, board.getIslandCell(siren), true);
+                List<Cell> uncontrolled = board.findClosestUncontrolledSailors(sirenCell);
+                if (!uncontrolled.isEmpty())
+                    add(board, sirenCell, uncontrolled.get(0), false);
+            }
+        }
+    }
+
+    private void add(Board board, Cell start, Cell end, boolean mustMoveTowardEnd){
+        boards.add(board);
+        from.add(start);
+        to.add(end);
+        towardEnd.add(mustMoveTowardEnd);
+    }
+
+    @Benchmark
+    public void findShortestPath(Blackhole blackhole){
+        for (int i = 0; i < boards.size(); ++i)
+            blackhole.consume(AStarAlgorithm.findShortestPath(from.get(i), to.get(i), boards.get(i), towardEnd.get(i)));
+    }
+
+    @Benchmark
+    public void findPath(Blackhole blackhole){
+        for (int i = 0; i < boards.size(); ++i){
+            Cell start = from.get(i);
+            boolean incDiagonal = start.getPiece().getType().isSiren();
+            blackhole.consume(astar.findPath(boards.get(i), start.getIndex(), to.get(i).getIndex(), incDiagonal, towardEnd.get(i), path));
+        }
+    }
+}
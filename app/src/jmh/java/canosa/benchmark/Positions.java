@@ -0,0 +1,69 @@
+package canosa.benchmark;
+
+import canosa.ai.Evaluation;
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.PieceType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Corpus of mid-game positions for the benchmarks.  Positions come from seeded games where both players
+ * mostly play the action the static evaluation likes best and sometimes a random one, which gives
+ * boards with sailors under control, on their way home and already scored, much like real play.
+ *
+ * @author aaron.mitchell
+ */
+public final class Positions {
+    public static final long SEED = 20211127L;
+    public static final int DEFAULT_COUNT = 64;
+
+    private static final int MIN_PLIES = 12;
+    private static final int MAX_PLIES = 40;
+    private static final double RANDOM_ACTION = 0.3;
+
+    /**
+     * @return count unfinished positions, the same ones on every run
+     */
+    public static List<Game> midGame(int count){
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Game> positions = new ArrayList<>(count);
+        int[] moves = new int[GameEngine.MAX_MOVES];
+        while (positions.size() < count){
+            Game game = new Game();
+            game.init();
+            int plies = MIN_PLIES + random.nextInt(MAX_PLIES - MIN_PLIES + 1);
+            for (int ply = 0; ply < plies && !GameEngine.isGameOver(game); ++ply){
+                int legal = GameEngine.generateLegalMoves(game, moves);
+                if (legal == 0)
+                    break;
+                game.makeMove(random.nextDouble() < RANDOM_ACTION? moves[random.nextInt(legal)]: greedy(game, moves, legal));
+            }
+            if (!GameEngine.isGameOver(game) && GameEngine.generateLegalMoves(game, moves) > 0)
+                positions.add(game.copy());
+        }
+        return positions;
+    }
+
+    // The move leaving the best position for the player making it
+    private static int greedy(Game game, int[] moves, int count){
+        PieceType player = game.getCurrentPlayer();
+        int best = moves[0];
+        int bestValue = Integer.MIN_VALUE;
+        for (int i = 0; i < count; ++i){
+            game.makeMove(moves[i]);
+            int value = Evaluation.evaluate(game);
+            if (game.getCurrentPlayer() != player)
+                value = -value;
+            game.unmakeMove();
+            if (value > bestValue){
+                bestValue = value;
+                best = moves[i];
+            }
+        }
+        return best;
+    }
+
+    private Positions(){}
+}
@@ -3,12 +3,30 @@
  */
 package canosa;
 
+import canosa.monitor.GameMetrics;
+import canosa.monitor.RingBufferEventSink;
 import canosa.view.View;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import javax.swing.SwingUtilities;
 
 public class App {
     public static void main(String[] args) {
+        GameMetrics.register();
         Model model = new Model();
+
+        // Game events go to the console from a background thread; whatever is left is written out at exit
+        RingBufferEventSink events = RingBufferEventSink.text(new OutputStreamWriter(System.err));
+        model.setEventSink(events);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                events.close();
+            }
+            catch (IOException e){
+                // Nowhere left to report it
+            }
+        }));
+
         View view = new View(model);
         new Controller(model, view);
 
@@ -1,20 +1,25 @@
 package canosa;
 
 import canosa.game.Action;
+import canosa.ai.ComputerPlayer;
 import canosa.ai.EasyComputerPlayer;
+import canosa.ai.HardComputerPlayer;
 import canosa.game.ActionType;
+import canosa.game.GameEngine;
 import canosa.game.Phase;
 import canosa.game.PhaseStep;
-import canosa.game.Piece;
 import canosa.game.PieceType;
 import canosa.game.board.Cell;
+import canosa.monitor.GameEventType;
+import canosa.monitor.GameMetrics;
+import canosa.monitor.ScoreEvent;
+import canosa.monitor.TurnEvent;
 import canosa.view.View;
 import canosa.view.ViewUtil;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.Optional;
 import java.util.logging.Logger;
 
 /**
@@ -48,6 +53,9 @@ import java.util.logging.Logger;
  *   - a max of 1 ring is returned to each Siren (if siren already has 3 rings on it, the ring is removed from game)
  *   - all remaining rings are removed from game
  * 
+ * The rules themselves are implemented by GameEngine; this class only turns mouse clicks into legal actions
+ * and drives the turn loop.
+ * 
  * @author aaron.mitchell
  */
 public class Controller {
@@ -55,19 +63,21 @@ public class Controller {
 
     private Model model;
     private View view;
+    private GameEngine engine;
 
-    private int actionsTaken = 0;
+    private TurnScheduler scheduler = new TurnScheduler();
 
     private Cell defendingSirenCell = null;
     private boolean isSelectingSirenDestCell = false;
+    private TurnEvent turnEvent = null;  // Flight Recorder event for the turn being played
 
     public Controller(Model model, View view){
         this.model = model;
         this.view = view;
+        this.engine = new GameEngine(model.getGame());
 
-        // Create an Easy opponent to play the silver siren
-        model.setComputerPlayer(new EasyComputerPlayer(model, view));
-        model.getComputerPlayer().setSiren(PieceType.SILVER_SIREN);
+        // The computer plays the silver siren, at the level chosen on the main menu
+        chooseOpponent();
 
         view.getMainmenu().getBtnExit().addActionListener(new ActionListener(){
             @Override
@@ -79,13 +89,15 @@ public class Controller {
         view.getMainmenu().getBtnPlay().addActionListener(new ActionListener(){
             @Override
             public void actionPerformed(ActionEvent ae) {
+                newGame();
+                chooseOpponent();
                 view.showGame();
                 run();
             }
         });
 
         // To move a siren, player click on their siren and click on adjacent space
-        // TODO If attacking opponent siren, click on player siren, then on opponent siren, then select destination space
+        // If attacking opponent siren, click on player siren, then on opponent siren, then select destination space
         // To move a sailor, player click on sailor they control and click on orthogonally-adjacent space
         // To transfer ring from siren to sailor, player click on their siren and then click on adjacent sailor
         // To transfer ring from sailor to siren, player click on sailor and then click on adjacent siren
@@ -96,6 +108,9 @@ public class Controller {
             public void mouseClicked(MouseEvent e) {
                 super.mouseClicked(e);
 
+                if (model.getGame().getPhase() != Phase.PLAY || isComputerTurn())
+                    return;
+
                 Cell newSelectedCell = view.getGamePanel().getSelectedCell(e.getX(), e.getY());
                 //logger.info("New selected cell: " + newSelectedCell);
 
@@ -103,128 +118,59 @@ public class Controller {
                 if (newSelectedCell == null)
                     return;
 
-                PieceType currentPlayer = model.getGame().getCurrentPlayer();
-
                 if (isSelectingSirenDestCell){
-                    if (newSelectedCell.getPiece() != null || newSelectedCell.getIslandOwner() != null){
-                        logger.info("Selected cell already has piece or is island");
+                    Action attack = findLegalAction(model.getSelectedCell(), defendingSirenCell, newSelectedCell);
+                    if (attack == null){
+                        logger.info("Selected cell cannot take the bumped siren");
                         return;
                     }
-                    //newSelectedCell.setPiece(defendingSirenCell.getPiece());
-                    //defendingSirenCell.setPiece(model.getSelectedCell().getPiece());
-                    //model.getSelectedCell().setPiece(null);
-                    executeAttackOpponent(new Action(ActionType.ATTACK_OPPONENT, model.getSelectedCell(), defendingSirenCell, newSelectedCell));
-                    actionsTaken += 1;
                     model.setSelectedCell(null);
                     defendingSirenCell = null;
                     isSelectingSirenDestCell = false;
+                    executeAction(attack);
                     run();
                     return;
                 }
 
                 // If user selected same cell, deselect the selected cell
                 if (model.getSelectedCell() == newSelectedCell){
-                    model.setSelectedCell(null);
+                    selectCell(null);
                     logger.info("Deselected cell");
-                    view.getGamePanel().refresh();
                     return;
                 }
 
                 // If no cell was selected, select this new one
-                if (model.getSelectedCell() == null && newSelectedCell.getPiece() != null){
-                    model.setSelectedCell(newSelectedCell);
-                    logger.info("Set new selected cell to " + model.getSelectedCell());
-                    view.getGamePanel().refresh();
+                if (model.getSelectedCell() == null){
+                    if (newSelectedCell.getPiece() != null){
+                        selectCell(newSelectedCell);
+                        logger.info("Set new selected cell to " + model.getSelectedCell());
+                    }
                     return;
                 }
 
-                if (model.getSelectedCell() != null && model.getSelectedCell().getPiece() != null){
-
-                    // If player selected their own siren first
-                    if (model.getSelectedCell().getPiece().getType() == currentPlayer){
-
-                        // If the newly selected cell is not adjacent to the originally selected cell, set it as the newly selected cell
-                        if (!model.getGame().getBoard().isAdjacent(model.getSelectedCell(), newSelectedCell)){
-                            if (newSelectedCell.getPiece() != null){
-                                model.setSelectedCell(newSelectedCell);
-                                logger.info("Selected cell " + model.getSelectedCell());
-                                view.getGamePanel().refresh();
-                            }
-                            return;
-                        }
-
-                        // If player selected empty adjacent space = Move siren
-                        if (newSelectedCell.getPiece() == null && newSelectedCell.getIslandOwner() == null){
-                            executeMoveSiren(new Action(ActionType.MOVE_SIREN, model.getSelectedCell(), newSelectedCell));
-                            model.setSelectedCell(null);
-                            actionsTaken += 1;
-                            run();
-                            return;
-                        }
-
-                        // If player selected enemy siren and has more rings, bump it
-                        if (newSelectedCell.getPiece() != null){
-                            if (newSelectedCell.getPiece().getType().isSiren()){
-                                if (model.getSelectedCell().getPiece().getRings().size() > newSelectedCell.getPiece().getRings().size()){
-                                    // Let user select destination cell
-                                    logger.info("Siren at " + model.getSelectedCell() + " attacking siren at " + newSelectedCell);
-                                    isSelectingSirenDestCell = true;
-                                    defendingSirenCell = newSelectedCell;
-                                    view.getGamePanel().refresh();
-                                    return;
-                                }
-                            }
-                            else {
-                                // Newly selected piece is sailor
-                                if (model.getSelectedCell().getPiece().getRings().size() > 0 && newSelectedCell.getPiece().getRings().size() < 3){
-                                    // Transfer a ring to the sailor
-                                    //PieceType ring = model.getSelectedCell().getPiece().getRings().pop();
-                                    //newSelectedCell.getPiece().getRings().push(ring);
-                                    executeTransferRingToSailor(new Action(ActionType.TRANSFER_RING_TO_SAILOR, model.getSelectedCell(), newSelectedCell));
-                                    actionsTaken += 1;
-                                    model.setSelectedCell(null);
-                                    run();
-                                    return;
-                                }
-                            }
-                        }
+                // The selected cell and the new cell describe an action, see if the rules allow it
+                Action action = findLegalAction(model.getSelectedCell(), newSelectedCell, null);
+                if (action == null){
+                    // Not a legal action, so treat the click as selecting another piece
+                    if (newSelectedCell.getPiece() != null){
+                        selectCell(newSelectedCell);
+                        logger.info("Selected cell " + model.getSelectedCell());
                     }
-                    // If player selected a sailor
-                    else if (!model.getSelectedCell().getPiece().getType().isSiren()){
-
-                        // If player selected empty adjacent space and controlled by current player = Move sailor
-                        // TODO Sailor can only move TOWARD the controlling siren's island
-                        if (newSelectedCell.getPiece() == null && model.getSelectedCell().getPiece().peekTopRing() == currentPlayer){
-                            // If the newly selected cell is not orthogonally adjacent to the originally selected cell, set it as the newly selected cell
-                            if (model.getGame().getBoard().isOrthogonallyAdjacent(model.getSelectedCell(), newSelectedCell) && 
-                                    model.getGame().getBoard().isCloserToIsland(model.getSelectedCell(), newSelectedCell, model.getSelectedCell().getPiece().peekTopRing())){
-                                if (newSelectedCell.getIslandOwner() == null || newSelectedCell.getIslandOwner() == currentPlayer){
-                                    //newSelectedCell.setPiece(model.getSelectedCell().getPiece());
-                                    //model.getSelectedCell().setPiece(null);
-                                    executeMoveSailor(new Action(ActionType.MOVE_SAILOR, model.getSelectedCell(), newSelectedCell));
-                                    actionsTaken += 1;
-                                    model.setSelectedCell(null);
-                                    run();
-                                    return;
-                                }
-                            }
-                        }
+                    return;
+                }
 
-                        // If player selected own siren and top ring belongs to current player, transfer ring to siren
-                        if (newSelectedCell.getPiece() != null && newSelectedCell.getPiece().getType() == currentPlayer){
-                            if (newSelectedCell.getPiece().getRings().size() < 3 && model.getSelectedCell().getPiece().peekTopRing() == currentPlayer){
-                                // Move top ring to siren
-                                //PieceType ring = model.getSelectedCell().getPiece().popRing();
-                                //newSelectedCell.getPiece().pushRing(ring);
-                                executeTransferRingToSiren(new Action(ActionType.TRANSFER_RING_TO_SIREN, model.getSelectedCell(), newSelectedCell));
-                                actionsTaken += 1;
-                                model.setSelectedCell(null);
-                                run();
-                                return;
-                            }
-                        }
-                    }
+                if (action.getType() == ActionType.ATTACK_OPPONENT){
+                    // Let user select destination cell
+                    logger.info("Siren at " + model.getSelectedCell() + " attacking siren at " + newSelectedCell);
+                    isSelectingSirenDestCell = true;
+                    defendingSirenCell = newSelectedCell;
+                    view.getGamePanel().refreshCell(newSelectedCell);
+                    return;
                 }
+
+                model.setSelectedCell(null);
+                executeAction(action);
+                run();
             }
         });
     }
@@ -234,13 +180,13 @@ public class Controller {
             return;
 
         while (model.getGame().getPhase() != Phase.GAMEOVER){
-            view.getGamePanel().refresh();
             checkGameOver();
             switch(model.getGame().getPhase()){
                 case SETUP: {
                     switch(model.getGame().getPhaseStep()){
                         case START_PHASE: {
                             model.getGame().init();
+                            view.getGamePanel().refresh();
                             model.getGame().setPhaseStep(PhaseStep.END_PHASE);
                             break;
                         }
@@ -257,36 +203,32 @@ public class Controller {
                 case PLAY: {
                     switch(model.getGame().getPhaseStep()){
                         case START_PHASE: {
-                            actionsTaken = 0;
                             model.getGame().setPhaseStep(PhaseStep.PLAY_ACTIONS);
-                            logger.info("Player's Turn: " + model.getGame().getCurrentPlayer());
+                            model.getEventSink().record(GameEventType.TURN_START, model.getGame().getCurrentPlayer());
+                            GameMetrics.get().recordTurn();
+                            turnEvent = new TurnEvent();
+                            turnEvent.begin();
                             break;
                         }
                         case PLAY_ACTIONS: {
-                            scoreSailors();
-
-                            if (actionsTaken >= 2){
-                                model.getGame().setPhaseStep(PhaseStep.END_PHASE);
-                                break;
+                            // The computer thinks in the background and resumes the loop once it has chosen
+                            if (isComputerTurn() && !scheduler.isThinking()){
+                                model.getComputerPlayer().stopPondering();
+                                model.setComputerThinking(true);
+                                view.getGamePanel().refreshThinking();
+                                scheduler.schedule(model.getComputerPlayer(), model.getGame(), this::computerActionChosen);
                             }
-
-                            if (model.getComputerPlayer() != null && model.getComputerPlayer().getSiren() == model.getGame().getCurrentPlayer()){
-                                Action action = model.getComputerPlayer().chooseAction();
-                                executeAction(action);
-                                actionsTaken += 1;
-                                break;
+                            else if (!isComputerTurn() && model.getComputerPlayer() != null){
+                                // Let the computer think while the player does
+                                model.getComputerPlayer().startPondering();
                             }
 
                             // Wait for player to take action
                             return;
                         }
                         case END_PHASE: {
-                            // Switch player
-                            model.getGame().setCurrentPlayer(
-                                    model.getGame().getCurrentPlayer() == PieceType.GOLD_SIREN? 
-                                            PieceType.SILVER_SIREN: 
-                                            PieceType.GOLD_SIREN);
-                            // Restart Phase
+                            // The engine passes the turn, just restart the phase for the new player
+                            endTurnEvent();
                             model.getGame().setPhaseStep(PhaseStep.START_PHASE);
                             break;
                         }
@@ -297,115 +239,131 @@ public class Controller {
         }
     }
 
-    private void checkGameOver(){
-        boolean goldPlayerWins = false;
-        boolean silverPlayerWins = false;
-        goldPlayerWins   = model.getGame().getGoldSailorsScored() >= 4;
-        silverPlayerWins = model.getGame().getSilverSailorsScored() >= 4;
+    /**
+     * Drop any decision the computer is making and set the game up to start again
+     */
+    private void newGame(){
+        scheduler.cancel();
+        if (model.getComputerPlayer() != null)
+            model.getComputerPlayer().stopPondering();
+        model.setComputerThinking(false);
+        model.setSelectedCell(null);
+        defendingSirenCell = null;
+        isSelectingSirenDestCell = false;
+        turnEvent = null;
+        model.getGame().setPhase(Phase.SETUP);
+        model.getGame().setPhaseStep(PhaseStep.START_PHASE);
+    }
 
-        // TODO Check if player trapped
+    /**
+     * Set up the opponent chosen on the main menu, keeping the last one if it is the same kind
+     */
+    private void chooseOpponent(){
+        boolean hard = view.getMainmenu().getChkHard().isSelected();
+        ComputerPlayer current = model.getComputerPlayer();
+        if (current != null && (current instanceof HardComputerPlayer) == hard)
+            return;
+        if (current != null)
+            current.shutdown();
+        ComputerPlayer player = hard? new HardComputerPlayer(model, view): new EasyComputerPlayer(model, view);
+        player.setSiren(PieceType.SILVER_SIREN);
+        model.setComputerPlayer(player);
+    }
 
-        if (goldPlayerWins || silverPlayerWins){
-            model.getGame().setPhase(Phase.GAMEOVER);
-            ViewUtil.popupNotify("Game Over: " + (goldPlayerWins? "Gold": "Silver") + " player wins!");
+    /**
+     * Commit the Flight Recorder event of the turn just played, if a recording wants it
+     */
+    private void endTurnEvent(){
+        if (turnEvent == null)
+            return;
+        turnEvent.end();
+        if (turnEvent.shouldCommit()){
+            PieceType player = model.getGame().getOpponent();  // The turn has passed already
+            turnEvent.turn = model.getGame().getTurn();
+            turnEvent.player = player.name();
+            turnEvent.computer = model.getComputerPlayer() != null && model.getComputerPlayer().getSiren() == player;
+            turnEvent.commit();
         }
+        turnEvent = null;
     }
 
-    private void scoreSailors(){
-        Cell goldCell   = model.getGame().getBoard().getIslandCell(PieceType.GOLD_SIREN);
-        Cell silverCell = model.getGame().getBoard().getIslandCell(PieceType.SILVER_SIREN);
-        scoreSailor(goldCell);
-        scoreSailor(silverCell);
+    private void computerActionChosen(Action action){
+        model.setComputerThinking(false);
+        if (action == null){
+            // Only a trapped computer has nothing to play; checkGameOver normally catches it first
+            logger.warning("Computer player has no action");
+            view.getGamePanel().refreshThinking();
+            gameOver(model.getGame().getOpponent());
+            return;
+        }
+        executeAction(action);
+        run();
     }
 
-    private void scoreSailor(Cell cell){
-        if (cell.getPiece() != null && cell.getPiece().getType() == PieceType.SAILOR){
-            logger.info("Scoring sailor");
-            // Score sailor
-            if (cell.getPiece().peekTopRing() == PieceType.GOLD_SIREN)
-                model.getGame().adjGoldSailorsScored(1);
-            else
-                model.getGame().adjSilverSailorsScored(1);
-            // Return 1 ring to each player, the rest are lost
-            Optional<PieceType> goldRing =
-                    cell.getPiece().getRings().stream().filter(ring -> ring == PieceType.GOLD_SIREN).findFirst();
-            Optional<PieceType> silverRing =
-                    cell.getPiece().getRings().stream().filter(ring -> ring == PieceType.SILVER_SIREN).findFirst();
-            if (goldRing.isPresent()){
-                Piece goldSiren = model.getGame().getBoard().findPieceWithType(PieceType.GOLD_SIREN);
-                goldSiren.pushRing(goldRing.get());
-            }
-            if (silverRing.isPresent()){
-                Piece silverSiren = model.getGame().getBoard().findPieceWithType(PieceType.SILVER_SIREN);
-                silverSiren.pushRing(silverRing.get());
-            }
-            cell.setPiece(null);
-        }
+    /**
+     * Select a cell, or none, repainting the cells whose highlight changed
+     */
+    private void selectCell(Cell cell){
+        view.getGamePanel().refreshCell(model.getSelectedCell());
+        model.setSelectedCell(cell);
+        view.getGamePanel().refreshCell(cell);
     }
 
-    protected void executeAction(Action action){
-        switch(action.getType()){
-            case MOVE_SIREN:{
-                executeMoveSiren(action);
-                break;
-            }
-            case ATTACK_OPPONENT: {
-                executeAttackOpponent(action);
-                break;
-            }
-            case TRANSFER_RING_TO_SAILOR: {
-                executeTransferRingToSailor(action);
-                break;
-            }
-            case TRANSFER_RING_TO_SIREN: {
-                executeTransferRingToSiren(action);
-                break;
-            }
-            case MOVE_SAILOR:{
-                executeMoveSailor(action);
-                break;
+    private boolean isComputerTurn(){
+        return model.getComputerPlayer() != null && model.getComputerPlayer().getSiren() == model.getGame().getCurrentPlayer();
+    }
+
+    private Action findLegalAction(Cell source, Cell target, Cell bumpTarget){
+        for (Action action: engine.getLegalActions()){
+            if (action.getSourceCell() == source && action.getTargetCell() == target
+                    && (bumpTarget == null || action.getBumpTargetCell() == bumpTarget)){
+                return action;
             }
         }
-        view.getGamePanel().refresh();
+        return null;
     }
 
-    protected void executeMoveSiren(Action action){
-        Cell source = action.getSourceCell();
-        Cell target = action.getTargetCell();
-        logger.info("Moving siren from " + source + " to " + target);
-        target.setPiece(source.getPiece());
-        source.setPiece(null);
-    }
+    private void checkGameOver(){
+        PieceType winner = engine.getWinner();
 
-    protected void executeAttackOpponent(Action action){
-        Cell source = action.getSourceCell();
-        Cell target = action.getTargetCell();
-        Cell bumpTarget = action.getBumpTargetCell();
-        logger.info("Bumping Siren at " + target + " to " + bumpTarget);
-        bumpTarget.setPiece(target.getPiece());
-        target.setPiece(source.getPiece());
-        source.setPiece(null);
-    }
+        // A player who cannot take any action is trapped and loses
+        if (winner == null && model.getGame().getPhase() == Phase.PLAY && !engine.hasLegalMove())
+            winner = model.getGame().getOpponent();
 
-    protected void executeTransferRingToSailor(Action action){
-        Cell source = action.getSourceCell();
-        Cell target = action.getTargetCell();
-        logger.info("Transferring ring from siren to sailor at " + target);
-        target.getPiece().pushRing(source.getPiece().popRing());
+        if (winner != null)
+            gameOver(winner);
     }
 
-    protected void executeTransferRingToSiren(Action action){
-        Cell source = action.getSourceCell();
-        Cell target = action.getTargetCell();
-        logger.info("Transferring ring from sailor at " + source + " to siren at " + target);
-        target.getPiece().pushRing(source.getPiece().popRing());
+    private void gameOver(PieceType winner){
+        model.getGame().setPhase(Phase.GAMEOVER);
+        ViewUtil.popupNotify("Game Over: " + (winner == PieceType.GOLD_SIREN? "Gold": "Silver") + " player wins!");
     }
 
-    protected void executeMoveSailor(Action action){
-        Cell source = action.getSourceCell();
+    protected void executeAction(Action action){
         Cell target = action.getTargetCell();
-        logger.info("Moving sailor at " + source + " to " + target);
-        target.setPiece(source.getPiece());
-        source.setPiece(null);
+        PieceType player = model.getGame().getCurrentPlayer();
+        boolean scoring = action.getType() == ActionType.MOVE_SAILOR && target.getIslandOwner() != null;
+        Cell bumpTarget = action.getBumpTargetCell();
+        model.getEventSink().record(GameEventType.of(action.getType()), player, action.getSourceCell().getIndex(),
+                target.getIndex(), bumpTarget == null? -1: bumpTarget.getIndex());
+        if (scoring)
+            model.getEventSink().record(GameEventType.SCORE_SAILOR, player, action.getSourceCell().getIndex());
+
+        if (model.getComputerPlayer() != null)
+            model.getComputerPlayer().stopPondering();
+        engine.apply(action);
+        GameMetrics.get().recordAction(scoring);
+        if (scoring){
+            ScoreEvent event = new ScoreEvent();
+            if (event.shouldCommit()){
+                event.player = player.name();
+                event.goldScored = model.getGame().getGoldSailorsScored();
+                event.silverScored = model.getGame().getSilverSailorsScored();
+                event.commit();
+            }
+        }
+        if (model.getGame().getCurrentPlayer() != player)
+            model.getGame().setPhaseStep(PhaseStep.END_PHASE);
+        view.getGamePanel().refresh(action);
     }
 }
@@ -3,6 +3,7 @@ package canosa;
 import canosa.ai.ComputerPlayer;
 import canosa.game.Game;
 import canosa.game.board.Cell;
+import canosa.monitor.GameEventSink;
 
 /**
  *
@@ -12,6 +13,8 @@ public class Model {
     private Game game;
     private Cell selectedCell;
     private ComputerPlayer computerPlayer;
+    private boolean computerThinking = false;
+    private GameEventSink eventSink = GameEventSink.NONE;
 
     public Model(){
         game = new Game();
@@ -40,4 +43,23 @@ public class Model {
     public void setComputerPlayer(ComputerPlayer computerPlayer) {
         this.computerPlayer = computerPlayer;
     }
+
+    public boolean isComputerThinking() {
+        return computerThinking;
+    }
+
+    public void setComputerThinking(boolean computerThinking) {
+        this.computerThinking = computerThinking;
+    }
+
+    public GameEventSink getEventSink() {
+        return eventSink;
+    }
+
+    /**
+     * @param eventSink where the controller and computer players record what they do, NONE to drop it
+     */
+    public void setEventSink(GameEventSink eventSink) {
+        this.eventSink = eventSink;
+    }
 }
@@ -0,0 +1,366 @@
+package canosa;
+
+import canosa.ai.ComputerPlayer;
+import canosa.ai.EasyComputerPlayer;
+import canosa.ai.HardComputerPlayer;
+import canosa.ai.MctsComputerPlayer;
+import canosa.ai.OpeningBook;
+import canosa.ai.Tablebase;
+import canosa.ai.TranspositionTable;
+import canosa.game.Action;
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.Move;
+import canosa.game.PieceType;
+import canosa.game.record.GameRecord;
+import canosa.game.record.GameRecordWriter;
+import canosa.monitor.GameEventSink;
+import canosa.monitor.GameEventType;
+import canosa.monitor.GameMetrics;
+import canosa.monitor.RingBufferEventSink;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless AI-vs-AI tournament, a command-line entry point next to App that never touches AWT.  Plays
+ * a number of seeded games between two computer players across a pool of worker threads; the players
+ * swap colours every game.  Each game starts with a few random opening actions drawn from its seed so
+ * the games differ even between deterministic players.
+ *
+ * Writes one CSV row per game and prints a summary: win rates, games/sec and per-action latency
+ * percentiles for each player.
+ *
+ * Usage: Tournament [--players easy,hard] [--games 1000] [--workers N] [--seed 1] [--opening 2]
+ *                   [--time 100] [--max-actions 400] [--out tournament.csv] [--tablebase endgame.tb]
+ *                   [--book opening.book] [--record games.cgr] [--events games.events]
+ *
+ * Players are easy, hard or mcts, optionally with a per-action time budget in milliseconds: hard:250.
+ * With a tablebase (see TablebaseGenerator) the hard and mcts players play the last race of a game from
+ * it once few enough rings are left, and with an opening book (see OpeningBookBuilder) their first
+ * actions from the book.  With --record every game is also written to a game record file (see
+ * GameRecordWriter), and with --events every action and computer player step goes to a binary event
+ * file (see RingBufferEventSink).  Decision and action counts are published over JMX while the
+ * tournament runs (see GameMetrics).
+ *
+ * @author aaron.mitchell
+ */
+public class Tournament {
+    private static final String USAGE = "Usage: Tournament [--players easy,hard] [--games 1000] [--workers N] [--seed 1] [--opening 2]\n"
+            + "                  [--time 100] [--max-actions 400] [--out tournament.csv] [--tablebase endgame.tb]\n"
+            + "                  [--book opening.book] [--record games.cgr] [--events games.events]";
+
+    private String[] players = { "easy", "hard" };
+    private int games = 1000;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private long seed = 1L;
+    private int openingActions = 2;
+    private long defaultTime = 100;
+    private int maxActions = 400;
+    private Path output = Paths.get("tournament.csv");
+    private Tablebase tablebase = null;
+    private OpeningBook openingBook = null;
+    private Path recordPath = null;
+    private Path eventsPath = null;
+    private GameEventSink events = GameEventSink.NONE;
+
+    // Results of the last run
+    private int[] wins = new int[2];
+    private int draws = 0;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Logger.getLogger("canosa").setLevel(Level.WARNING);
+
+        Tournament tournament;
+        try {
+            tournament = parse(args);
+        }
+        catch (IllegalArgumentException e){
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        GameMetrics.register();
+        tournament.run();
+    }
+
+    /**
+     * @throws IllegalArgumentException for an unknown option or a missing or malformed value
+     */
+    static Tournament parse(String[] args) throws IOException {
+        Tournament tournament = new Tournament();
+        for (int i = 0; i < args.length; ++i){
+            String value = i + 1 < args.length? args[i + 1]: null;
+            if (value == null)
+                throw new IllegalArgumentException("Option " + args[i] + " needs a value");
+            try {
+                switch (args[i]){
+                    case "--players":     tournament.players = value.split(","); break;
+                    case "--games":       tournament.games = Integer.parseInt(value); break;
+                    case "--workers":     tournament.workers = Integer.parseInt(value); break;
+                    case "--seed":        tournament.seed = Long.parseLong(value); break;
+                    case "--opening":     tournament.openingActions = Integer.parseInt(value); break;
+                    case "--time":        tournament.defaultTime = Long.parseLong(value); break;
+                    case "--max-actions": tournament.maxActions = Integer.parseInt(value); break;
+                    case "--out":         tournament.output = Paths.get(value); break;
+                    case "--tablebase":   tournament.tablebase = Tablebase.open(Paths.get(value)); break;
+                    case "--book":        tournament.openingBook = OpeningBook.open(Paths.get(value)); break;
+                    case "--record":      tournament.recordPath = Paths.get(value); break;
+                    case "--events":      tournament.eventsPath = Paths.get(value); break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            catch (NumberFormatException e){
+                throw new IllegalArgumentException("Bad value " + value + " for " + args[i]);
+            }
+            ++i;
+        }
+        if (tournament.players.length != 2)
+            throw new IllegalArgumentException("--players takes two players, e.g. easy,hard");
+        return tournament;
+    }
+
+    public void run() throws IOException, InterruptedException {
+        RingBufferEventSink eventFile = null;
+        if (eventsPath != null){
+            eventFile = RingBufferEventSink.binary(FileChannel.open(eventsPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), 64 * 1024);
+            events = eventFile;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<GameResult>> futures = new ArrayList<>(games);
+        long start = System.nanoTime();
+        for (int i = 0; i < games; ++i){
+            int index = i;
+            futures.add(pool.submit(() -> play(index)));
+        }
+
+        Stats[] stats = { new Stats(), new Stats() };
+        draws = 0;
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(output));
+                GameRecordWriter records = recordPath == null? null: GameRecordWriter.create(recordPath)){
+            out.println("game,seed,gold,silver,winner,reason,actions,gold_scored,silver_scored,millis");
+            for (Future<GameResult> future: futures){
+                GameResult result = future.get();
+                out.println(result.toCsv());
+                if (records != null)
+                    records.write(result.toRecord());
+                for (int p = 0; p < 2; ++p)
+                    stats[p].latencies.add(result.latencies[p]);
+                if (result.winner < 0)
+                    ++draws;
+                else
+                    ++stats[result.winner].wins;
+            }
+        }
+        catch (ExecutionException e){
+            throw new IllegalStateException("Game failed", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+            if (eventFile != null){
+                eventFile.close();
+                events = GameEventSink.NONE;
+                if (eventFile.getDropped() > 0)
+                    System.out.printf("%d game events dropped, the event file could not keep up%n", eventFile.getDropped());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        for (int p = 0; p < 2; ++p)
+            wins[p] = stats[p].wins;
+
+        System.out.printf("%d games in %.1f s (%.2f games/sec) on %d workers, results in %s%n",
+                games, seconds, games / seconds, workers, output);
+        System.out.printf("Draws: %d (%.1f%%)%n", draws, 100.0 * draws / games);
+        for (int p = 0; p < 2; ++p){
+            long[] latencies = stats[p].sortedLatencies();
+            System.out.printf("%-10s wins %5d (%5.1f%%)  action latency ms: p50 %.2f  p90 %.2f  p99 %.2f  max %.2f%n",
+                    players[p], stats[p].wins, 100.0 * stats[p].wins / games,
+                    percentile(latencies, 50) / 1e6, percentile(latencies, 90) / 1e6,
+                    percentile(latencies, 99) / 1e6, percentile(latencies, 100) / 1e6);
+        }
+    }
+
+    /**
+     * @return games the player (0 or 1, in --players order) won in the last run
+     */
+    public int getWins(int player){
+        return wins[player];
+    }
+
+    public int getDraws(){
+        return draws;
+    }
+
+    /**
+     * Play one game; player 0 has gold in even games and silver in odd ones
+     */
+    private GameResult play(int index){
+        GameResult result = new GameResult();
+        result.index = index;
+        result.seed = seed + index;
+        result.goldPlayer = index % 2;
+
+        Model model = new Model();
+        model.setEventSink(events);
+        Game game = model.getGame();
+        game.init();
+        ComputerPlayer[] sides = new ComputerPlayer[2];
+        for (int p = 0; p < 2; ++p){
+            sides[p] = createPlayer(players[p], model, result.seed);
+            sides[p].setSiren(p == result.goldPlayer? PieceType.GOLD_SIREN: PieceType.SILVER_SIREN);
+            sides[p].getReady();
+        }
+
+        SplittableRandom random = new SplittableRandom(result.seed);
+        int[] moves = new int[GameEngine.MAX_MOVES];
+        int[] played = new int[openingActions + maxActions];
+        int playedCount = 0;
+        for (int i = 0; i < openingActions; ++i){
+            int count = GameEngine.generateLegalMoves(game, moves);
+            if (count == 0)
+                break;
+            played[playedCount] = moves[random.nextInt(count)];
+            game.makeMove(played[playedCount++]);
+        }
+
+        long[][] latencies = { new long[maxActions], new long[maxActions] };
+        int[] actions = new int[2];
+        long start = System.nanoTime();
+        try {
+            while (GameEngine.getWinner(game) == null && result.actions < maxActions){
+                int p = game.getCurrentPlayer() == PieceType.GOLD_SIREN? result.goldPlayer: 1 - result.goldPlayer;
+                long before = System.nanoTime();
+                Action action = sides[p].chooseAction();
+                latencies[p][actions[p]++] = System.nanoTime() - before;
+                if (action == null){
+                    result.winner = 1 - p;
+                    result.reason = "trapped";
+                    break;
+                }
+                if (!GameEngine.isLegal(game, action)){
+                    result.winner = 1 - p;
+                    result.reason = "illegal";
+                    break;
+                }
+                int scored = game.getGoldSailorsScored() + game.getSilverSailorsScored();
+                played[playedCount] = Move.of(action);
+                events.record(GameEventType.of(action.getType()), game.getCurrentPlayer(), Move.source(played[playedCount]),
+                        Move.target(played[playedCount]), Move.bumpTarget(played[playedCount]));
+                game.makeMove(played[playedCount++]);
+                GameMetrics.get().recordAction(game.getGoldSailorsScored() + game.getSilverSailorsScored() > scored);
+                ++result.actions;
+            }
+            result.millis = (System.nanoTime() - start) / 1_000_000;
+        }
+        finally {
+            for (ComputerPlayer side: sides)
+                side.shutdown();
+        }
+
+        PieceType winner = GameEngine.getWinner(game);
+        if (winner != null){
+            result.winner = winner == PieceType.GOLD_SIREN? result.goldPlayer: 1 - result.goldPlayer;
+            result.reason = "scored";
+        }
+        else if (result.reason == null){
+            result.reason = "max-actions";
+        }
+        result.goldScored = game.getGoldSailorsScored();
+        result.silverScored = game.getSilverSailorsScored();
+        for (int p = 0; p < 2; ++p)
+            result.latencies[p] = Arrays.copyOf(latencies[p], actions[p]);
+        result.moves = Arrays.copyOf(played, playedCount);
+        return result;
+    }
+
+    private ComputerPlayer createPlayer(String spec, Model model, long seed){
+        String[] parts = spec.split(":");
+        long time = parts.length > 1? Long.parseLong(parts[1]): defaultTime;
+        switch (parts[0]){
+            case "easy":
+                return new EasyComputerPlayer(model, null);
+            case "hard": {
+                HardComputerPlayer player = new HardComputerPlayer(model, null);
+                player.setTimeBudget(time);
+                player.setTranspositionTable(new TranspositionTable(4));
+                player.setTablebase(tablebase);
+                player.setOpeningBook(openingBook);
+                return player;
+            }
+            case "mcts": {
+                // The tournament already keeps every core busy with its own games
+                MctsComputerPlayer player = new MctsComputerPlayer(model, null);
+                player.setTimeBudget(time);
+                player.setThreads(1);
+                player.setSeed(seed);
+                player.setTablebase(tablebase);
+                player.setOpeningBook(openingBook);
+                return player;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown player " + spec + ", expected easy, hard or mcts");
+        }
+    }
+
+    private static long percentile(long[] sorted, double percentile){
+        if (sorted.length == 0)
+            return 0L;
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private class GameResult {
+        int index;
+        long seed;
+        int goldPlayer;
+        int winner = -1;  // Player index, or -1 for a draw
+        String reason;
+        int actions = 0;
+        int goldScored;
+        int silverScored;
+        long millis;
+        long[][] latencies = new long[2][];
+        int[] moves;
+
+        String toCsv(){
+            return index + "," + seed + "," + players[goldPlayer] + "," + players[1 - goldPlayer] + ","
+                    + (winner < 0? "draw": players[winner]) + "," + reason + "," + actions + ","
+                    + goldScored + "," + silverScored + "," + millis;
+        }
+
+        GameRecord toRecord(){
+            GameRecord.Result outcome = winner < 0? GameRecord.Result.DRAW
+                    : winner == goldPlayer? GameRecord.Result.GOLD_WON: GameRecord.Result.SILVER_WON;
+            return new GameRecord(players[goldPlayer], players[1 - goldPlayer], seed, outcome, moves);
+        }
+    }
+
+    private static class Stats {
+        int wins = 0;
+        List<long[]> latencies = new ArrayList<>();
+
+        long[] sortedLatencies(){
+            long[] all = latencies.stream().flatMapToLong(Arrays::stream).toArray();
+            Arrays.sort(all);
+            return all;
+        }
+    }
+}
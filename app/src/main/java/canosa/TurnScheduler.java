@@ -0,0 +1,89 @@
+package canosa;
+
+import canosa.ai.ComputerPlayer;
+import canosa.game.Action;
+import canosa.game.Game;
+import canosa.game.Move;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs computer players' decisions on a background thread so the Swing event thread never waits on a
+ * search.  The player thinks about a copy of the game taken when the decision is scheduled, so the
+ * game itself is only ever touched on the event thread, and the chosen action is handed back on the
+ * event thread, on the game's own board.  Cancelling (e.g. when a new game starts) stops the player
+ * and drops the decision being made.
+ *
+ * All methods are called on the event thread.
+ *
+ * @author aaron.mitchell
+ */
+public class TurnScheduler {
+    private static final Logger logger = Logger.getLogger(TurnScheduler.class.getName());
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "computer-player");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pending = null;
+    private ComputerPlayer thinking = null;
+    private volatile int generation = 0;  // Bumped by cancel, decisions from earlier generations are dropped
+
+    /**
+     * Ask the player for its action in the game, in the background
+     * @param onChosen called on the event thread with the action, or null if the player has none
+     */
+    public void schedule(ComputerPlayer player, Game game, Consumer<Action> onChosen){
+        if (pending != null)
+            throw new IllegalStateException("A computer player is already thinking");
+        int ticket = generation;
+        Game position = game.copy();
+        thinking = player;
+        pending = executor.submit(() -> {
+            Action action = null;
+            try {
+                action = player.chooseAction(position);
+            }
+            catch (RuntimeException e){
+                if (ticket == generation)
+                    logger.log(Level.SEVERE, "Computer player failed to choose an action", e);
+            }
+            Action chosen = action;
+            SwingUtilities.invokeLater(() -> {
+                if (ticket != generation)
+                    return;
+                pending = null;
+                thinking = null;
+                onChosen.accept(chosen == null? null: Move.toAction(Move.of(chosen), game.getBoard()));
+            });
+        });
+    }
+
+    public boolean isThinking(){
+        return pending != null;
+    }
+
+    /**
+     * Stop and forget the decision being made, if any
+     */
+    public void cancel(){
+        ++generation;
+        if (pending != null){
+            pending.cancel(true);
+            thinking.stop();
+            pending = null;
+            thinking = null;
+        }
+    }
+
+    public void shutdown(){
+        cancel();
+        executor.shutdownNow();
+    }
+}
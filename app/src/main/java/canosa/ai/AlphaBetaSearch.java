@@ -0,0 +1,285 @@
+package canosa.ai;
+
+import canosa.game.ActionType;
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.Move;
+import canosa.game.PieceType;
+
+/**
+ * Iterative-deepening negamax alpha-beta search with principal variation search, aspiration windows and
+ * a transposition table.  Every action is its own ply; the score is only negated when the ply passes the
+ * turn to the other player, so the two actions of a turn are searched from the same side's point of view.
+ *
+ * The search plays moves in place on the game it is given (make/unmake), so that game must not be shared.
+ * Several searches may share one transposition table (see LazySmpSearch); each keeps its own killers and
+ * history.
+ *
+ * @author aaron.mitchell
+ */
+public class AlphaBetaSearch {
+    public static final int MAX_PLY   = 128;
+    public static final int WIN       = 30000;
+    public static final int INFINITY  = WIN + 1;
+    // Scores beyond this are wins or losses found by the search
+    public static final int WIN_BOUND = WIN - MAX_PLY;
+
+    private static final int ASPIRATION_WINDOW = 50;
+    private static final int TIME_CHECK_NODES  = 1023;
+
+    private Game game;
+    private TranspositionTable table;
+
+    private int[][] moves      = new int[MAX_PLY][GameEngine.MAX_MOVES];
+    private int[][] orderScore = new int[MAX_PLY][GameEngine.MAX_MOVES];
+    private int[][] killers    = new int[MAX_PLY][2];
+    private int[][] history    = new int[64][64];
+
+    private int threadId = 0;
+    private long deadline;
+    private volatile boolean stopped = false;
+    private long nodes = 0;
+    // System.nanoTime() at which each depth was completed
+    private long[] depthCompletedAt = new long[MAX_PLY];
+
+    private int rootBestMove = Move.NONE;
+    private int bestMove = Move.NONE;
+    private int bestScore = 0;
+    private int completedDepth = 0;
+
+    public AlphaBetaSearch(Game game, TranspositionTable table){
+        this.game = game;
+        this.table = table;
+    }
+
+    /**
+     * Search deeper and deeper until the deadline passes or maxDepth is reached
+     * @param deadline System.nanoTime() at which to stop
+     * @return the best move of the last completed iteration, or Move.NONE if there is no legal move
+     */
+    public int search(long deadline, int maxDepth){
+        this.deadline = deadline;
+        int previous = 0;
+        // Helper threads start one ply deeper every other thread so they fill the table ahead of the main search
+        for (int depth = 1 + (threadId & 1); depth <= maxDepth && depth < MAX_PLY; ++depth){
+            ageHistory();
+            int score = depth < 3? search(depth, -INFINITY, INFINITY, 0): aspirationSearch(depth, previous);
+            if (stopped)
+                break;
+            bestMove = rootBestMove;
+            bestScore = score;
+            completedDepth = depth;
+            depthCompletedAt[depth] = System.nanoTime();
+            previous = score;
+            if (bestMove == Move.NONE || Math.abs(score) > WIN_BOUND)
+                break;
+        }
+        return bestMove;
+    }
+
+    private int aspirationSearch(int depth, int guess){
+        int delta = ASPIRATION_WINDOW;
+        int alpha = Math.max(guess - delta, -INFINITY);
+        int beta = Math.min(guess + delta, INFINITY);
+        while (true){
+            int score = search(depth, alpha, beta, 0);
+            if (stopped)
+                return score;
+            if (score <= alpha)
+                alpha = Math.max(score - delta, -INFINITY);
+            else if (score >= beta)
+                beta = Math.min(score + delta, INFINITY);
+            else
+                return score;
+            delta *= 2;
+        }
+    }
+
+    private int search(int depth, int alpha, int beta, int ply){
+        ++nodes;
+        if ((nodes & TIME_CHECK_NODES) == 0 && completedDepth > 0 && System.nanoTime() >= deadline)
+            stopped = true;
+        if (stopped)
+            return 0;
+
+        PieceType winner = GameEngine.getWinner(game);
+        if (winner != null)
+            return winner == game.getCurrentPlayer()? WIN - ply: -(WIN - ply);
+
+        long hash = game.getHash();
+        int ttMove = Move.NONE;
+        long entry = table.probe(hash);
+        if (entry != 0){
+            ttMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth){
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)){
+                    return score;
+                }
+            }
+        }
+
+        if (depth <= 0 || ply >= MAX_PLY - 1)
+            return Evaluation.evaluate(game);
+
+        int[] plyMoves = moves[ply];
+        int count = GameEngine.generateLegalMoves(game, plyMoves);
+        if (count == 0)
+            return -(WIN - ply);   // Trapped, no action left to take
+        scoreMoves(ply, count, ttMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestPlyMove = Move.NONE;
+        PieceType player = game.getCurrentPlayer();
+        for (int i = 0; i < count; ++i){
+            int move = nextMove(ply, i, count);
+            game.makeMove(move);
+            boolean sameSide = game.getCurrentPlayer() == player;
+            int score;
+            if (i == 0){
+                score = child(depth - 1, alpha, beta, ply + 1, sameSide);
+            }
+            else {
+                // Prove the move is no better than the first one with a null window, re-search if it is
+                score = child(depth - 1, alpha, alpha + 1, ply + 1, sameSide);
+                if (score > alpha && score < beta && !stopped)
+                    score = child(depth - 1, alpha, beta, ply + 1, sameSide);
+            }
+            game.unmakeMove();
+            if (stopped)
+                return 0;
+
+            if (score > best){
+                best = score;
+                bestPlyMove = move;
+                if (ply == 0)
+                    rootBestMove = move;
+            }
+            if (score > alpha)
+                alpha = score;
+            if (alpha >= beta){
+                if (!isTactical(move)){
+                    if (killers[ply][0] != move){
+                        killers[ply][1] = killers[ply][0];
+                        killers[ply][0] = move;
+                    }
+                    history[Move.source(move)][Move.target(move)] += depth * depth;
+                }
+                break;
+            }
+        }
+
+        int bound = best <= originalAlpha? TranspositionTable.UPPER: best >= beta? TranspositionTable.LOWER: TranspositionTable.EXACT;
+        table.store(hash, bestPlyMove, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    private void ageHistory(){
+        for (int[] row: history){
+            for (int i = 0; i < row.length; ++i)
+                row[i] >>= 1;
+        }
+    }
+
+    private int child(int depth, int alpha, int beta, int ply, boolean sameSide){
+        return sameSide? search(depth, alpha, beta, ply): -search(depth, -beta, -alpha, ply);
+    }
+
+    private void scoreMoves(int ply, int count, int ttMove){
+        int[] plyMoves = moves[ply];
+        int[] scores = orderScore[ply];
+        for (int i = 0; i < count; ++i){
+            int move = plyMoves[i];
+            if (move == ttMove)
+                scores[i] = 1 << 30;
+            else if (isScoring(move))
+                scores[i] = 1 << 29;
+            else if (Move.type(move) == ActionType.ATTACK_OPPONENT)
+                scores[i] = 1 << 28;
+            else if (move == killers[ply][0])
+                scores[i] = 1 << 27;
+            else if (move == killers[ply][1])
+                scores[i] = (1 << 27) - 1;
+            else
+                scores[i] = Math.min(history[Move.source(move)][Move.target(move)], (1 << 26));
+        }
+    }
+
+    // Selection sort step: swap the best remaining move into position i
+    private int nextMove(int ply, int i, int count){
+        int[] plyMoves = moves[ply];
+        int[] scores = orderScore[ply];
+        int best = i;
+        for (int j = i + 1; j < count; ++j){
+            if (scores[j] > scores[best])
+                best = j;
+        }
+        int move = plyMoves[best];
+        plyMoves[best] = plyMoves[i];
+        plyMoves[i] = move;
+        int score = scores[best];
+        scores[best] = scores[i];
+        scores[i] = score;
+        return move;
+    }
+
+    private boolean isScoring(int move){
+        return Move.type(move) == ActionType.MOVE_SAILOR
+                && game.getBoard().getCell(Move.target(move)).getIslandOwner() != null;
+    }
+
+    private boolean isTactical(int move){
+        return Move.type(move) == ActionType.ATTACK_OPPONENT || isScoring(move);
+    }
+
+    // Wins are stored relative to the position so they stay correct when reached by another path
+    private static int toTable(int score, int ply){
+        return score > WIN_BOUND? score + ply: score < -WIN_BOUND? score - ply: score;
+    }
+
+    private static int fromTable(int score, int ply){
+        return score > WIN_BOUND? score - ply: score < -WIN_BOUND? score + ply: score;
+    }
+
+    public void stop(){
+        stopped = true;
+    }
+
+    public int getThreadId(){
+        return threadId;
+    }
+
+    /**
+     * @param threadId 0 for the main search, 1 and up for Lazy SMP helpers
+     */
+    public void setThreadId(int threadId){
+        this.threadId = threadId;
+    }
+
+    /**
+     * @return System.nanoTime() at which the given depth was completed, or 0 if it was not
+     */
+    public long getDepthCompletedAt(int depth){
+        return depth > 0 && depth < MAX_PLY? depthCompletedAt[depth]: 0L;
+    }
+
+    public int getBestMove(){
+        return bestMove;
+    }
+
+    public int getBestScore(){
+        return bestScore;
+    }
+
+    public int getCompletedDepth(){
+        return completedDepth;
+    }
+
+    public long getNodes(){
+        return nodes;
+    }
+}
@@ -2,9 +2,16 @@ package canosa.ai;
 
 import canosa.game.Action;
 import canosa.Model;
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.Move;
 import canosa.game.PieceType;
 import canosa.game.board.Cell;
+import canosa.monitor.AiDecisionEvent;
+import canosa.monitor.GameMetrics;
 import canosa.view.View;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  *
@@ -14,7 +21,9 @@ public abstract class ComputerPlayer {
     protected Model model;
     protected View view;
     protected PieceType siren;  // The siren this computer player controls
-    protected Cell islandCell;
+    protected OpeningBook openingBook = null;  // Openings played ahead of time, if any
+    protected Tablebase tablebase = null;  // Endgames solved ahead of time, if any
+    private Game position = null;  // The copy being played from while chooseAction(Game) runs
 
     public ComputerPlayer(Model model, View view){
         this.model = model;
@@ -22,21 +31,143 @@ public abstract class ComputerPlayer {
     }
 
     /**
-     * This method is called after setup and before the game begins
+     * This method is called after setup and before the game begins.  Does nothing by default.
      */
     public void getReady(){
-        islandCell = model.getGame().getBoard().getIslandCell(siren);
     }
 
+    /**
+     * Choose an action for the player to move in the model's game
+     * @return the action, on the game's board, or null if there is none
+     */
     public abstract Action chooseAction();
 
+    /**
+     * Choose an action from a copy of the game, so the game itself may change while the player thinks
+     * @return the action, on the copy's board, or null if there is none
+     */
+    public Action chooseAction(Game position){
+        this.position = position;
+        try {
+            return chooseAction();
+        }
+        finally {
+            this.position = null;
+        }
+    }
+
+    /**
+     * Ask an action being chosen on another thread to be returned as soon as possible, as it is no
+     * longer wanted.  Does nothing by default.
+     */
+    public void stop(){
+    }
+
+    /**
+     * @return the game to choose an action in: the copy given to chooseAction(Game), or the model's game
+     */
+    protected Game getGame(){
+        return position != null? position: model.getGame();
+    }
+
+    protected Cell getIslandCell(){
+        return getGame().getBoard().getIslandCell(siren);
+    }
+
+    /**
+     * Called when the opponent starts thinking about an action, so a player that can think on the
+     * opponent's time starts doing so.  Does nothing by default.
+     */
+    public void startPondering(){
+    }
+
+    /**
+     * Called before the position changes or this player is asked for an action.  Only signals any
+     * pondering to stop, as it is called on the event thread; a player that ponders waits for it to
+     * finish before its next search.  Does nothing by default.
+     */
+    public void stopPondering(){
+    }
+
+    /**
+     * Release any threads the player keeps between actions, once it will not be asked for another.  Does
+     * nothing by default.
+     */
+    public void shutdown(){
+    }
+
+    protected List<Action> getLegalActions(){
+        return GameEngine.generateLegalActions(getGame());
+    }
+
+    protected boolean isLegal(Action action){
+        return GameEngine.isLegal(getGame(), action);
+    }
+
+    /**
+     * Look the position up in the opening book
+     * @return a book action, or null if there is no book or it has nothing for the position
+     */
+    protected Action probeOpeningBook(){
+        if (openingBook == null)
+            return null;
+        long start = System.nanoTime();
+        int move = openingBook.probe(getGame(), ThreadLocalRandom.current());
+        if (move == Move.NONE)
+            return null;
+        recordDecision(start, "book", 0, 0, move);
+        return Move.toAction(move, getGame().getBoard());
+    }
+
+    /**
+     * Look the position up in the endgame tablebase
+     * @return the action that wins fastest or loses slowest, or null if there is no tablebase, it does not
+     *         cover the position or the position is a draw (left for the player's own judgement)
+     */
+    protected Action probeTablebase(){
+        if (tablebase == null)
+            return null;
+        long start = System.nanoTime();
+        int value = tablebase.probe(getGame());
+        if (value == Tablebase.NOT_FOUND || value == Tablebase.DRAW)
+            return null;
+        int move = tablebase.bestMove(getGame());
+        if (move == Move.NONE)
+            return null;
+        recordDecision(start, "tablebase", 0, 0, move);
+        return Move.toAction(move, getGame().getBoard());
+    }
+
+    /**
+     * Count a decision in the game metrics and, if a Flight Recorder recording wants it, emit an AiDecisionEvent
+     * @param start System.nanoTime() when the player started choosing
+     * @param source where the action came from: "search", "book" or "tablebase"
+     * @param nodes positions searched (playouts for Monte Carlo players)
+     * @param move the chosen action, or Move.NONE
+     */
+    protected void recordDecision(long start, String source, long nodes, int depth, int move){
+        long elapsed = System.nanoTime() - start;
+        GameMetrics.get().recordDecision(elapsed, nodes);
+        AiDecisionEvent event = new AiDecisionEvent();
+        if (event.shouldCommit()){
+            event.player = getClass().getSimpleName();
+            event.siren = String.valueOf(siren);
+            event.source = source;
+            event.nodes = nodes;
+            event.depth = depth;
+            event.elapsed = elapsed;
+            event.action = move == Move.NONE? "NONE": Move.toString(move);
+            event.commit();
+        }
+    }
+
     /**
      * Find a controlled sailor that is adjacent (orthogonal) to the controlling siren's island
      * @return 
      */
     protected Cell findScoringSailor(){
-        Cell island = model.getGame().getBoard().getIslandCell(siren);
-        for (Cell neighbor: model.getGame().getBoard().getNeighboringCells(island, false)){
+        Cell island = getGame().getBoard().getIslandCell(siren);
+        for (Cell neighbor: getGame().getBoard().getNeighboringCells(island, false)){
             if (neighbor.getPiece() != null && neighbor.getPiece().getType() == PieceType.SAILOR && neighbor.getPiece().peekTopRing() == siren){
                 return neighbor;
             }
@@ -51,4 +182,26 @@ public abstract class ComputerPlayer {
     public void setSiren(PieceType siren) {
         this.siren = siren;
     }
+
+    public OpeningBook getOpeningBook() {
+        return openingBook;
+    }
+
+    /**
+     * @param openingBook opening book to play the first actions from, or null for none
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    public Tablebase getTablebase() {
+        return tablebase;
+    }
+
+    /**
+     * @param tablebase endgame tablebase to play solved positions from, or null for none
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
 }
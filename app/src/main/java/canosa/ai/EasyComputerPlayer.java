@@ -3,13 +3,15 @@ package canosa.ai;
 import canosa.game.ActionType;
 import canosa.game.Action;
 import canosa.Model;
+import canosa.game.Move;
 import canosa.game.PieceType;
 import canosa.game.board.Cell;
+import canosa.monitor.GameEventSink;
+import canosa.monitor.GameEventType;
 import canosa.view.View;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
@@ -17,44 +19,51 @@ import java.util.stream.Collectors;
  * @author aaron.mitchell
  */
 public class EasyComputerPlayer extends ComputerPlayer{
-    private static final Logger logger = Logger.getLogger(EasyComputerPlayer.class.getName());
-    
     public EasyComputerPlayer(Model model, View view){
         super(model, view);
     }
 
     @Override
     public Action chooseAction(){
+        long start = System.nanoTime();
+        Action action = decide();
+        recordDecision(start, "search", 0, 0, action == null? Move.NONE: Move.of(action));
+        return action;
+    }
+
+    private Action decide(){
+        GameEventSink events = model.getEventSink();
         Action action = null;
 
         // If we can score a sailor, do it
-        logger.info("\n\nLooking for Sailor to score");
         action = tryScoreSailor();
-        if (action != null){
-            logger.info("  Found Sailor at " + action.getSourceCell());
+        if (action != null && isLegal(action)){
+            events.record(GameEventType.EASY_SCORE_SAILOR, siren, action.getSourceCell().getIndex());
             return action;
         }
 
-        Cell sirenCell = model.getGame().getBoard().getSirenCell(siren);
+        Cell sirenCell = getGame().getBoard().getSirenCell(siren);
 
         // Move a controlled sailor toward our island
-        logger.info("Look for controlled sailor to move toward island");
-        List<Cell> farthestSailors = model.getGame().getBoard().findFarthestControlledSailors(sirenCell);
+        List<Cell> farthestSailors = getGame().getBoard().findFarthestControlledSailors(sirenCell);
         if (!farthestSailors.isEmpty()){
             for (Cell sailorCell: farthestSailors){
-                List<Cell> path = model.getGame().getBoard().findShortestPath(sailorCell, islandCell, true);
+                List<Cell> path = getGame().getBoard().findShortestPath(sailorCell, getIslandCell(), true);
                 if (path != null && !path.isEmpty()){
-                    logger.info("  Found controlled sailor at " + sailorCell + ", moving to " + path.get(0));
-                    return new Action(ActionType.MOVE_SAILOR, sailorCell, path.get(0));
+                    action = new Action(ActionType.MOVE_SAILOR, sailorCell, path.get(0));
+                    if (isLegal(action)){
+                        events.record(GameEventType.EASY_MOVE_SAILOR_HOME, siren, sailorCell.getIndex(), path.get(0).getIndex());
+                        return action;
+                    }
                 }
             }
-            logger.info("  Found " + farthestSailors.size() + " controlled sailors, but none have a path to the island");
+            events.record(GameEventType.EASY_NO_PATH_HOME, siren, farthestSailors.size());
         }
         else {
-            logger.info("  No controlled sailors found");
+            events.record(GameEventType.EASY_NO_CONTROLLED_SAILOR, siren);
         }
 
-        Set<Cell> neighbors = model.getGame().getBoard().getNeighboringCells(sirenCell, true);
+        Set<Cell> neighbors = getGame().getBoard().getNeighboringCells(sirenCell, true);
         List<Cell> neighborsWithSailors = 
                 neighbors.stream()
                         .filter(c -> c.getPiece() != null && c.getPiece().getType() == PieceType.SAILOR)
@@ -64,46 +73,53 @@ public class EasyComputerPlayer extends ComputerPlayer{
 
         // If we're not adjacent to a sailor, move toward one that we don't control
         if (neighborsWithSailors.isEmpty()){
-            logger.info("Look for uncontrolled sailor to move toward");
             action = tryMoveTowardUncontrolledSailor(sirenCell);
-            if (action != null){
-                logger.info("  Found uncontrolled sailor.  Moving to " + action.getTargetCell());
+            if (action != null && isLegal(action)){
+                events.record(GameEventType.EASY_MOVE_TOWARD_SAILOR, siren, sirenCell.getIndex(), action.getTargetCell().getIndex());
                 return action;
             }
         }
         else {
             // We're adjacent to an uncontrolled sailor, try to control it
-            logger.info("Looking for adjacent uncontrolled sailor");
             action = tryTransferRingToSailor(sirenCell, neighborsWithSailors);
-            if (action != null){
-                logger.info("Found adjacent uncontrolled sailor.  Transferring ring to sailor at " + action.getTargetCell());
+            if (action != null && isLegal(action)){
+                events.record(GameEventType.EASY_TRANSFER_RING, siren, action.getTargetCell().getIndex());
                 return action;
             }
         }
 
         // Welp, if there's nothing to do, just move to an empty space
-        logger.info("Move to an adjacent empty cell");
         Optional<Cell> emptyAdjacentCell = neighbors.stream().filter(c -> c.getPiece() == null && c.getIslandOwner() == null).findFirst();
-        if (emptyAdjacentCell.isPresent())
+        if (emptyAdjacentCell.isPresent()){
+            events.record(GameEventType.EASY_MOVE_TO_EMPTY, siren, sirenCell.getIndex(), emptyAdjacentCell.get().getIndex());
             return new Action(ActionType.MOVE_SIREN, sirenCell, emptyAdjacentCell.get());
+        }
+
+        // No empty cell to move to, take whatever the rules still allow
+        List<Action> legalActions = getLegalActions();
+        if (!legalActions.isEmpty()){
+            events.record(GameEventType.EASY_ANY_LEGAL, siren);
+            return legalActions.get(0);
+        }
 
-        // Hum, no adjacent empty cell, we must be trapped
+        // Hum, no legal action at all, we must be trapped
+        events.record(GameEventType.EASY_TRAPPED, siren);
         return null;
     }
 
     private Action tryScoreSailor(){
         Cell cell = findScoringSailor();
         if (cell != null){
-            return new Action(ActionType.MOVE_SAILOR, cell, islandCell);
+            return new Action(ActionType.MOVE_SAILOR, cell, getIslandCell());
         }
         return null;
     }
 
     private Action tryMoveTowardUncontrolledSailor(Cell sirenCell){
-        List<Cell> closestSailors = model.getGame().getBoard().findClosestUncontrolledSailors(sirenCell);
+        List<Cell> closestSailors = getGame().getBoard().findClosestUncontrolledSailors(sirenCell);
         if (!closestSailors.isEmpty()){
-            List<Cell> path = model.getGame().getBoard().findShortestPath(sirenCell, closestSailors.get(0));
-            if (!path.isEmpty()){
+            List<Cell> path = getGame().getBoard().findShortestPath(sirenCell, closestSailors.get(0));
+            if (path != null && !path.isEmpty()){
                 return new Action(ActionType.MOVE_SIREN, sirenCell, path.get(0));
             }
         }
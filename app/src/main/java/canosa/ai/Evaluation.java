@@ -0,0 +1,61 @@
+package canosa.ai;
+
+import canosa.game.Game;
+import canosa.game.PieceType;
+import canosa.game.board.BitBoard;
+import canosa.game.board.Board;
+import canosa.game.board.RingStack;
+
+/**
+ * Static evaluation of a position for the searching computer players.  Scored sailors dominate, then
+ * controlled sailors (worth more the closer they are to their island) and the rings each siren still
+ * has to hand out.
+ *
+ * @author aaron.mitchell
+ */
+public final class Evaluation {
+    public static final int SAILOR_SCORED     = 1000;
+    public static final int SAILOR_CONTROLLED = 120;
+    public static final int SAILOR_RING       = 10;
+    public static final int SIREN_RING        = 40;
+    // Worth of each action the player to move still has this turn, so positions reached after an odd and
+    // an even number of actions compare fairly
+    public static final int TEMPO             = 60;
+    // Bonus for a controlled sailor by its distance to the island; each step closer is worth more than the
+    // last so the search always prefers pushing a sailor home over shuffling rings back and forth
+    private static final int[] SAILOR_PROGRESS = { 0, 400, 300, 220, 160, 120, 90, 70, 50, 35, 20 };
+
+    /**
+     * @return the value of the position for the player to move
+     */
+    public static int evaluate(Game game){
+        int value = evaluate(game, PieceType.GOLD_SIREN) - evaluate(game, PieceType.SILVER_SIREN);
+        if (game.getCurrentPlayer() != PieceType.GOLD_SIREN)
+            value = -value;
+        return value + (game.getActionsPerTurn() - game.getActionsTaken()) * TEMPO;
+    }
+
+    private static int evaluate(Game game, PieceType siren){
+        Board board = game.getBoard();
+        int value = (siren == PieceType.GOLD_SIREN? game.getGoldSailorsScored(): game.getSilverSailorsScored()) * SAILOR_SCORED;
+
+        int sirenCell = BitBoard.first(board.getPieceMask(siren));
+        if (sirenCell >= 0)
+            value += RingStack.size(board.getRingStack(sirenCell)) * SIREN_RING;
+
+        int ring = RingStack.code(siren);
+        int island = BitBoard.first(board.getIslandMask(siren));
+        for (long sailors = board.getSailorMask(); sailors != 0; sailors &= sailors - 1){
+            int sailor = Long.numberOfTrailingZeros(sailors);
+            int stack = board.getRingStack(sailor);
+            if (RingStack.peek(stack) != ring)
+                continue;
+            value += SAILOR_CONTROLLED + (RingStack.size(stack) - 1) * SAILOR_RING;
+            if (island >= 0)
+                value += SAILOR_PROGRESS[BitBoard.distance(sailor, island)];
+        }
+        return value;
+    }
+
+    private Evaluation(){}
+}
@@ -0,0 +1,228 @@
+package canosa.ai;
+
+import canosa.Model;
+import canosa.game.Action;
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.Move;
+import canosa.view.View;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Computer player that looks ahead with an alpha-beta search (see AlphaBetaSearch), searching deeper
+ * until its time budget for the action runs out.  With more than one thread the search runs Lazy SMP
+ * (see LazySmpSearch); one thread keeps the search deterministic.
+ *
+ * While the opponent thinks the player ponders: it searches the opponent's position with no deadline,
+ * so the table fills with the positions after the opponent's likely replies, deepest under the
+ * reply it expects.  Its own search after the reply starts from those entries instead of from nothing.
+ * Stopping pondering only signals the ponder search; the next search waits for it to finish, on the
+ * thread choosing the action, so the table and helper threads are its own.
+ *
+ * @author aaron.mitchell
+ */
+public class HardComputerPlayer extends ComputerPlayer{
+    private static final Logger logger = Logger.getLogger(HardComputerPlayer.class.getName());
+
+    public static final long DEFAULT_TIME_BUDGET = 1000;  // milliseconds per action
+    public static final int DEFAULT_TABLE_SIZE   = 16;    // megabytes
+
+    private long timeBudget = DEFAULT_TIME_BUDGET;
+    private int maxDepth = AlphaBetaSearch.MAX_PLY;
+    private TranspositionTable transpositionTable = new TranspositionTable(DEFAULT_TABLE_SIZE);
+    private int threads = 1;
+    private ExecutorService helpers = null;
+    private boolean ponder = true;
+    private ExecutorService ponderer = null;
+    private LazySmpSearch ponderSearch = null;
+    private Future<?> ponderTask = null;
+    private volatile LazySmpSearch searching = null;
+
+    public HardComputerPlayer(Model model, View view){
+        super(model, view);
+    }
+
+    @Override
+    public Action chooseAction(){
+        Action known = probeOpeningBook();
+        if (known == null)
+            known = probeTablebase();
+        if (known != null)
+            return known;
+
+        // Search a copy so the game on screen never sees the moves being tried
+        Game game = getGame().copy();
+        stopPondering();
+        awaitPondering();
+        transpositionTable.newSearch();
+        LazySmpSearch search = new LazySmpSearch(game, transpositionTable, threads, getHelpers());
+        searching = search;
+        // Interrupted by a scheduler cancelling the decision before the search existed to be stopped
+        if (Thread.currentThread().isInterrupted())
+            search.stop();
+        long start = System.nanoTime();
+        int move = search.search(start + TimeUnit.MILLISECONDS.toNanos(timeBudget), maxDepth);
+        searching = null;
+        if (logger.isLoggable(Level.FINE))
+            logger.fine("Searched " + search.getNodes() + " nodes on " + threads + " threads to depth " + search.getCompletedDepth()
+                    + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms (depth reached after "
+                    + TimeUnit.NANOSECONDS.toMillis(search.getTimeToDepth(search.getCompletedDepth())) + " ms): "
+                    + (move == Move.NONE? "no legal action": Move.toString(move) + " (" + search.getBestScore() + ")"));
+        recordDecision(start, "search", search.getNodes(), search.getCompletedDepth(), move);
+
+        if (move == Move.NONE)
+            return null;
+        return Move.toAction(move, getGame().getBoard());
+    }
+
+    @Override
+    public void stop(){
+        LazySmpSearch search = searching;
+        if (search != null)
+            search.stop();
+    }
+
+    @Override
+    public void startPondering(){
+        stopPondering();
+        Game game = model.getGame().copy();
+        if (!ponder || GameEngine.isGameOver(game))
+            return;
+        if (ponderer == null)
+            ponderer = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ponder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        transpositionTable.newSearch();
+        LazySmpSearch search = new LazySmpSearch(game, transpositionTable, threads, getHelpers());
+        ponderSearch = search;
+        ponderTask = ponderer.submit(() -> {
+            search.search(Long.MAX_VALUE, maxDepth);
+            if (logger.isLoggable(Level.FINE))
+                logger.fine("Pondered " + search.getNodes() + " nodes to depth " + search.getCompletedDepth());
+        });
+    }
+
+    @Override
+    public void stopPondering(){
+        if (ponderSearch != null)
+            ponderSearch.stop();
+    }
+
+    /**
+     * Wait for the ponder search last stopped to finish
+     */
+    private void awaitPondering(){
+        if (ponderTask == null)
+            return;
+        try {
+            ponderTask.get();
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return;
+        }
+        catch (ExecutionException e){
+            logger.log(Level.WARNING, "Pondering failed", e.getCause());
+        }
+        ponderTask = null;
+        ponderSearch = null;
+    }
+
+    /**
+     * Stop pondering and the helper threads; a later action starts new ones
+     */
+    @Override
+    public void shutdown(){
+        stopPondering();
+        if (ponderer != null){
+            ponderer.shutdown();
+            ponderer = null;
+        }
+        if (helpers != null){
+            helpers.shutdownNow();
+            helpers = null;
+        }
+    }
+
+    private ExecutorService getHelpers(){
+        if (threads > 1 && helpers == null)
+            helpers = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "search-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        return helpers;
+    }
+
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * @param timeBudget milliseconds the player may think about each action
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads number of search threads; 1 searches on the calling thread only
+     */
+    public void setThreads(int threads) {
+        threads = Math.max(1, threads);
+        if (threads == this.threads)
+            return;
+        stopPondering();
+        awaitPondering();
+        this.threads = threads;
+        if (helpers != null){
+            helpers.shutdownNow();
+            helpers = null;
+        }
+    }
+
+    public boolean isPonder() {
+        return ponder;
+    }
+
+    /**
+     * @param ponder whether to think on the opponent's time
+     */
+    public void setPonder(boolean ponder) {
+        this.ponder = ponder;
+        if (!ponder){
+            stopPondering();
+            awaitPondering();
+        }
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    public void setTranspositionTable(TranspositionTable transpositionTable) {
+        stopPondering();
+        awaitPondering();
+        this.transpositionTable = transpositionTable;
+    }
+}
@@ -0,0 +1,187 @@
+package canosa.ai;
+
+import canosa.game.Game;
+import canosa.game.Move;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Lazy SMP: the main AlphaBetaSearch runs on the calling thread while helper searches run the same
+ * iterative deepening on their own copies of the game, all sharing one transposition table.  The helpers
+ * never report moves directly; they fill the table so the main search finds cutoffs and move ordering
+ * there sooner.  Helpers keep their own killers and history and half of them search one ply deeper,
+ * so the threads drift apart instead of repeating each other's work.
+ *
+ * With one thread this is exactly a single AlphaBetaSearch.
+ *
+ * Run on its own it measures the speedup: the time to search the start position to a fixed depth on 1
+ * to the given number of threads, each with a fresh table.
+ *
+ * Usage: LazySmpSearch [depth] [threads]
+ *
+ * @author aaron.mitchell
+ */
+public class LazySmpSearch {
+    private Game game;
+    private TranspositionTable table;
+    private int threads;
+    private ExecutorService executor;
+
+    private AlphaBetaSearch main;
+    private List<AlphaBetaSearch> searches = new CopyOnWriteArrayList<>();
+    private long start = 0;
+    private volatile boolean stopped = false;
+
+    public static void main(String[] args){
+        int depth = args.length > 0? Integer.parseInt(args[0]): 12;
+        int threads = args.length > 1? Integer.parseInt(args[1]): Runtime.getRuntime().availableProcessors();
+        Game game = new Game();
+        game.init();
+
+        ExecutorService executor = threads > 1? Executors.newFixedThreadPool(threads - 1): null;
+        try {
+            // Warm up the JIT so the single thread is not timed in the interpreter
+            measureTimeToDepth(game, depth, 1, 16, executor);
+            long single = 0;
+            for (int n = 1; n <= threads; ++n){
+                long nanos = measureTimeToDepth(game, depth, n, 16, executor);
+                if (n == 1)
+                    single = nanos;
+                System.out.printf("Depth %d on %d threads: %.3f s (speedup %.2f)%n",
+                        depth, n, nanos / 1e9, (double) single / nanos);
+            }
+        }
+        finally {
+            if (executor != null)
+                executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param game position to search from; the main search plays moves on it in place
+     * @param threads total number of search threads, including the calling thread
+     * @param executor runs the helper searches; may be null when threads is 1
+     */
+    public LazySmpSearch(Game game, TranspositionTable table, int threads, ExecutorService executor){
+        this.game = game;
+        this.table = table;
+        this.threads = Math.max(1, threads);
+        this.executor = executor;
+    }
+
+    /**
+     * @param deadline System.nanoTime() at which to stop
+     * @return the best move of the deepest completed iteration of any thread, or Move.NONE if there is no
+     * legal move
+     */
+    public int search(long deadline, int maxDepth){
+        start = System.nanoTime();
+        main = new AlphaBetaSearch(game, table);
+        add(main);
+
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int id = 1; id < threads; ++id){
+            AlphaBetaSearch helper = new AlphaBetaSearch(game.copy(), table);
+            helper.setThreadId(id);
+            add(helper);
+            helpers.add(executor.submit(() -> helper.search(deadline, maxDepth)));
+        }
+
+        main.search(deadline, maxDepth);
+
+        for (AlphaBetaSearch search: searches)
+            search.stop();
+        for (Future<?> helper: helpers){
+            try {
+                helper.get();
+            }
+            catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e){
+                throw new IllegalStateException("Helper search failed", e.getCause());
+            }
+        }
+        return getBestMove();
+    }
+
+    // A search added after stop() was called stops at once
+    private void add(AlphaBetaSearch search){
+        searches.add(search);
+        if (stopped)
+            search.stop();
+    }
+
+    /**
+     * Stop every thread of the search, from any thread; search() returns the best move found so far
+     */
+    public void stop(){
+        stopped = true;
+        for (AlphaBetaSearch search: searches)
+            search.stop();
+    }
+
+    private AlphaBetaSearch getBestSearch(){
+        AlphaBetaSearch best = main;
+        for (AlphaBetaSearch search: searches){
+            if (search.getBestMove() != Move.NONE && search.getCompletedDepth() > best.getCompletedDepth())
+                best = search;
+        }
+        return best;
+    }
+
+    public int getBestMove(){
+        return getBestSearch().getBestMove();
+    }
+
+    public int getBestScore(){
+        return getBestSearch().getBestScore();
+    }
+
+    public int getCompletedDepth(){
+        return getBestSearch().getCompletedDepth();
+    }
+
+    public long getNodes(){
+        long nodes = 0;
+        for (AlphaBetaSearch search: searches)
+            nodes += search.getNodes();
+        return nodes;
+    }
+
+    /**
+     * @return nodes searched by one thread, 0 being the main search and the helpers numbered from 1
+     */
+    public long getNodes(int thread){
+        return thread < searches.size()? searches.get(thread).getNodes(): 0;
+    }
+
+    /**
+     * @return nanoseconds from the start of the search until any thread completed the given depth, or -1 if
+     * none did
+     */
+    public long getTimeToDepth(int depth){
+        long first = Long.MAX_VALUE;
+        for (AlphaBetaSearch search: searches){
+            long completed = search.getDepthCompletedAt(depth);
+            if (completed != 0)
+                first = Math.min(first, completed);
+        }
+        return first == Long.MAX_VALUE? -1: first - start;
+    }
+
+    /**
+     * Search a copy of the game to a fixed depth with a fresh table, for comparing thread counts
+     * @return nanoseconds taken to complete the depth
+     */
+    public static long measureTimeToDepth(Game game, int depth, int threads, int tableSizeMb, ExecutorService executor){
+        LazySmpSearch search = new LazySmpSearch(game.copy(), new TranspositionTable(tableSizeMb), threads, executor);
+        search.search(Long.MAX_VALUE, depth);
+        return search.getTimeToDepth(depth);
+    }
+}
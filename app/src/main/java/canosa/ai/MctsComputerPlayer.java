@@ -0,0 +1,139 @@
+package canosa.ai;
+
+import canosa.Model;
+import canosa.game.Action;
+import canosa.game.Move;
+import canosa.view.View;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Computer player that picks its actions with a parallel Monte Carlo tree search (see
+ * MonteCarloTreeSearch), playing out random games on every core until its time budget runs out.
+ *
+ * @author aaron.mitchell
+ */
+public class MctsComputerPlayer extends ComputerPlayer{
+    private static final Logger logger = Logger.getLogger(MctsComputerPlayer.class.getName());
+
+    public static final long DEFAULT_TIME_BUDGET = 1000;  // milliseconds per action
+
+    private long timeBudget = DEFAULT_TIME_BUDGET;
+    private long maxPlayouts = Long.MAX_VALUE;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private ForkJoinPool pool = null;
+    private volatile MonteCarloTreeSearch searching = null;
+    private Random random = new Random();
+
+    // Counters from the last search, for sizing hardware
+    private long lastPlayouts = 0;
+    private long lastTreeSize = 0;
+    private double lastPlayoutsPerSecond = 0.0;
+
+    public MctsComputerPlayer(Model model, View view){
+        super(model, view);
+    }
+
+    @Override
+    public Action chooseAction(){
+        Action known = probeOpeningBook();
+        if (known == null)
+            known = probeTablebase();
+        if (known != null)
+            return known;
+
+        if (pool == null)
+            pool = new ForkJoinPool(threads);
+        MonteCarloTreeSearch search = new MonteCarloTreeSearch(getGame(), pool, random.nextLong());
+        searching = search;
+        // Interrupted by a scheduler cancelling the decision before the search existed to be stopped
+        if (Thread.currentThread().isInterrupted())
+            search.stop();
+        long start = System.nanoTime();
+        int move = search.search(start + TimeUnit.MILLISECONDS.toNanos(timeBudget), maxPlayouts);
+        searching = null;
+        lastPlayouts = search.getPlayouts();
+        lastTreeSize = search.getTreeSize();
+        lastPlayoutsPerSecond = search.getPlayoutsPerSecond();
+        if (logger.isLoggable(Level.FINE))
+            logger.fine("Played out " + lastPlayouts + " games (" + (long) lastPlayoutsPerSecond + "/s) on " + threads
+                    + " threads, tree of " + lastTreeSize + " nodes: "
+                    + (move == Move.NONE? "no legal action": Move.toString(move) + " (" + Math.round(search.getBestWinRate() * 100) + "%)"));
+        recordDecision(start, "search", lastPlayouts, 0, move);
+
+        if (move == Move.NONE)
+            return null;
+        return Move.toAction(move, getGame().getBoard());
+    }
+
+    @Override
+    public void stop(){
+        MonteCarloTreeSearch search = searching;
+        if (search != null)
+            search.stop();
+    }
+
+    /**
+     * Stop the playout threads; a later action starts new ones
+     */
+    @Override
+    public void shutdown(){
+        if (pool != null){
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * @param timeBudget milliseconds the player may think about each action
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    public long getMaxPlayouts() {
+        return maxPlayouts;
+    }
+
+    public void setMaxPlayouts(long maxPlayouts) {
+        this.maxPlayouts = maxPlayouts;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        threads = Math.max(1, threads);
+        if (threads == this.threads)
+            return;
+        this.threads = threads;
+        shutdown();
+    }
+
+    /**
+     * Seed the playouts of every following search
+     */
+    public void setSeed(long seed) {
+        random = new Random(seed);
+    }
+
+    public long getLastPlayouts() {
+        return lastPlayouts;
+    }
+
+    public long getLastTreeSize() {
+        return lastTreeSize;
+    }
+
+    public double getLastPlayoutsPerSecond() {
+        return lastPlayoutsPerSecond;
+    }
+}
@@ -0,0 +1,257 @@
+package canosa.ai;
+
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.Move;
+import canosa.game.PieceType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * UCT Monte Carlo tree search with tree parallelism: every worker of a ForkJoinPool walks the one shared
+ * tree, each playing the moves on its own copy of the game.  Node statistics are updated with atomic field
+ * updaters and children are published with a compare-and-set, so no locks are taken.  A node's visit is
+ * counted on the way down (a virtual loss) and its reward only on the way back, which steers the other
+ * workers away from the line one is still playing out.
+ *
+ * Playouts play random legal actions until the game ends, a player is trapped (and loses) or the playout
+ * limit is reached, when the static evaluation decides.
+ *
+ * @author aaron.mitchell
+ */
+public class MonteCarloTreeSearch {
+    public static final double EXPLORATION = 1.4;
+    public static final int PLAYOUT_LIMIT  = 200;
+    // Leaves are expanded once they have been visited this many times
+    public static final int EXPAND_VISITS  = 4;
+
+    // Rewards in half points so draws need no floating point
+    private static final int WIN  = 2;
+    private static final int DRAW = 1;
+
+    private final Game game;
+    private final ForkJoinPool pool;
+    private final Node root;
+    private final AtomicLong seed;
+    private final LongAdder playouts = new LongAdder();
+    private final LongAdder treeSize = new LongAdder();
+
+    private volatile boolean stopped = false;
+    private long deadline;
+    private long maxPlayouts;
+    private long elapsed = 0;
+
+    /**
+     * @param game position to search from; it is copied for every worker and never changed
+     */
+    public MonteCarloTreeSearch(Game game, ForkJoinPool pool){
+        this(game, pool, System.nanoTime());
+    }
+
+    /**
+     * @param seed seeds the workers' random playouts; with one worker and a playout limit instead of a
+     * deadline the search is repeatable
+     */
+    public MonteCarloTreeSearch(Game game, ForkJoinPool pool, long seed){
+        this.game = game;
+        this.pool = pool;
+        this.seed = new AtomicLong(seed);
+        this.root = new Node(null, Move.NONE, null);
+        treeSize.increment();
+    }
+
+    /**
+     * Run playouts on every worker of the pool until the deadline passes or maxPlayouts have been played
+     * @param deadline System.nanoTime() at which to stop
+     * @return the most visited action at the root, or Move.NONE if there is no legal move
+     */
+    public int search(long deadline, long maxPlayouts){
+        this.deadline = deadline;
+        this.maxPlayouts = maxPlayouts;
+        long start = System.nanoTime();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < pool.getParallelism(); ++i)
+            tasks.add(pool.submit(new Worker(game.copy(), new SplittableRandom(seed.getAndIncrement()))));
+        for (ForkJoinTask<?> task: tasks)
+            task.join();
+        elapsed = System.nanoTime() - start;
+        return getBestMove();
+    }
+
+    public void stop(){
+        stopped = true;
+    }
+
+    public int getBestMove(){
+        Node[] children = root.children;
+        if (children == null)
+            return Move.NONE;
+        Node best = null;
+        for (Node child: children){
+            if (best == null || child.visits > best.visits)
+                best = child;
+        }
+        return best == null? Move.NONE: best.move;
+    }
+
+    /**
+     * @return fraction of the playouts through the best move that it won, from 0 to 1
+     */
+    public double getBestWinRate(){
+        int move = getBestMove();
+        for (Node child: root.children == null? new Node[0]: root.children){
+            if (child.move == move && child.visits > 0)
+                return child.wins / (double) (WIN * child.visits);
+        }
+        return 0.0;
+    }
+
+    public long getPlayouts(){
+        return playouts.sum();
+    }
+
+    public long getTreeSize(){
+        return treeSize.sum();
+    }
+
+    public double getPlayoutsPerSecond(){
+        return elapsed == 0? 0.0: playouts.sum() * 1e9 / elapsed;
+    }
+
+    private boolean isDone(){
+        return stopped || playouts.sum() >= maxPlayouts || System.nanoTime() >= deadline;
+    }
+
+    private final class Worker implements Runnable {
+        private final Game game;
+        private final SplittableRandom random;
+        private final int[] moves = new int[GameEngine.MAX_MOVES];
+
+        Worker(Game game, SplittableRandom random){
+            this.game = game;
+            this.random = random;
+        }
+
+        @Override
+        public void run(){
+            while (!isDone()){
+                iterate();
+                playouts.increment();
+            }
+        }
+
+        private void iterate(){
+            Node node = root;
+            Node.VISITS.incrementAndGet(node);
+            int depth = 0;
+            while (GameEngine.getWinner(game) == null){
+                Node[] children = node.children;
+                if (children == null){
+                    if (node != root && node.visits < EXPAND_VISITS)
+                        break;
+                    children = expand(node);
+                }
+                if (children.length == 0)
+                    break;
+                node = select(node, children);
+                Node.VISITS.incrementAndGet(node);
+                game.makeMove(node.move);
+                ++depth;
+            }
+
+            PieceType winner = playout();
+            for (Node n = node; n != root; n = n.parent)
+                Node.WINS.addAndGet(n, winner == null? DRAW: winner == n.player? WIN: 0);
+            for (; depth > 0; --depth)
+                game.unmakeMove();
+        }
+
+        private Node[] expand(Node node){
+            int count = GameEngine.generateLegalMoves(game, moves);
+            PieceType player = game.getCurrentPlayer();
+            Node[] children = new Node[count];
+            for (int i = 0; i < count; ++i)
+                children[i] = new Node(node, moves[i], player);
+            if (Node.CHILDREN.compareAndSet(node, null, children)){
+                treeSize.add(count);
+                return children;
+            }
+            // Another worker expanded it first
+            return node.children;
+        }
+
+        private Node select(Node node, Node[] children){
+            double logVisits = Math.log(Math.max(1, node.visits));
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            int offset = random.nextInt(children.length);
+            for (int i = 0; i < children.length; ++i){
+                Node child = children[(i + offset) % children.length];
+                int visits = child.visits;
+                if (visits == 0)
+                    return child;
+                double value = child.wins / (double) (WIN * visits) + EXPLORATION * Math.sqrt(logVisits / visits);
+                if (value > bestValue){
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Play random legal actions from the current position, then take them back
+         * @return the winner, or null for a draw
+         */
+        private PieceType playout(){
+            int played = 0;
+            PieceType winner;
+            while ((winner = GameEngine.getWinner(game)) == null){
+                int count = GameEngine.generateLegalMoves(game, moves);
+                if (count == 0){
+                    winner = game.getOpponent();
+                    break;
+                }
+                if (played == PLAYOUT_LIMIT){
+                    int value = Evaluation.evaluate(game);
+                    winner = value > 0? game.getCurrentPlayer(): value < 0? game.getOpponent(): null;
+                    break;
+                }
+                game.makeMove(moves[random.nextInt(count)]);
+                ++played;
+            }
+            for (; played > 0; --played)
+                game.unmakeMove();
+            return winner;
+        }
+    }
+
+    private static final class Node {
+        static final AtomicIntegerFieldUpdater<Node> VISITS = AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+        static final AtomicLongFieldUpdater<Node> WINS = AtomicLongFieldUpdater.newUpdater(Node.class, "wins");
+        static final AtomicReferenceFieldUpdater<Node, Node[]> CHILDREN
+                = AtomicReferenceFieldUpdater.newUpdater(Node.class, Node[].class, "children");
+
+        final Node parent;
+        final int move;
+        final PieceType player;  // Player who made the move; wins are counted for this player
+
+        volatile int visits = 0;
+        volatile long wins = 0;  // Half points
+        volatile Node[] children = null;
+
+        Node(Node parent, int move, PieceType player){
+            this.parent = parent;
+            this.move = move;
+            this.player = player;
+        }
+    }
+}
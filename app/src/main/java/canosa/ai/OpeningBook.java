@@ -0,0 +1,172 @@
+package canosa.ai;
+
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.Move;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Opening book: moves known to do well in the first actions of the game, built by OpeningBookBuilder
+ * and memory-mapped so a probe is a binary search over the file.
+ *
+ * The file is a 16 byte header (magic, version, entry count) followed by 16 byte entries sorted by
+ * position hash (Game.getHash) and then move: hash (8 bytes), move (4), weight (4).  A position's
+ * entries are its book moves; one is picked at random in proportion to its weight.
+ *
+ * @author aaron.mitchell
+ */
+public class OpeningBook implements Closeable {
+    public static final int DEFAULT_MAX_PLY = 12;
+
+    static final int MAGIC       = 0x434E4F42;  // CNOB
+    static final int VERSION     = 1;
+    static final int HEADER_SIZE = 16;
+    static final int ENTRY_SIZE  = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int entries;
+    private int maxPly = DEFAULT_MAX_PLY;
+
+    private OpeningBook(FileChannel channel, MappedByteBuffer buffer, int entries){
+        this.channel = channel;
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    /**
+     * Map a book read-only
+     * @throws IOException if the file is not an opening book
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException(path + " is not an opening book");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC)
+                throw new IOException(path + " is not an opening book");
+            if (buffer.getInt(4) != VERSION)
+                throw new IOException(path + " is opening book version " + buffer.getInt(4) + ", expected " + VERSION);
+            int entries = buffer.getInt(8);
+            if (HEADER_SIZE + (long) entries * ENTRY_SIZE > channel.size())
+                throw new IOException(path + " is truncated");
+            return new OpeningBook(channel, buffer, entries);
+        }
+        catch (IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Pick a book move for the position, at random in proportion to the weights
+     * @return the move, or Move.NONE if the position is past the depth cutoff or not in the book
+     */
+    public int probe(Game game, Random random){
+        if (getPly(game) >= maxPly || GameEngine.isGameOver(game))
+            return Move.NONE;
+        long hash = game.getHash();
+        int first = findFirst(hash);
+        long total = 0;
+        int last = first;
+        for (; last < entries && getHash(last) == hash; ++last)
+            total += getWeight(last);
+        if (total == 0)
+            return Move.NONE;
+
+        long pick = (long) (random.nextDouble() * total);
+        for (int i = first; i < last; ++i){
+            pick -= getWeight(i);
+            if (pick < 0)
+                return legal(game, getMove(i))? getMove(i): Move.NONE;
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * @return the book moves of the position, in move order
+     */
+    public int[] getMoves(Game game){
+        long hash = game.getHash();
+        int first = findFirst(hash);
+        int last = first;
+        while (last < entries && getHash(last) == hash)
+            ++last;
+        int[] moves = new int[last - first];
+        for (int i = first; i < last; ++i)
+            moves[i - first] = getMove(i);
+        return moves;
+    }
+
+    // Index of the first entry with the hash, or of the first greater one
+    private int findFirst(long hash){
+        int low = 0;
+        int high = entries;
+        while (low < high){
+            int mid = (low + high) >>> 1;
+            if (getHash(mid) < hash)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    // A hash collision could name a move that is not legal here
+    private static boolean legal(Game game, int move){
+        int[] moves = new int[GameEngine.MAX_MOVES];
+        int count = GameEngine.generateLegalMoves(game, moves);
+        for (int i = 0; i < count; ++i){
+            if (moves[i] == move)
+                return true;
+        }
+        return false;
+    }
+
+    private long getHash(int entry){
+        return buffer.getLong(HEADER_SIZE + entry * ENTRY_SIZE);
+    }
+
+    private int getMove(int entry){
+        return buffer.getInt(HEADER_SIZE + entry * ENTRY_SIZE + 8);
+    }
+
+    private int getWeight(int entry){
+        return buffer.getInt(HEADER_SIZE + entry * ENTRY_SIZE + 12);
+    }
+
+    /**
+     * @return number of actions played before the game's position: one for gold's opening turn, then two a turn
+     */
+    static int getPly(Game game){
+        return game.getTurn() == 0? 0: 2 * game.getTurn() - 1 + game.getActionsTaken();
+    }
+
+    public int getEntries(){
+        return entries;
+    }
+
+    public int getMaxPly() {
+        return maxPly;
+    }
+
+    /**
+     * @param maxPly the book is only probed for the first maxPly actions of the game
+     */
+    public void setMaxPly(int maxPly) {
+        this.maxPly = maxPly;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
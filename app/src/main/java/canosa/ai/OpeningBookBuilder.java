@@ -0,0 +1,248 @@
+package canosa.ai;
+
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.PieceType;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds an OpeningBook from self-play.  Every game starts from Board.init() and is played by a fixed
+ * depth alpha-beta search, which now and then plays a random action within the book depth so the games
+ * spread over the likely openings.  Each action played within the book depth is credited with the
+ * result for the player who played it: 2 points for a win, 1 for a draw.  A move's book weight is its
+ * points; moves played in fewer than minGames games, and moves that never won or drew, are left out.
+ *
+ * Usage: OpeningBookBuilder [--games 1000] [--depth 12] [--search-depth 4] [--randomness 0.25]
+ *                           [--min-games 2] [--max-actions 300] [--threads N] [--seed 1] [--out opening.book]
+ *
+ * @author aaron.mitchell
+ */
+public class OpeningBookBuilder {
+    private static final Logger logger = Logger.getLogger(OpeningBookBuilder.class.getName());
+
+    private int games = 1000;
+    private int depth = OpeningBook.DEFAULT_MAX_PLY;
+    private int searchDepth = 4;
+    private double randomness = 0.25;
+    private int minGames = 2;
+    private int maxActions = 300;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long seed = 1L;
+
+    // Games and points by position hash, then move
+    private final Map<Long, Map<Integer, int[]>> stats = new HashMap<>();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Logger.getLogger("canosa").setLevel(Level.WARNING);
+        OpeningBookBuilder builder = new OpeningBookBuilder();
+        Path output = Paths.get("opening.book");
+        for (int i = 0; i < args.length; ++i){
+            String value = i + 1 < args.length? args[i + 1]: null;
+            switch (args[i]){
+                case "--games":        builder.games = Integer.parseInt(value); break;
+                case "--depth":        builder.depth = Integer.parseInt(value); break;
+                case "--search-depth": builder.searchDepth = Integer.parseInt(value); break;
+                case "--randomness":   builder.randomness = Double.parseDouble(value); break;
+                case "--min-games":    builder.minGames = Integer.parseInt(value); break;
+                case "--max-actions":  builder.maxActions = Integer.parseInt(value); break;
+                case "--threads":      builder.threads = Integer.parseInt(value); break;
+                case "--seed":         builder.seed = Long.parseLong(value); break;
+                case "--out":          output = Paths.get(value); break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            ++i;
+        }
+        long start = System.nanoTime();
+        builder.selfPlay();
+        int entries = builder.write(output);
+        System.out.printf("%d games in %.1f s, %d book moves written to %s%n",
+                builder.games, (System.nanoTime() - start) / 1e9, entries, output);
+    }
+
+    /**
+     * Play the games across the worker threads, adding every one to the statistics
+     */
+    public void selfPlay() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<?>> futures = new ArrayList<>(games);
+            for (int i = 0; i < games; ++i){
+                long gameSeed = seed + i;
+                futures.add(pool.submit(() -> play(gameSeed)));
+            }
+            for (Future<?> future: futures)
+                future.get();
+        }
+        catch (ExecutionException e){
+            throw new IllegalStateException("Self-play game failed", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void play(long gameSeed){
+        SplittableRandom random = new SplittableRandom(gameSeed);
+        TranspositionTable table = new TranspositionTable(1);
+        Game game = new Game();
+        game.init();
+        int[] moves = new int[GameEngine.MAX_MOVES];
+        long[] hashes = new long[depth];
+        int[] played = new int[depth];
+        PieceType[] players = new PieceType[depth];
+        int booked = 0;
+
+        PieceType winner = null;
+        while ((winner = GameEngine.getWinner(game)) == null && game.getMovesMade() < maxActions){
+            int count = GameEngine.generateLegalMoves(game, moves);
+            if (count == 0){
+                winner = game.getOpponent();  // Trapped
+                break;
+            }
+            int move;
+            if (booked < depth && random.nextDouble() < randomness){
+                move = moves[random.nextInt(count)];
+            }
+            else {
+                table.newSearch();
+                move = new AlphaBetaSearch(game, table).search(Long.MAX_VALUE, searchDepth);
+            }
+            if (booked < depth){
+                hashes[booked] = game.getHash();
+                played[booked] = move;
+                players[booked] = game.getCurrentPlayer();
+                ++booked;
+            }
+            game.makeMove(move);
+        }
+
+        synchronized (stats){
+            for (int i = 0; i < booked; ++i){
+                int[] moveStats = stats.computeIfAbsent(hashes[i], hash -> new HashMap<>()).computeIfAbsent(played[i], move -> new int[2]);
+                moveStats[0] += 1;
+                moveStats[1] += winner == null? 1: winner == players[i]? 2: 0;
+            }
+        }
+    }
+
+    /**
+     * Write the book, entries sorted by hash and then move
+     * @return number of entries written
+     */
+    public int write(Path path) throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        synchronized (stats){
+            for (Map.Entry<Long, Map<Integer, int[]>> position: stats.entrySet()){
+                for (Map.Entry<Integer, int[]> move: position.getValue().entrySet()){
+                    int[] moveStats = move.getValue();
+                    if (moveStats[0] >= minGames && moveStats[1] > 0)
+                        entries.add(new long[]{ position.getKey(), move.getKey(), moveStats[1] });
+                }
+            }
+        }
+        entries.sort((a, b) -> a[0] != b[0]? Long.compare(a[0], b[0]): Long.compare(a[1], b[1]));
+
+        ByteBuffer buffer = ByteBuffer.allocate(OpeningBook.HEADER_SIZE + entries.size() * OpeningBook.ENTRY_SIZE);
+        buffer.putInt(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putInt(entries.size()).putInt(0);
+        for (long[] entry: entries)
+            buffer.putLong(entry[0]).putInt((int) entry[1]).putInt((int) entry[2]);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        logger.info("Wrote " + entries.size() + " book moves for " + stats.size() + " positions to " + path);
+        return entries.size();
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    public void setGames(int games) {
+        this.games = games;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @param depth number of actions from the start of each game recorded in the book
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public int getSearchDepth() {
+        return searchDepth;
+    }
+
+    public void setSearchDepth(int searchDepth) {
+        this.searchDepth = searchDepth;
+    }
+
+    public double getRandomness() {
+        return randomness;
+    }
+
+    /**
+     * @param randomness chance of a random action instead of the searched one within the book depth
+     */
+    public void setRandomness(double randomness) {
+        this.randomness = randomness;
+    }
+
+    public int getMinGames() {
+        return minGames;
+    }
+
+    public void setMinGames(int minGames) {
+        this.minGames = minGames;
+    }
+
+    public int getMaxActions() {
+        return maxActions;
+    }
+
+    /**
+     * @param maxActions games still going after this many actions are draws
+     */
+    public void setMaxActions(int maxActions) {
+        this.maxActions = maxActions;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
@@ -0,0 +1,249 @@
+package canosa.ai;
+
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.Move;
+import canosa.game.PieceType;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Endgame tablebase: the solved value of every position of the last race of a game (both players one
+ * sailor short of winning, so 4 sailors left on the board) with up to a few rings left in play, built
+ * by TablebaseGenerator and memory-mapped so a probe is one byte read.  There is one table per ring
+ * count, each numbered by a TablebaseIndex.  Any other position, which is most of a game, is NOT_FOUND:
+ * the tablebase only helps once both players are at 3 and scoring has used up most of the rings.
+ *
+ * A value is one byte, for the player to move:
+ *   0         draw (neither player can force a win), or not solved yet
+ *   1..127    win, the winning action is that many actions away
+ *  -1..-128   loss after (-value - 1) actions, so -1 means no legal action
+ * Distances count actions, not turns, since every player takes two actions a turn.
+ *
+ * File layout: a 256 byte header (magic, version, largest ring count, then passes run, complete flag
+ * and longest distance of each table), followed by the tables from 0 rings up.
+ *
+ * @author aaron.mitchell
+ */
+public class Tablebase implements Closeable {
+    public static final int NOT_FOUND = Integer.MIN_VALUE;  // Position not covered by the tablebase
+    public static final int DRAW      = 0;
+    public static final int MAX_RINGS = 3;
+    public static final int MAX_DISTANCE = 127;
+
+    static final int MAGIC       = 0x434E5442;  // CNTB
+    static final int VERSION     = 2;
+    static final int HEADER_SIZE = 256;
+    private static final int TABLE_HEADER = 16;
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final int maxRings;
+    private final TablebaseIndex[] indexes;
+    private final ByteBuffer[][] tables;
+
+    private Tablebase(FileChannel channel, FileChannel.MapMode mode, int maxRings) throws IOException {
+        this.channel = channel;
+        this.maxRings = maxRings;
+        this.header = channel.map(mode, 0, HEADER_SIZE);
+        this.indexes = new TablebaseIndex[maxRings + 1];
+        this.tables = new ByteBuffer[maxRings + 1][];
+        long offset = HEADER_SIZE;
+        for (int k = 0; k <= maxRings; ++k){
+            indexes[k] = new TablebaseIndex(k);
+            long size = indexes[k].size();
+            tables[k] = new ByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS)];
+            for (int s = 0; s < tables[k].length; ++s){
+                long start = (long) s << SEGMENT_BITS;
+                tables[k][s] = channel.map(mode, offset + start, Math.min(SEGMENT_MASK + 1, size - start));
+            }
+            offset += size;
+        }
+    }
+
+    /**
+     * Map a generated tablebase read-only
+     * @throws IOException if the file is not a tablebase or generation has not finished
+     */
+    public static Tablebase open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            Tablebase tablebase = new Tablebase(channel, FileChannel.MapMode.READ_ONLY, readRings(channel, path));
+            for (int k = 0; k <= tablebase.maxRings; ++k){
+                if (!tablebase.isComplete(k))
+                    throw new IOException(path + ": table for " + k + " rings is not complete, resume its generation");
+            }
+            return tablebase;
+        }
+        catch (IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Map a tablebase for writing, creating the file if it does not exist
+     */
+    static Tablebase openForWriting(Path path, int maxRings) throws IOException {
+        if (maxRings < 0 || maxRings > MAX_RINGS)
+            throw new IllegalArgumentException("Tablebases cover 0 to " + MAX_RINGS + " rings, not " + maxRings);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            if (!created && readRings(channel, path) != maxRings)
+                throw new IOException(path + " holds a tablebase for a different number of rings");
+            Tablebase tablebase = new Tablebase(channel, FileChannel.MapMode.READ_WRITE, maxRings);
+            if (created){
+                tablebase.header.putInt(0, MAGIC);
+                tablebase.header.putInt(4, VERSION);
+                tablebase.header.putInt(8, maxRings);
+                tablebase.header.force();
+            }
+            return tablebase;
+        }
+        catch (IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static int readRings(FileChannel channel, Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        if (channel.read(buffer, 0) < 12 || buffer.getInt(0) != MAGIC)
+            throw new IOException(path + " is not a tablebase");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException(path + " is tablebase version " + buffer.getInt(4) + ", expected " + VERSION);
+        int rings = buffer.getInt(8);
+        if (rings < 0 || rings > MAX_RINGS)
+            throw new IOException(path + " covers " + rings + " rings");
+        return rings;
+    }
+
+    public int getMaxRings(){
+        return maxRings;
+    }
+
+    TablebaseIndex getIndex(int rings){
+        return indexes[rings];
+    }
+
+    byte get(int rings, long index){
+        return tables[rings][(int) (index >>> SEGMENT_BITS)].get((int) (index & SEGMENT_MASK));
+    }
+
+    void put(int rings, long index, byte value){
+        tables[rings][(int) (index >>> SEGMENT_BITS)].put((int) (index & SEGMENT_MASK), value);
+    }
+
+    int getPasses(int rings){
+        return header.getInt(16 + rings * TABLE_HEADER);
+    }
+
+    boolean isComplete(int rings){
+        return header.getInt(20 + rings * TABLE_HEADER) != 0;
+    }
+
+    int getMaxDistance(int rings){
+        return header.getInt(24 + rings * TABLE_HEADER);
+    }
+
+    /**
+     * Flush the table to disk, then record its progress so a later run resumes after this pass
+     */
+    void checkpoint(int rings, int passes, boolean complete, int maxDistance){
+        for (ByteBuffer segment: tables[rings])
+            ((MappedByteBuffer) segment).force();
+        header.putInt(16 + rings * TABLE_HEADER, passes);
+        header.putInt(20 + rings * TABLE_HEADER, complete? 1: 0);
+        header.putInt(24 + rings * TABLE_HEADER, maxDistance);
+        header.force();
+    }
+
+    /**
+     * @return the value of the position for the player to move (see above), or NOT_FOUND if the
+     *         tablebase does not cover it
+     */
+    public int probe(Game game){
+        int rings = TablebaseIndex.ringsLeft(game.getBoard());
+        if (rings > maxRings || GameEngine.isGameOver(game))
+            return NOT_FOUND;
+        long index = indexes[rings].indexOf(game);
+        return index < 0? NOT_FOUND: get(rings, index);
+    }
+
+    /**
+     * @return the value of move for the player making it: positive for a win in that many actions and
+     *         negative for a loss after that many, counting move itself; DRAW, or NOT_FOUND if the
+     *         position reached is not covered
+     */
+    public int probeMove(Game game, int move){
+        PieceType player = game.getCurrentPlayer();
+        game.makeMove(move);
+        try {
+            if (GameEngine.isGameOver(game))
+                return 1;
+            int value = probe(game);
+            if (value == NOT_FOUND || value == DRAW)
+                return value;
+            boolean win = value > 0;
+            int actions = win? value + 1: -value;
+            if (game.getCurrentPlayer() != player)
+                win = !win;
+            return win? actions: -actions;
+        }
+        finally {
+            game.unmakeMove();
+        }
+    }
+
+    /**
+     * Pick the fastest win, or failing that a draw, or the slowest loss
+     * @return the move, or Move.NONE if the tablebase does not cover the position or it has no moves
+     */
+    public int bestMove(Game game){
+        if (probe(game) == NOT_FOUND)
+            return Move.NONE;
+        int[] moves = new int[GameEngine.MAX_MOVES];
+        int count = GameEngine.generateLegalMoves(game, moves);
+        int best = Move.NONE;
+        int bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < count; ++i){
+            int value = probeMove(game, moves[i]);
+            if (value == NOT_FOUND)
+                return Move.NONE;
+            int rank = value > 0? 1000 - value: value == DRAW? 0: -1000 - value;
+            if (rank > bestRank){
+                bestRank = rank;
+                best = moves[i];
+            }
+        }
+        return best;
+    }
+
+    public static boolean isWin(int value){
+        return value > 0 && value != NOT_FOUND;
+    }
+
+    public static boolean isLoss(int value){
+        return value < 0 && value != NOT_FOUND;
+    }
+
+    /**
+     * @return the number of actions until the game is decided, or -1 for a draw
+     */
+    public static int getDistance(int value){
+        return value > 0? value: value < 0? -value - 1: -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,186 @@
+package canosa.ai;
+
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Builds a Tablebase by retrograde analysis, one table per ring count from 0 up.  No action changes
+ * the number of rings before the game is over, so each table is solved on its own.
+ *
+ * Each table is solved in passes over every position.  Pass 0 marks the positions with no legal
+ * action as lost.  Pass n marks a position won in n actions if some action reaches a position won for
+ * it within n actions (scoring the last sailor wins in 1), and lost after n actions if every action
+ * reaches a position lost for it within n actions.  Values written during pass n are n away, so the
+ * passes can split the table between threads without ordering.  Solving stops at the first pass after
+ * the first scoring pass that finds nothing; positions still unsolved are draws.
+ *
+ * The table is flushed and its pass recorded in the file header after every pass, so an interrupted
+ * run picks up at the pass it was in.  Rerunning a half-finished pass gives the same values; as its
+ * first run already wrote some of them, the rerun counts every position holding a value of the pass,
+ * not just the ones it writes.
+ *
+ * Table sizes: 305 million positions for no rings, 3.1 billion for one, 18 billion for two and 82
+ * billion for three, one byte each.  The file holds every table up to its ring count.
+ *
+ * Usage: TablebaseGenerator [file] [rings: 0 (305 MB, the default), 1 (3.4 GB), 2 (21 GB) or 3 (103 GB)] [threads]
+ *
+ * @author aaron.mitchell
+ */
+public class TablebaseGenerator {
+    private static final Logger logger = Logger.getLogger(TablebaseGenerator.class.getName());
+
+    private static final int CHUNK = 1 << 16;
+
+    private final Tablebase tablebase;
+    private final int threads;
+
+    public TablebaseGenerator(Tablebase tablebase, int threads){
+        this.tablebase = tablebase;
+        this.threads = Math.max(1, threads);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path path = Paths.get(args.length > 0? args[0]: "endgame.tb");
+        int rings = args.length > 1? Integer.parseInt(args[1]): 0;
+        int threads = args.length > 2? Integer.parseInt(args[2]): Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        generate(path, rings, threads);
+        System.out.printf("Tablebase for up to %d rings in %s, %.1f s%n", rings, path, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Generate the tablebase in the file, or finish generating it if an earlier run was interrupted
+     */
+    public static void generate(Path path, int rings, int threads) throws IOException, InterruptedException {
+        try (Tablebase tablebase = Tablebase.openForWriting(path, rings)){
+            TablebaseGenerator generator = new TablebaseGenerator(tablebase, threads);
+            for (int k = 0; k <= rings; ++k)
+                generator.solve(k);
+        }
+    }
+
+    /**
+     * Solve the table for the ring count
+     */
+    public void solve(int rings) throws InterruptedException {
+        solve(rings, 0, tablebase.getIndex(rings).size());
+    }
+
+    /**
+     * Solve part of the table, recording progress as for the whole table.  Only the right answer if no
+     * action leads out of the part, as for one sailor layout of the table for no rings.
+     */
+    void solve(int rings, long from, long to) throws InterruptedException {
+        if (tablebase.isComplete(rings))
+            return;
+
+        // A resumed pass's first run may already have written its values, so count them all
+        boolean resumed = tablebase.getPasses(rings) > 0;
+        int pass = resumed? tablebase.getPasses(rings): 0;
+        int maxDistance = tablebase.getMaxDistance(rings);
+        for (; pass <= Tablebase.MAX_DISTANCE; ++pass){
+            long start = System.nanoTime();
+            long solved = runPass(rings, pass, from, to);
+            if (resumed)
+                solved = countPass(rings, pass, from, to);
+            if (solved > 0)
+                maxDistance = pass;
+            // Pass 1 scores, so it may find positions when pass 0 found none
+            boolean complete = pass == Tablebase.MAX_DISTANCE || (solved == 0 && pass > 1);
+            tablebase.checkpoint(rings, pass + 1, complete, maxDistance);
+            logger.info("Rings " + rings + " pass " + pass + ": solved " + solved + " positions in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            resumed = false;
+            if (complete)
+                return;
+        }
+    }
+
+    /**
+     * Run one pass over the indexes from up to to, split into chunks claimed by the worker threads
+     * @return number of positions solved
+     */
+    long runPass(int rings, int pass, long from, long to) throws InterruptedException {
+        TablebaseIndex index = tablebase.getIndex(rings);
+        long chunks = (to - from + CHUNK - 1) / CHUNK;
+        AtomicLong nextChunk = new AtomicLong();
+        AtomicLong solved = new AtomicLong();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; ++t){
+                futures.add(pool.submit(() -> {
+                    Game game = new Game();
+                    int[] moves = new int[GameEngine.MAX_MOVES];
+                    long count = 0;
+                    for (long chunk = nextChunk.getAndIncrement(); chunk < chunks; chunk = nextChunk.getAndIncrement()){
+                        long end = Math.min(to, from + (chunk + 1) * CHUNK);
+                        for (long i = from + chunk * CHUNK; i < end; ++i){
+                            if (tablebase.get(rings, i) != Tablebase.DRAW || !index.setUp(i, game))
+                                continue;
+                            byte value = solve(game, moves, pass);
+                            if (value != Tablebase.DRAW){
+                                tablebase.put(rings, i, value);
+                                ++count;
+                            }
+                        }
+                    }
+                    solved.addAndGet(count);
+                }));
+            }
+            for (Future<?> future: futures)
+                future.get();
+        }
+        catch (ExecutionException e){
+            throw new IllegalStateException("Tablebase pass failed", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return solved.get();
+    }
+
+    /**
+     * @return number of positions from up to to holding a value written in the pass
+     */
+    private long countPass(int rings, int pass, long from, long to){
+        long count = 0;
+        for (long i = from; i < to; ++i){
+            byte value = tablebase.get(rings, i);
+            if ((value == pass && pass > 0) || value == -pass - 1)  // Pass 0 only finds losses
+                ++count;
+        }
+        return count;
+    }
+
+    /**
+     * @return the value the position gets in this pass, or DRAW if it stays unsolved
+     */
+    private byte solve(Game game, int[] moves, int pass){
+        int count = GameEngine.generateLegalMoves(game, moves);
+        if (pass == 0)
+            return count == 0? (byte) -1: Tablebase.DRAW;
+
+        boolean lost = count > 0;
+        for (int i = 0; i < count; ++i){
+            int value = tablebase.probeMove(game, moves[i]);
+            if (value > 0 && value <= pass)
+                return (byte) pass;
+            if (value >= 0 || value < -pass)
+                lost = false;
+        }
+        return lost? (byte) (-pass - 1): Tablebase.DRAW;
+    }
+}
@@ -0,0 +1,259 @@
+package canosa.ai;
+
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.Phase;
+import canosa.game.Piece;
+import canosa.game.PieceType;
+import canosa.game.board.BitBoard;
+import canosa.game.board.Board;
+import canosa.game.board.Cell;
+import canosa.game.board.RingStack;
+
+/**
+ * Numbers every position of the last race of a game with a given count of rings left in play, for the
+ * endgame tablebase.  In the last race both players have scored all but one of the sailors they need,
+ * so the 4 sailors of the 10 not yet scored are on the board and the next sailor scored ends the game.
+ * Islands are where Board.init() puts them and the game is past the opening turn.  The index is a
+ * mixed-radix number, most significant first:
+ *
+ *  sailor cells  combinatorial rank of the set of the 4 sailor cells
+ *  sirens        gold siren cell * 36 + silver siren cell
+ *  side/action   player to move and actions already taken this turn
+ *  rings         rank of where the rings are, among the layouts holding exactly that many rings: the ring
+ *                count of each siren (sirens only ever hold rings of their own colour) and the stack of
+ *                each sailor, in cell order
+ *
+ * Until the game ends no action adds or removes a ring, so every action leads to a position of the same
+ * table.  Without rings the sailors cannot move either, so each sailor layout of the table for no rings
+ * is solved on its own.
+ *
+ * Some indexes name impossible positions (pieces sharing a cell, a siren on the wrong island); they are
+ * skipped by the generator and never probed.
+ *
+ * @author aaron.mitchell
+ */
+public class TablebaseIndex {
+    public static final int GOLD_ISLAND   = BitBoard.index(5, 0);
+    public static final int SILVER_ISLAND = BitBoard.index(0, 5);
+    public static final int SAILORS       = 4;
+    public static final int SCORED        = GameEngine.WINNING_SCORE - 1;  // By each player
+
+    private static final int STACKS = 15;   // Stacks of 0 to 3 rings, each gold or silver
+    private static final int LAYOUTS = 16 * STACKS * STACKS * STACKS * STACKS;
+    private static final long[][] CHOOSE = new long[BitBoard.CELLS + 1][BitBoard.CELLS + 1];
+    // Rank of each ring layout among the layouts with as many rings
+    private static final int[] LAYOUT_RANK = new int[LAYOUTS];
+
+    static {
+        for (int n = 0; n <= BitBoard.CELLS; ++n){
+            CHOOSE[n][0] = 1;
+            for (int k = 1; k <= n; ++k)
+                CHOOSE[n][k] = CHOOSE[n - 1][k - 1] + CHOOSE[n - 1][k];
+        }
+        int[] count = new int[2 * RingStack.MAX_RINGS + SAILORS * RingStack.MAX_RINGS + 1];
+        for (int layout = 0; layout < LAYOUTS; ++layout)
+            LAYOUT_RANK[layout] = count[rings(layout)]++;
+    }
+
+    private final int rings;
+    private final int[] layouts;  // Ring layouts with this many rings, by rank
+    private final long sailorCells;
+    private final long size;
+
+    /**
+     * @param rings number of rings in play, on sirens and sailors, in every position of this index
+     */
+    public TablebaseIndex(int rings){
+        this.rings = rings;
+        int count = 0;
+        for (int layout = 0; layout < LAYOUTS; ++layout){
+            if (rings(layout) == rings)
+                ++count;
+        }
+        this.layouts = new int[count];
+        for (int layout = 0; layout < LAYOUTS; ++layout){
+            if (rings(layout) == rings)
+                layouts[LAYOUT_RANK[layout]] = layout;
+        }
+        this.sailorCells = CHOOSE[BitBoard.CELLS][SAILORS];
+        this.size = sailorCells * BitBoard.CELLS * BitBoard.CELLS * 4 * layouts.length;
+    }
+
+    public int getRings(){
+        return rings;
+    }
+
+    /**
+     * @return number of indexes, valid or not
+     */
+    public long size(){
+        return size;
+    }
+
+    /**
+     * @return number of indexes sharing one set of sailor cells; they are numbered one after the other
+     */
+    public long sailorLayoutSize(){
+        return size / sailorCells;
+    }
+
+    /**
+     * @return the index of the game's position, or -1 if this index does not cover it
+     */
+    public long indexOf(Game game){
+        Board board = game.getBoard();
+        if (game.getTurn() == 0 || game.getGoldSailorsScored() != SCORED || game.getSilverSailorsScored() != SCORED
+                || Long.bitCount(board.getSailorMask()) != SAILORS
+                || board.getIslandMask(PieceType.GOLD_SIREN) != BitBoard.bit(GOLD_ISLAND)
+                || board.getIslandMask(PieceType.SILVER_SIREN) != BitBoard.bit(SILVER_ISLAND))
+            return -1;
+        int goldSiren = BitBoard.first(board.getPieceMask(PieceType.GOLD_SIREN));
+        int silverSiren = BitBoard.first(board.getPieceMask(PieceType.SILVER_SIREN));
+        if (goldSiren < 0 || silverSiren < 0)
+            return -1;
+        int goldRings = sirenRings(board.getRingStack(goldSiren), RingStack.GOLD);
+        int silverRings = sirenRings(board.getRingStack(silverSiren), RingStack.SILVER);
+        if (goldRings < 0 || silverRings < 0)
+            return -1;
+
+        long rank = 0;
+        int layout = goldRings * 4 + silverRings;
+        int i = 0;
+        for (long mask = board.getSailorMask(); mask != 0; mask &= mask - 1, ++i){
+            int cell = Long.numberOfTrailingZeros(mask);
+            rank += CHOOSE[cell][i + 1];
+            layout = layout * STACKS + stackCode(board.getRingStack(cell));
+        }
+        if (rings(layout) != rings)
+            return -1;
+
+        long index = rank;
+        index = index * BitBoard.CELLS + goldSiren;
+        index = index * BitBoard.CELLS + silverSiren;
+        index = index * 4 + (game.getCurrentPlayer() == PieceType.SILVER_SIREN? 2: 0) + game.getActionsTaken();
+        return index * layouts.length + LAYOUT_RANK[layout];
+    }
+
+    /**
+     * Set the game up with the position at the index, reusing its board
+     * @return false if the index names an impossible position
+     */
+    public boolean setUp(long index, Game game){
+        int layout = layouts[(int) (index % layouts.length)];
+        index /= layouts.length;
+        int sideAction = (int) (index % 4);
+        index /= 4;
+        int silverSiren = (int) (index % BitBoard.CELLS);
+        index /= BitBoard.CELLS;
+        int goldSiren = (int) (index % BitBoard.CELLS);
+        long rank = index / BitBoard.CELLS;
+
+        if (goldSiren == silverSiren || goldSiren == SILVER_ISLAND || silverSiren == GOLD_ISLAND)
+            return false;
+        long sailorMask = unrank(rank);
+        if ((sailorMask & (BitBoard.bit(goldSiren) | BitBoard.bit(silverSiren) | BitBoard.bit(GOLD_ISLAND) | BitBoard.bit(SILVER_ISLAND))) != 0)
+            return false;
+
+        Board board = game.getBoard();
+        for (Cell cell: board.getCells()){
+            if (cell.getPiece() != null)
+                cell.setPiece(null);
+        }
+        if (board.getIslandMask(PieceType.GOLD_SIREN) != BitBoard.bit(GOLD_ISLAND)){
+            for (Cell cell: board.getCells())
+                cell.setIslandOwner(null);
+            board.getCell(GOLD_ISLAND).setIslandOwner(PieceType.GOLD_SIREN);
+            board.getCell(SILVER_ISLAND).setIslandOwner(PieceType.SILVER_SIREN);
+        }
+
+        // Stacks were added most significant first, so the last sailor's stack is the lowest digit
+        int[] cells = new int[SAILORS];
+        int i = 0;
+        for (long mask = sailorMask; mask != 0; mask &= mask - 1)
+            cells[i++] = Long.numberOfTrailingZeros(mask);
+        for (i = SAILORS - 1; i >= 0; --i){
+            board.getCell(cells[i]).setPiece(sailor(layout % STACKS));
+            layout /= STACKS;
+        }
+        board.getCell(goldSiren).setPiece(siren(PieceType.GOLD_SIREN, layout / 4));
+        board.getCell(silverSiren).setPiece(siren(PieceType.SILVER_SIREN, layout % 4));
+
+        game.setGoldSailorsScored(SCORED);
+        game.setSilverSailorsScored(SCORED);
+        game.setCurrentPlayer((sideAction & 2) != 0? PieceType.SILVER_SIREN: PieceType.GOLD_SIREN);
+        game.setActionsTaken(sideAction & 1);
+        game.setTurn(1);
+        game.setPhase(Phase.PLAY);
+        return true;
+    }
+
+    /**
+     * @return the number of rings on the board, on sirens and sailors
+     */
+    public static int ringsLeft(Board board){
+        int rings = 0;
+        for (long mask = board.getOccupiedMask(); mask != 0; mask &= mask - 1)
+            rings += RingStack.size(board.getRingStack(Long.numberOfTrailingZeros(mask)));
+        return rings;
+    }
+
+    // Rings in a layout: siren ring counts in the top digit, then one stack code per sailor
+    private static int rings(int layout){
+        int rings = 0;
+        for (int i = 0; i < SAILORS; ++i){
+            rings += 31 - Integer.numberOfLeadingZeros(layout % STACKS + 1);
+            layout /= STACKS;
+        }
+        return rings + layout / 4 + layout % 4;
+    }
+
+    // Sirens hold only their own rings; -1 if this one holds any other
+    private static int sirenRings(int stack, int ring){
+        int size = RingStack.size(stack);
+        for (int i = 0; i < size; ++i){
+            if (RingStack.get(stack, i) != ring)
+                return -1;
+        }
+        return size;
+    }
+
+    private static Piece siren(PieceType type, int rings){
+        Piece siren = new Piece(type);
+        for (int i = 0; i < rings; ++i)
+            siren.pushRing(type);
+        return siren;
+    }
+
+    // Stack codes: 0 empty, 1-2 one ring, 3-6 two rings, 7-14 three rings; within a size, one bit per ring
+    // from the bottom, set for silver
+    private static int stackCode(int stack){
+        int size = RingStack.size(stack);
+        int pattern = 0;
+        for (int i = 0; i < size; ++i)
+            pattern = (pattern << 1) | (RingStack.get(stack, size - 1 - i) == RingStack.SILVER? 1: 0);
+        return (1 << size) - 1 + pattern;
+    }
+
+    private static Piece sailor(int code){
+        int size = 31 - Integer.numberOfLeadingZeros(code + 1);
+        int pattern = code - ((1 << size) - 1);
+        Piece sailor = new Piece(PieceType.SAILOR);
+        for (int i = size - 1; i >= 0; --i)
+            sailor.pushRing(((pattern >>> i) & 1) != 0? PieceType.SILVER_SIREN: PieceType.GOLD_SIREN);
+        return sailor;
+    }
+
+    private static long unrank(long rank){
+        long mask = 0L;
+        int cell = BitBoard.CELLS - 1;
+        for (int k = SAILORS; k > 0; --k){
+            while (CHOOSE[cell][k] > rank)
+                --cell;
+            mask |= BitBoard.bit(cell);
+            rank -= CHOOSE[cell][k];
+            --cell;
+        }
+        return mask;
+    }
+}
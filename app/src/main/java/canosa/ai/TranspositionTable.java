@@ -0,0 +1,111 @@
+package canosa.ai;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table of search results, keyed by Game.getHash().  Entries live in two parallel
+ * long arrays and are shared between search threads without locks: each slot stores the entry data and
+ * the key XORed with that data, so a slot torn by two threads writing at once simply fails to match on
+ * probe.  Deeper results are kept over shallower ones, unless the stored entry is from an older search.
+ *
+ * Entry data layout: move (21 bits), depth (8), bound (2), generation (8), score (16, signed), valid (1).
+ *
+ * @author aaron.mitchell
+ */
+public class TranspositionTable {
+    public static final int EXACT = 0;  // Score is exact
+    public static final int LOWER = 1;  // Search failed high, score is a lower bound
+    public static final int UPPER = 2;  // Search failed low, score is an upper bound
+
+    private static final long MOVE_MASK  = (1L << 21) - 1;
+    private static final int DEPTH_SHIFT = 21;
+    private static final int BOUND_SHIFT = 29;
+    private static final int GEN_SHIFT   = 31;
+    private static final int SCORE_SHIFT = 39;
+    private static final long VALID      = 1L << 55;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private volatile int generation = 0;
+
+    /**
+     * @param sizeMb approximate memory to use; the number of entries is rounded down to a power of two
+     */
+    public TranspositionTable(int sizeMb){
+        long entries = Math.max(1024L, ((long) sizeMb << 20) / 16);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * @return the entry data stored for this hash, or 0 if there is none
+     */
+    public long probe(long hash){
+        int index = (int) hash & mask;
+        long entry = data[index];
+        if (entry != 0 && (keys[index] ^ entry) == hash)
+            return entry;
+        return 0L;
+    }
+
+    public void store(long hash, int move, int score, int depth, int bound){
+        int index = (int) hash & mask;
+        long existing = data[index];
+        int currentGeneration = generation;
+        if (existing != 0 && generation(existing) == currentGeneration && depth < depth(existing)
+                && (keys[index] ^ existing) != hash){
+            return;
+        }
+        // Keep the best move of a shallower search of this position if this one has none
+        if (move == 0 && existing != 0 && (keys[index] ^ existing) == hash)
+            move = move(existing);
+
+        long entry = VALID
+                | ((long) (score & 0xFFFF) << SCORE_SHIFT)
+                | ((long) (currentGeneration & 0xFF) << GEN_SHIFT)
+                | ((long) (bound & 0x3) << BOUND_SHIFT)
+                | ((long) (Math.min(depth, 0xFF) & 0xFF) << DEPTH_SHIFT)
+                | (move & MOVE_MASK);
+        data[index] = entry;
+        keys[index] = hash ^ entry;
+    }
+
+    /**
+     * Start a new search: entries from earlier searches become fair game for replacement
+     */
+    public void newSearch(){
+        generation = (generation + 1) & 0xFF;
+    }
+
+    public void clear(){
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    public int size(){
+        return data.length;
+    }
+
+    public static int move(long entry){
+        return (int) (entry & MOVE_MASK);
+    }
+
+    public static int depth(long entry){
+        return (int) ((entry >>> DEPTH_SHIFT) & 0xFF);
+    }
+
+    public static int bound(long entry){
+        return (int) ((entry >>> BOUND_SHIFT) & 0x3);
+    }
+
+    public static int score(long entry){
+        return (short) (entry >>> SCORE_SHIFT);
+    }
+
+    private static int generation(long entry){
+        return (int) ((entry >>> GEN_SHIFT) & 0xFF);
+    }
+}
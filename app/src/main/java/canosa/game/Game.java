@@ -1,6 +1,8 @@
 package canosa.game;
 
 import canosa.game.board.Board;
+import canosa.game.board.Zobrist;
+import java.util.Arrays;
 
 /**
  *
@@ -13,6 +15,13 @@ public class Game {
     private int goldSailorsScored = 0;
     private int silverSailorsScored = 0;
     private PieceType currentPlayer = PieceType.GOLD_SIREN;
+    private int actionsTaken = 0;   // Actions taken so far by the current player this turn
+    private int turn = 0;           // Number of completed turns
+
+    // Undo stack filled by GameEngine.apply: one record per move, plus the sailor it scored (if any)
+    private long[] undoRecords = new long[128];
+    private Piece[] undoPieces = new Piece[128];
+    private int undoCount = 0;
 
     public Game(){
         board = new Board();
@@ -22,6 +31,97 @@ public class Game {
         board.init();
         goldSailorsScored = 0;
         silverSailorsScored = 0;
+        currentPlayer = PieceType.GOLD_SIREN;
+        actionsTaken = 0;
+        turn = 0;
+        Arrays.fill(undoPieces, 0, undoCount, null);
+        undoCount = 0;
+    }
+
+    /**
+     * Copy of the current position for the AI to play moves on, without the undo history
+     */
+    public Game copy(){
+        Game copy = new Game();
+        copy.board.copyFrom(board);
+        copy.phase = phase;
+        copy.phaseStep = phaseStep;
+        copy.goldSailorsScored = goldSailorsScored;
+        copy.silverSailorsScored = silverSailorsScored;
+        copy.currentPlayer = currentPlayer;
+        copy.actionsTaken = actionsTaken;
+        copy.turn = turn;
+        return copy;
+    }
+
+    /**
+     * Zobrist hash of the whole position: the board plus the scores, the player to move and how far
+     * through their turn they are
+     */
+    public long getHash(){
+        long hash = board.getHash()
+                ^ Zobrist.goldScore(goldSailorsScored)
+                ^ Zobrist.silverScore(silverSailorsScored)
+                ^ Zobrist.actionsTaken(actionsTaken);
+        if (currentPlayer == PieceType.SILVER_SIREN)
+            hash ^= Zobrist.SILVER_TO_MOVE;
+        if (turn == 0)
+            hash ^= Zobrist.OPENING_TURN;
+        return hash;
+    }
+
+    /**
+     * Play an action in place, see GameEngine.apply
+     */
+    public void makeMove(Action action){
+        GameEngine.apply(this, Move.of(action));
+    }
+
+    public void makeMove(int move){
+        GameEngine.apply(this, move);
+    }
+
+    /**
+     * Take back the last move made
+     */
+    public void unmakeMove(){
+        GameEngine.undo(this);
+    }
+
+    /**
+     * Number of moves that can be taken back with unmakeMove
+     */
+    public int getMovesMade(){
+        return undoCount;
+    }
+
+    /**
+     * @return the last move made, or Move.NONE if no move has been made
+     */
+    public int getLastMove(){
+        return undoCount == 0? Move.NONE: (int) (undoRecords[undoCount - 1] & GameEngine.MOVE_MASK);
+    }
+
+    void pushUndo(long record, Piece scored){
+        if (undoCount == undoRecords.length){
+            undoRecords = Arrays.copyOf(undoRecords, undoCount * 2);
+            undoPieces  = Arrays.copyOf(undoPieces, undoCount * 2);
+        }
+        undoRecords[undoCount] = record;
+        undoPieces[undoCount]  = scored;
+        ++undoCount;
+    }
+
+    long peekUndo(){
+        if (undoCount == 0)
+            throw new IllegalStateException("No move to take back");
+        return undoRecords[undoCount - 1];
+    }
+
+    Piece popUndo(){
+        Piece scored = undoPieces[--undoCount];
+        undoPieces[undoCount] = null;
+        return scored;
     }
 
     public Board getBoard() {
@@ -80,4 +180,31 @@ public class Game {
     public void setCurrentPlayer(PieceType currentPlayer) {
         this.currentPlayer = currentPlayer;
     }
+
+    public PieceType getOpponent() {
+        return currentPlayer == PieceType.GOLD_SIREN? PieceType.SILVER_SIREN: PieceType.GOLD_SIREN;
+    }
+
+    public int getActionsTaken() {
+        return actionsTaken;
+    }
+
+    public void setActionsTaken(int actionsTaken) {
+        this.actionsTaken = actionsTaken;
+    }
+
+    public int getTurn() {
+        return turn;
+    }
+
+    public void setTurn(int turn) {
+        this.turn = turn;
+    }
+
+    /**
+     * Gold opens the game with a single action, after that each turn has two
+     */
+    public int getActionsPerTurn() {
+        return turn == 0? 1: 2;
+    }
 }
@@ -0,0 +1,412 @@
+package canosa.game;
+
+import canosa.game.board.BitBoard;
+import canosa.game.board.Board;
+import canosa.game.board.Cell;
+import canosa.game.board.RingStack;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rules of Canosa, independent of the view.  Generates every legal action for the player to move,
+ * applies actions (including scoring and turn changes) and decides the winner.  Moves are handled as
+ * packed ints (see Move) so searches can run without allocating; the Action based methods wrap those.
+ *
+ * See Controller for a summary of the rules.
+ *
+ * @author aaron.mitchell
+ */
+public class GameEngine {
+    public static final int WINNING_SCORE = 4;
+    // Upper bound on the number of legal actions in any position
+    public static final int MAX_MOVES = 64;
+
+    // Undo record layout: the move itself in the low bits, then what apply changed around it
+    static final long MOVE_MASK                    = (1L << 21) - 1;
+    private static final int  ACTIONS_SHIFT        = 21;
+    private static final long TURN_PASSED          = 1L << 23;
+    private static final long SCORED               = 1L << 24;
+    private static final long SCORED_FOR_GOLD      = 1L << 25;
+    private static final long GOLD_RING_RETURNED   = 1L << 26;
+    private static final long SILVER_RING_RETURNED = 1L << 27;
+
+    private Game game;
+
+    public GameEngine(Game game){
+        this.game = game;
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    public List<Action> getLegalActions(){
+        return generateLegalActions(game);
+    }
+
+    public boolean isLegal(Action action){
+        return isLegal(game, action);
+    }
+
+    public boolean hasLegalMove(){
+        return hasLegalMove(game);
+    }
+
+    public void apply(Action action){
+        apply(game, Move.of(action));
+    }
+
+    public void apply(int move){
+        apply(game, move);
+    }
+
+    public void undo(){
+        undo(game);
+    }
+
+    public PieceType getWinner(){
+        return getWinner(game);
+    }
+
+    public static List<Action> generateLegalActions(Game game){
+        int[] moves = new int[MAX_MOVES];
+        int count = generateLegalMoves(game, moves);
+        List<Action> actions = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i)
+            actions.add(Move.toAction(moves[i], game.getBoard()));
+        return actions;
+    }
+
+    public static boolean isLegal(Game game, Action action){
+        if (action == null || action.getType() == null || action.getSourceCell() == null || action.getTargetCell() == null)
+            return false;
+        int move = Move.of(action);
+        int[] moves = new int[MAX_MOVES];
+        int count = generateLegalMoves(game, moves);
+        for (int i = 0; i < count; ++i){
+            if (moves[i] == move)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Write every legal move for the current player into moves
+     * @return number of moves written
+     */
+    public static int generateLegalMoves(Game game, int[] moves){
+        Board board = game.getBoard();
+        PieceType player = game.getCurrentPlayer();
+        PieceType opponent = game.getOpponent();
+        int sirenRing = RingStack.code(player);
+        int siren = BitBoard.first(board.getPieceMask(player));
+        int count = 0;
+        if (siren < 0)
+            return 0;
+
+        long occupied = board.getOccupiedMask();
+        long islands  = board.getIslandMask();
+        long sailors  = board.getSailorMask();
+        long sirenNeighbours = BitBoard.neighboursOf(siren, true);
+        int sirenStack = board.getRingStack(siren);
+
+        // Move siren to any empty adjacent cell that is not an island
+        for (long targets = sirenNeighbours & ~occupied & ~islands; targets != 0; targets &= targets - 1)
+            moves[count++] = Move.of(ActionType.MOVE_SIREN, siren, Long.numberOfTrailingZeros(targets));
+
+        // Attack an adjacent opponent siren holding fewer rings, bumping it to an empty cell next to it
+        int opponentSiren = BitBoard.first(board.getPieceMask(opponent));
+        if (opponentSiren >= 0 && BitBoard.isSet(sirenNeighbours, opponentSiren) && !BitBoard.isSet(islands, opponentSiren)
+                && RingStack.size(sirenStack) > RingStack.size(board.getRingStack(opponentSiren))){
+            long bumps = BitBoard.neighboursOf(opponentSiren, true) & ~occupied & ~islands;
+            for (; bumps != 0; bumps &= bumps - 1)
+                moves[count++] = Move.of(ActionType.ATTACK_OPPONENT, siren, opponentSiren, Long.numberOfTrailingZeros(bumps));
+        }
+
+        // Transfer rings between the siren and adjacent sailors
+        for (long adjacent = sirenNeighbours & sailors; adjacent != 0; adjacent &= adjacent - 1){
+            int sailor = Long.numberOfTrailingZeros(adjacent);
+            int sailorStack = board.getRingStack(sailor);
+            if (!RingStack.isEmpty(sirenStack) && !RingStack.isFull(sailorStack))
+                moves[count++] = Move.of(ActionType.TRANSFER_RING_TO_SAILOR, siren, sailor);
+            if (!RingStack.isFull(sirenStack) && RingStack.peek(sailorStack) == sirenRing)
+                moves[count++] = Move.of(ActionType.TRANSFER_RING_TO_SIREN, sailor, siren);
+        }
+
+        // Move controlled sailors one cell orthogonally toward our island (onto it scores the sailor)
+        int island = BitBoard.first(board.getIslandMask(player));
+        long open = ~occupied & ~board.getIslandMask(opponent);
+        for (long controlled = island < 0? 0L: sailors; controlled != 0; controlled &= controlled - 1){
+            int sailor = Long.numberOfTrailingZeros(controlled);
+            if (RingStack.peek(board.getRingStack(sailor)) != sirenRing)
+                continue;
+            int distance = BitBoard.distance(sailor, island);
+            for (long targets = BitBoard.orthogonalNeighboursOf(sailor) & open; targets != 0; targets &= targets - 1){
+                int target = Long.numberOfTrailingZeros(targets);
+                if (BitBoard.distance(target, island) < distance)
+                    moves[count++] = Move.of(ActionType.MOVE_SAILOR, sailor, target);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Whether the current player has any legal move, checked without generating them; cheapest moves
+     * first so the usual answer comes after a mask or two.  A player without one is trapped.
+     */
+    public static boolean hasLegalMove(Game game){
+        return hasLegalMove(game, game.getCurrentPlayer());
+    }
+
+    /**
+     * Whether the player would have a legal move if it were their turn
+     */
+    public static boolean hasLegalMove(Game game, PieceType player){
+        Board board = game.getBoard();
+        PieceType opponent = player == PieceType.GOLD_SIREN? PieceType.SILVER_SIREN: PieceType.GOLD_SIREN;
+        int sirenRing = RingStack.code(player);
+        int siren = BitBoard.first(board.getPieceMask(player));
+        if (siren < 0)
+            return false;
+
+        long occupied = board.getOccupiedMask();
+        long islands  = board.getIslandMask();
+        long sailors  = board.getSailorMask();
+        long sirenNeighbours = BitBoard.neighboursOf(siren, true);
+        int sirenStack = board.getRingStack(siren);
+
+        if ((sirenNeighbours & ~occupied & ~islands) != 0)
+            return true;
+
+        for (long adjacent = sirenNeighbours & sailors; adjacent != 0; adjacent &= adjacent - 1){
+            int sailorStack = board.getRingStack(Long.numberOfTrailingZeros(adjacent));
+            if (!RingStack.isEmpty(sirenStack) && !RingStack.isFull(sailorStack))
+                return true;
+            if (!RingStack.isFull(sirenStack) && RingStack.peek(sailorStack) == sirenRing)
+                return true;
+        }
+
+        int opponentSiren = BitBoard.first(board.getPieceMask(opponent));
+        if (opponentSiren >= 0 && BitBoard.isSet(sirenNeighbours, opponentSiren) && !BitBoard.isSet(islands, opponentSiren)
+                && RingStack.size(sirenStack) > RingStack.size(board.getRingStack(opponentSiren))
+                && (BitBoard.neighboursOf(opponentSiren, true) & ~occupied & ~islands) != 0)
+            return true;
+
+        int island = BitBoard.first(board.getIslandMask(player));
+        long open = ~occupied & ~board.getIslandMask(opponent);
+        for (long controlled = island < 0? 0L: sailors; controlled != 0; controlled &= controlled - 1){
+            int sailor = Long.numberOfTrailingZeros(controlled);
+            if (RingStack.peek(board.getRingStack(sailor)) != sirenRing)
+                continue;
+            int distance = BitBoard.distance(sailor, island);
+            for (long targets = BitBoard.orthogonalNeighboursOf(sailor) & open; targets != 0; targets &= targets - 1){
+                if (BitBoard.distance(Long.numberOfTrailingZeros(targets), island) < distance)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Count the player's legal moves as if it were their turn, without generating them; siren moves
+     * and attacks are counted a mask at a time.  Agrees with generateLegalMoves on the player's turn.
+     */
+    public static int countMobility(Game game, PieceType player){
+        Board board = game.getBoard();
+        PieceType opponent = player == PieceType.GOLD_SIREN? PieceType.SILVER_SIREN: PieceType.GOLD_SIREN;
+        int sirenRing = RingStack.code(player);
+        int siren = BitBoard.first(board.getPieceMask(player));
+        if (siren < 0)
+            return 0;
+
+        long occupied = board.getOccupiedMask();
+        long islands  = board.getIslandMask();
+        long sailors  = board.getSailorMask();
+        long sirenNeighbours = BitBoard.neighboursOf(siren, true);
+        int sirenStack = board.getRingStack(siren);
+
+        int count = Long.bitCount(sirenNeighbours & ~occupied & ~islands);
+
+        int opponentSiren = BitBoard.first(board.getPieceMask(opponent));
+        if (opponentSiren >= 0 && BitBoard.isSet(sirenNeighbours, opponentSiren) && !BitBoard.isSet(islands, opponentSiren)
+                && RingStack.size(sirenStack) > RingStack.size(board.getRingStack(opponentSiren)))
+            count += Long.bitCount(BitBoard.neighboursOf(opponentSiren, true) & ~occupied & ~islands);
+
+        for (long adjacent = sirenNeighbours & sailors; adjacent != 0; adjacent &= adjacent - 1){
+            int sailorStack = board.getRingStack(Long.numberOfTrailingZeros(adjacent));
+            if (!RingStack.isEmpty(sirenStack) && !RingStack.isFull(sailorStack))
+                ++count;
+            if (!RingStack.isFull(sirenStack) && RingStack.peek(sailorStack) == sirenRing)
+                ++count;
+        }
+
+        int island = BitBoard.first(board.getIslandMask(player));
+        long open = ~occupied & ~board.getIslandMask(opponent);
+        for (long controlled = island < 0? 0L: sailors; controlled != 0; controlled &= controlled - 1){
+            int sailor = Long.numberOfTrailingZeros(controlled);
+            if (RingStack.peek(board.getRingStack(sailor)) != sirenRing)
+                continue;
+            int distance = BitBoard.distance(sailor, island);
+            for (long targets = BitBoard.orthogonalNeighboursOf(sailor) & open; targets != 0; targets &= targets - 1){
+                if (BitBoard.distance(Long.numberOfTrailingZeros(targets), island) < distance)
+                    ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Play a legal move for the current player, score any sailor it lands on an island and pass the
+     * turn once the player has used up their actions.  The move is recorded on the game's undo stack so
+     * it can be taken back with undo.
+     */
+    public static void apply(Game game, int move){
+        Board board = game.getBoard();
+        Cell source = board.getCell(Move.source(move));
+        Cell target = board.getCell(Move.target(move));
+        long record = (move & MOVE_MASK) | ((long) game.getActionsTaken() << ACTIONS_SHIFT);
+        Piece scored = null;
+        switch (Move.type(move)){
+            case MOVE_SIREN: {
+                target.setPiece(source.getPiece());
+                source.setPiece(null);
+                break;
+            }
+            case ATTACK_OPPONENT: {
+                board.getCell(Move.bumpTarget(move)).setPiece(target.getPiece());
+                target.setPiece(source.getPiece());
+                source.setPiece(null);
+                break;
+            }
+            case TRANSFER_RING_TO_SAILOR:
+            case TRANSFER_RING_TO_SIREN: {
+                target.getPiece().pushRing(source.getPiece().popRing());
+                break;
+            }
+            case MOVE_SAILOR: {
+                target.setPiece(source.getPiece());
+                source.setPiece(null);
+                if (target.getIslandOwner() != null){
+                    scored = target.getPiece();
+                    record |= scoreSailor(game, target);
+                }
+                break;
+            }
+        }
+
+        game.setActionsTaken(game.getActionsTaken() + 1);
+        if (game.getActionsTaken() >= game.getActionsPerTurn()){
+            game.setCurrentPlayer(game.getOpponent());
+            game.setActionsTaken(0);
+            game.setTurn(game.getTurn() + 1);
+            record |= TURN_PASSED;
+        }
+        game.pushUndo(record, scored);
+    }
+
+    /**
+     * Take back the last move played with apply, restoring pieces, rings, scores and the turn
+     */
+    public static void undo(Game game){
+        long record = game.peekUndo();
+        Piece scored = game.popUndo();
+        int move = (int) (record & MOVE_MASK);
+        Board board = game.getBoard();
+        Cell source = board.getCell(Move.source(move));
+        Cell target = board.getCell(Move.target(move));
+
+        if ((record & TURN_PASSED) != 0){
+            game.setCurrentPlayer(game.getOpponent());
+            game.setTurn(game.getTurn() - 1);
+        }
+        game.setActionsTaken((int) ((record >>> ACTIONS_SHIFT) & 0x3));
+
+        switch (Move.type(move)){
+            case MOVE_SIREN: {
+                source.setPiece(target.getPiece());
+                target.setPiece(null);
+                break;
+            }
+            case ATTACK_OPPONENT: {
+                Cell bumpTarget = board.getCell(Move.bumpTarget(move));
+                source.setPiece(target.getPiece());
+                target.setPiece(bumpTarget.getPiece());
+                bumpTarget.setPiece(null);
+                break;
+            }
+            case TRANSFER_RING_TO_SAILOR:
+            case TRANSFER_RING_TO_SIREN: {
+                source.getPiece().pushRing(target.getPiece().popRing());
+                break;
+            }
+            case MOVE_SAILOR: {
+                if (scored != null){
+                    unscoreSailor(game, record);
+                    target.setPiece(scored);
+                }
+                source.setPiece(target.getPiece());
+                target.setPiece(null);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Remove the sailor on an island cell, credit the player whose ring is on top and hand back at most
+     * one ring to each siren (rings that don't fit, and all others, leave the game)
+     * @return undo flags describing what was changed
+     */
+    private static long scoreSailor(Game game, Cell cell){
+        Piece sailor = cell.getPiece();
+        long flags = SCORED;
+        if (sailor.peekTopRing() == PieceType.GOLD_SIREN){
+            game.adjGoldSailorsScored(1);
+            flags |= SCORED_FOR_GOLD;
+        }
+        else {
+            game.adjSilverSailorsScored(1);
+        }
+
+        Board board = game.getBoard();
+        int stack = board.getRingStack(cell.getIndex());
+        if (RingStack.contains(stack, RingStack.GOLD)){
+            Piece goldSiren = board.findPieceWithType(PieceType.GOLD_SIREN);
+            if (goldSiren != null && goldSiren.pushRing(PieceType.GOLD_SIREN))
+                flags |= GOLD_RING_RETURNED;
+        }
+        if (RingStack.contains(stack, RingStack.SILVER)){
+            Piece silverSiren = board.findPieceWithType(PieceType.SILVER_SIREN);
+            if (silverSiren != null && silverSiren.pushRing(PieceType.SILVER_SIREN))
+                flags |= SILVER_RING_RETURNED;
+        }
+        cell.setPiece(null);
+        return flags;
+    }
+
+    private static void unscoreSailor(Game game, long record){
+        Board board = game.getBoard();
+        if ((record & GOLD_RING_RETURNED) != 0)
+            board.findPieceWithType(PieceType.GOLD_SIREN).popRing();
+        if ((record & SILVER_RING_RETURNED) != 0)
+            board.findPieceWithType(PieceType.SILVER_SIREN).popRing();
+        if ((record & SCORED_FOR_GOLD) != 0)
+            game.adjGoldSailorsScored(-1);
+        else
+            game.adjSilverSailorsScored(-1);
+    }
+
+    /**
+     * @return the siren that has won the game, or null if the game is still going
+     */
+    public static PieceType getWinner(Game game){
+        if (game.getGoldSailorsScored() >= WINNING_SCORE)
+            return PieceType.GOLD_SIREN;
+        if (game.getSilverSailorsScored() >= WINNING_SCORE)
+            return PieceType.SILVER_SIREN;
+        return null;
+    }
+
+    public static boolean isGameOver(Game game){
+        return getWinner(game) != null;
+    }
+}
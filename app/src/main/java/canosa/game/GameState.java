@@ -0,0 +1,180 @@
+package canosa.game;
+
+import canosa.game.board.BitBoard;
+import canosa.game.board.Board;
+import canosa.game.board.Cell;
+import canosa.game.board.RingStack;
+
+/**
+ * Immutable snapshot of a position packed into four longs, safe to hand between threads without locks
+ * or copies.  Captures everything Game.getHash() does and more: pieces, ring stacks, islands, scores,
+ * the player to move, the action within the turn and the turn number.  The undo history, phase and
+ * phase step are not part of it.
+ *
+ * Layout:
+ *  board:  sailor mask (36 bits), then gold siren, silver siren, gold island and silver island cells
+ *          (6 bits each, 63 if absent)
+ *  rings0, rings1: the ring stack (8 bits) of each piece, in cell order, eight pieces per long
+ *  status: gold score (8 bits), silver score (8), silver to move (1), actions taken (2), turn (32)
+ *
+ * @author aaron.mitchell
+ */
+public final class GameState {
+    private static final int NONE = 63;
+    private static final int CELL_BITS = 6;
+    private static final long CELL_MASK = (1L << CELL_BITS) - 1;
+    private static final int GOLD_SIREN_SHIFT    = BitBoard.CELLS;
+    private static final int SILVER_SIREN_SHIFT  = GOLD_SIREN_SHIFT + CELL_BITS;
+    private static final int GOLD_ISLAND_SHIFT   = SILVER_SIREN_SHIFT + CELL_BITS;
+    private static final int SILVER_ISLAND_SHIFT = GOLD_ISLAND_SHIFT + CELL_BITS;
+
+    private static final int STACK_BITS = 8;
+    private static final int STACKS_PER_LONG = Long.SIZE / STACK_BITS;
+    private static final int MAX_PIECES = 2 * STACKS_PER_LONG;
+
+    private static final int SILVER_SCORE_SHIFT  = 8;
+    private static final int SILVER_TO_MOVE_SHIFT = 16;
+    private static final int ACTIONS_SHIFT       = 17;
+    private static final int TURN_SHIFT          = 19;
+
+    private final long board;
+    private final long rings0;
+    private final long rings1;
+    private final long status;
+
+    private GameState(long board, long rings0, long rings1, long status){
+        this.board = board;
+        this.rings0 = rings0;
+        this.rings1 = rings1;
+        this.status = status;
+    }
+
+    public static GameState from(Game game){
+        Board b = game.getBoard();
+        long board = b.getSailorMask()
+                | (cell(b.getPieceMask(PieceType.GOLD_SIREN)) << GOLD_SIREN_SHIFT)
+                | (cell(b.getPieceMask(PieceType.SILVER_SIREN)) << SILVER_SIREN_SHIFT)
+                | (cell(b.getIslandMask(PieceType.GOLD_SIREN)) << GOLD_ISLAND_SHIFT)
+                | (cell(b.getIslandMask(PieceType.SILVER_SIREN)) << SILVER_ISLAND_SHIFT);
+
+        long[] rings = new long[2];
+        int piece = 0;
+        for (long occupied = b.getOccupiedMask(); occupied != 0; occupied &= occupied - 1, ++piece){
+            if (piece == MAX_PIECES)
+                throw new IllegalStateException("Too many pieces on the board for a GameState");
+            long stack = b.getRingStack(Long.numberOfTrailingZeros(occupied));
+            rings[piece / STACKS_PER_LONG] |= stack << ((piece % STACKS_PER_LONG) * STACK_BITS);
+        }
+
+        long status = (game.getGoldSailorsScored() & 0xFFL)
+                | ((game.getSilverSailorsScored() & 0xFFL) << SILVER_SCORE_SHIFT)
+                | ((game.getCurrentPlayer() == PieceType.SILVER_SIREN? 1L: 0L) << SILVER_TO_MOVE_SHIFT)
+                | ((game.getActionsTaken() & 0x3L) << ACTIONS_SHIFT)
+                | ((game.getTurn() & 0xFFFFFFFFL) << TURN_SHIFT);
+        return new GameState(board, rings[0], rings[1], status);
+    }
+
+    /**
+     * @return a new game in the PLAY phase holding this position, with no undo history
+     */
+    public Game toGame(){
+        Game game = new Game();
+        Board b = game.getBoard();
+        setIsland(b, GOLD_ISLAND_SHIFT, PieceType.GOLD_SIREN);
+        setIsland(b, SILVER_ISLAND_SHIFT, PieceType.SILVER_SIREN);
+
+        long sailors = board & BitBoard.ALL;
+        long goldSiren = cellBit(GOLD_SIREN_SHIFT);
+        long silverSiren = cellBit(SILVER_SIREN_SHIFT);
+        int piece = 0;
+        for (long occupied = sailors | goldSiren | silverSiren; occupied != 0; occupied &= occupied - 1, ++piece){
+            int index = Long.numberOfTrailingZeros(occupied);
+            long bit = BitBoard.bit(index);
+            PieceType type = (bit & goldSiren) != 0? PieceType.GOLD_SIREN: (bit & silverSiren) != 0? PieceType.SILVER_SIREN: PieceType.SAILOR;
+            b.getCell(index).setPiece(new Piece(type, getRingStack(piece)));
+        }
+
+        game.setGoldSailorsScored(getGoldSailorsScored());
+        game.setSilverSailorsScored(getSilverSailorsScored());
+        game.setCurrentPlayer(getCurrentPlayer());
+        game.setActionsTaken(getActionsTaken());
+        game.setTurn(getTurn());
+        game.setPhase(Phase.PLAY);
+        return game;
+    }
+
+    private void setIsland(Board b, int shift, PieceType owner){
+        int index = (int) ((board >>> shift) & CELL_MASK);
+        if (index != NONE)
+            b.getCell(index).setIslandOwner(owner);
+    }
+
+    private long cellBit(int shift){
+        int index = (int) ((board >>> shift) & CELL_MASK);
+        return index == NONE? 0L: BitBoard.bit(index);
+    }
+
+    private static long cell(long mask){
+        return mask == 0? NONE: Long.numberOfTrailingZeros(mask);
+    }
+
+    private int getRingStack(int piece){
+        long rings = piece < STACKS_PER_LONG? rings0: rings1;
+        return (int) ((rings >>> ((piece % STACKS_PER_LONG) * STACK_BITS)) & 0xFF);
+    }
+
+    /**
+     * @return the packed ring stack (see RingStack) of the piece on the cell, or RingStack.EMPTY
+     */
+    public int getRingStack(Cell cell){
+        long occupied = (board & BitBoard.ALL) | cellBit(GOLD_SIREN_SHIFT) | cellBit(SILVER_SIREN_SHIFT);
+        int index = cell.getIndex();
+        if (!BitBoard.isSet(occupied, index))
+            return RingStack.EMPTY;
+        return getRingStack(Long.bitCount(occupied & (BitBoard.bit(index) - 1)));
+    }
+
+    public int getGoldSailorsScored(){
+        return (int) (status & 0xFF);
+    }
+
+    public int getSilverSailorsScored(){
+        return (int) ((status >>> SILVER_SCORE_SHIFT) & 0xFF);
+    }
+
+    public PieceType getCurrentPlayer(){
+        return ((status >>> SILVER_TO_MOVE_SHIFT) & 1) != 0? PieceType.SILVER_SIREN: PieceType.GOLD_SIREN;
+    }
+
+    public int getActionsTaken(){
+        return (int) ((status >>> ACTIONS_SHIFT) & 0x3);
+    }
+
+    public int getTurn(){
+        return (int) ((status >>> TURN_SHIFT) & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if (this == o)
+            return true;
+        if (!(o instanceof GameState))
+            return false;
+        GameState other = (GameState) o;
+        return board == other.board && rings0 == other.rings0 && rings1 == other.rings1 && status == other.status;
+    }
+
+    @Override
+    public int hashCode(){
+        long h = board * 0x9E3779B97F4A7C15L;
+        h = (h ^ rings0) * 0x9E3779B97F4A7C15L;
+        h = (h ^ rings1) * 0x9E3779B97F4A7C15L;
+        h = (h ^ status) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString(){
+        return String.format("GameState[%016x %016x %016x %016x]", board, rings0, rings1, status);
+    }
+}
@@ -0,0 +1,87 @@
+package canosa.game;
+
+import canosa.game.board.BitBoard;
+import canosa.game.board.Board;
+
+/**
+ * An Action packed into an int so the engine can generate and play moves without allocating.
+ *
+ * Bits 0-5 hold the source cell index, 6-11 the target cell index, 12-17 the bump target cell index
+ * (attacks only) and 18-20 the ActionType ordinal.
+ *
+ * @author aaron.mitchell
+ */
+public final class Move {
+    public static final int NONE = 0;
+
+    private static final int CELL_MASK = 0x3F;
+    private static final int TARGET_SHIFT = 6;
+    private static final int BUMP_SHIFT   = 12;
+    private static final int TYPE_SHIFT   = 18;
+
+    private static final ActionType[] TYPES = ActionType.values();
+
+    public static int of(ActionType type, int source, int target){
+        return of(type, source, target, 0);
+    }
+
+    public static int of(ActionType type, int source, int target, int bumpTarget){
+        return (type.ordinal() << TYPE_SHIFT) | (bumpTarget << BUMP_SHIFT) | (target << TARGET_SHIFT) | source;
+    }
+
+    public static int of(Action action){
+        return of(
+                action.getType(),
+                action.getSourceCell().getIndex(),
+                action.getTargetCell().getIndex(),
+                action.getBumpTargetCell() != null? action.getBumpTargetCell().getIndex(): 0);
+    }
+
+    public static ActionType type(int move){
+        return TYPES[move >>> TYPE_SHIFT];
+    }
+
+    public static int source(int move){
+        return move & CELL_MASK;
+    }
+
+    public static int target(int move){
+        return (move >>> TARGET_SHIFT) & CELL_MASK;
+    }
+
+    public static int bumpTarget(int move){
+        return (move >>> BUMP_SHIFT) & CELL_MASK;
+    }
+
+    public static Action toAction(int move, Board board){
+        ActionType type = type(move);
+        return new Action(
+                type,
+                board.getCell(source(move)),
+                board.getCell(target(move)),
+                type == ActionType.ATTACK_OPPONENT? board.getCell(bumpTarget(move)): null);
+    }
+
+    public static String toString(int move){
+        StringBuilder sb = new StringBuilder(type(move).toString());
+        sb.append(" ");
+        appendCell(sb, source(move));
+        sb.append(" -> ");
+        appendCell(sb, target(move));
+        if (type(move) == ActionType.ATTACK_OPPONENT){
+            sb.append(" bump ");
+            appendCell(sb, bumpTarget(move));
+        }
+        return sb.toString();
+    }
+
+    private static void appendCell(StringBuilder sb, int index){
+        sb.append("[");
+        sb.append(BitBoard.x(index));
+        sb.append(", ");
+        sb.append(BitBoard.y(index));
+        sb.append("]");
+    }
+
+    private Move(){}
+}
@@ -0,0 +1,132 @@
+package canosa.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Perft: counts the leaves of the legal action tree to a fixed depth, to prove the move generator and
+ * apply/undo exact.  Every action is one ply, so the opening player's single action and each of the two
+ * actions of later turns are plies of their own.  A position with a winner has no actions.
+ *
+ * Usage: Perft [depth] [threads]
+ *
+ * @author aaron.mitchell
+ */
+public class Perft {
+    public static void main(String[] args) throws InterruptedException {
+        int depth = args.length > 0? Integer.parseInt(args[0]): 6;
+        int threads = args.length > 1? Integer.parseInt(args[1]): Runtime.getRuntime().availableProcessors();
+        Game game = new Game();
+        game.init();
+
+        Result result = divide(game, depth, threads);
+        for (int i = 0; i < result.moves.length; ++i)
+            System.out.println(Move.toString(result.moves[i]) + ": " + result.counts[i]);
+        System.out.printf("Depth %d: %d nodes in %.3f s (%.0f nodes/sec) on %d threads%n",
+                depth, result.nodes, result.nanos / 1e9, result.getNodesPerSecond(), threads);
+    }
+
+    /**
+     * @return number of leaf positions depth actions from the game's position
+     */
+    public static long perft(Game game, int depth){
+        return perft(game, depth, new int[Math.max(1, depth)][GameEngine.MAX_MOVES]);
+    }
+
+    private static long perft(Game game, int depth, int[][] moves){
+        if (depth == 0)
+            return 1;
+        if (GameEngine.isGameOver(game))
+            return 0;
+        int[] plyMoves = moves[depth - 1];
+        int count = GameEngine.generateLegalMoves(game, plyMoves);
+        if (depth == 1)
+            return count;
+        long nodes = 0;
+        for (int i = 0; i < count; ++i){
+            game.makeMove(plyMoves[i]);
+            nodes += perft(game, depth - 1, moves);
+            game.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Perft split at the root: each root action is counted on its own thread and copy of the game
+     * @return the total and the count below each root action
+     */
+    public static Result divide(Game game, int depth, int threads) throws InterruptedException {
+        long start = System.nanoTime();
+        int[] rootMoves = new int[GameEngine.MAX_MOVES];
+        int count = depth == 0 || GameEngine.isGameOver(game)? 0: GameEngine.generateLegalMoves(game, rootMoves);
+
+        Result result = new Result();
+        result.moves = new int[count];
+        result.counts = new long[count];
+        if (depth == 0)
+            result.nodes = 1;
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Long>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; ++i){
+                int move = rootMoves[i];
+                Game copy = game.copy();
+                futures.add(pool.submit(() -> {
+                    copy.makeMove(move);
+                    return perft(copy, depth - 1);
+                }));
+            }
+            for (int i = 0; i < count; ++i){
+                result.moves[i] = rootMoves[i];
+                result.counts[i] = futures.get(i).get();
+                result.nodes += result.counts[i];
+            }
+        }
+        catch (ExecutionException e){
+            throw new IllegalStateException("Perft failed", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    public static class Result {
+        private long nodes = 0;
+        private long nanos = 0;
+        private int[] moves;
+        private long[] counts;
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getNodesPerSecond() {
+            return nanos == 0? 0.0: nodes * 1e9 / nanos;
+        }
+
+        /**
+         * @return the root actions, as packed moves (see Move)
+         */
+        public int[] getMoves() {
+            return moves.clone();
+        }
+
+        /**
+         * @return the leaf count below each root action, in the order of getMoves()
+         */
+        public long[] getCounts() {
+            return counts.clone();
+        }
+    }
+}
@@ -1,49 +1,113 @@
 package canosa.game;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import canosa.game.board.Cell;
+import canosa.game.board.RingStack;
+import java.util.AbstractList;
+import java.util.List;
 
 /**
+ * A siren or sailor.  Its rings are packed into a single int (see RingStack), so copying or hashing a
+ * stack costs nothing; getRings() offers them as a read-only list, top ring first.
  *
  * @author aaron.mitchell
  */
 public class Piece {
     private PieceType type;
-    private Deque<PieceType> rings = new ArrayDeque<>(3);
+    private int rings = RingStack.EMPTY;
+    private Cell cell;  // Cell currently holding this piece, maintained by Cell.setPiece
+    private final List<PieceType> ringView = new RingView();
 
     public Piece(PieceType type){
         this.type = type;
     }
 
+    /**
+     * @param startingRings the rings, top ring first
+     */
     public Piece(PieceType type, PieceType ... startingRings){
         this.type = type;
-        for (PieceType ring: startingRings)
-            this.rings.add(ring);
+        for (int i = startingRings.length - 1; i >= 0; --i)
+            this.rings = RingStack.push(this.rings, startingRings[i]);
+    }
+
+    /**
+     * @param ringStack the rings packed as a RingStack
+     */
+    Piece(PieceType type, int ringStack){
+        this.type = type;
+        this.rings = ringStack;
+    }
+
+    /**
+     * Copy a piece and its rings (but not its place on the board)
+     */
+    public Piece(Piece other){
+        this.type = other.type;
+        this.rings = other.rings;
     }
 
     public PieceType getType() {
         return type;
     }
 
-    public Deque<PieceType> getRings() {
+    /**
+     * @return a read-only live view of the rings, top ring first
+     */
+    public List<PieceType> getRings() {
+        return ringView;
+    }
+
+    /**
+     * @return the rings packed as a RingStack
+     */
+    public int getRingStack() {
         return rings;
     }
 
+    public Cell getCell() {
+        return cell;
+    }
+
+    public void setCell(Cell cell) {
+        this.cell = cell;
+    }
+
     public PieceType peekTopRing(){
-        return rings.peek();
+        return RingStack.type(RingStack.peek(rings));
     }
 
     public boolean pushRing(PieceType type){
-        if (rings.size() < 3){
-            rings.push(type);
+        if (!RingStack.isFull(rings)){
+            rings = RingStack.push(rings, type);
+            if (cell != null)
+                cell.ringsChanged();
             return true;
         }
         return false;
     }
 
     public PieceType popRing(){
-        if (!rings.isEmpty())
-            return rings.pop();
+        if (!RingStack.isEmpty(rings)){
+            PieceType ring = RingStack.type(RingStack.peek(rings));
+            rings = RingStack.pop(rings);
+            if (cell != null)
+                cell.ringsChanged();
+            return ring;
+        }
         return null;
     }
+
+    private class RingView extends AbstractList<PieceType> {
+        @Override
+        public PieceType get(int index){
+            if (index < 0 || index >= RingStack.size(rings))
+                throw new IndexOutOfBoundsException("Ring " + index + " of " + RingStack.size(rings));
+            return RingStack.type(RingStack.get(rings, index));
+        }
+
+        @Override
+        public int size(){
+            return RingStack.size(rings);
+        }
+    }
 }
@@ -1,153 +1,189 @@
 package canosa.game.board;
 
-import canosa.game.board.Board;
-import canosa.game.board.Cell;
-import java.util.*;
+import canosa.monitor.GameMetrics;
+import canosa.monitor.PathQueryEvent;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
+/**
+ * A* shortest paths over the 6x6 board, working on cell indexes (see BitBoard) with primitive arrays: an
+ * index-based binary heap for the open list and a bit mask for the closed set.  An instance owns its work
+ * arrays, so findPath allocates nothing; the static methods use one instance per thread and report each
+ * query to GameMetrics and Flight Recorder (PathQueryEvent).
+ *
+ * Every step costs one.  Paths may only pass through cells that are empty and not islands, but the end
+ * cell itself may be occupied (moving toward a sailor) or an island (moving home).  Sirens move to any
+ * of the eight neighbouring cells, sailors only orthogonally; with mustMoveTowardEnd no step may take the
+ * piece farther from the end cell.
+ *
+ * @author aaron.mitchell
+ */
 public class AStarAlgorithm {
+    private static final ThreadLocal<AStarAlgorithm> WORKSPACE = ThreadLocal.withInitial(AStarAlgorithm::new);
+
+    // Open list: heap of cell indexes ordered by f, and where each cell sits in it (-1 if it is not there)
+    private final int[] heap = new int[BitBoard.CELLS];
+    private final int[] heapPosition = new int[BitBoard.CELLS];
+    private int heapSize = 0;
+
+    private final int[] g = new int[BitBoard.CELLS];
+    private final int[] f = new int[BitBoard.CELLS];
+    private final int[] parent = new int[BitBoard.CELLS];
+    private final int[] path = new int[BitBoard.CELLS];
+
     public static List<Cell> findShortestPath(Cell start, Cell end, Board board){
         return findShortestPath(start, end, board, false);
     }
 
+    /**
+     * Sirens on the start cell move diagonally as well, anything else only orthogonally
+     * @return the cells to step through, excluding start and ending with end, or null if there is no path
+     */
     public static List<Cell> findShortestPath(Cell start, Cell end, Board board, boolean mustMoveTowardEnd){
-        Map<Cell, Node> locationNodes = new HashMap<>();
-        board.getCells().stream().forEach(l -> locationNodes.put(l, new Node(l)));
-
-        // Initialize the open list
-        Queue<Node> openList = new PriorityQueue<>(new Comparator<Node>() {
-            @Override
-            public int compare(Node o1, Node o2) {
-                return o1.f < o2.f? 1: (o1.f > o2.f? -1: 0);
-            }
-        });
-        // Initialize the closed list (visited)
-        List<Node> visited = new ArrayList<>();
-
-        // put the starting node on the open list (you can leave its f at zero)
-        Node startNode = new Node(start);
-        startNode.f = 0;
-        openList.add(startNode);
-
         boolean incDiagonal = start.getPiece() != null && start.getPiece().getType().isSiren();
-
-        // while the open list is not empty
-        while (!openList.isEmpty()) {
-            Node current = openList.remove();
-
-            if (!visited.contains(current)){
-                visited.add(current);
-
-                if (current.location == end)
-                    return reconstructPath(startNode, current, board);
-
-                List<Node> neighbors =
-                        board.getNeighboringCells(current.location, incDiagonal).stream()
-                                .map(cell -> locationNodes.values().stream().filter(node -> node.location == cell).findFirst().get())
-                                .collect(Collectors.toList());
-
-                for (Node neighbor : neighbors) {
-                    if (!visited.contains(neighbor)){
-                        // increment hops from start
-                        neighbor.hopsFromStart = current.hopsFromStart + 1;
-
-                        // calculate predicted distance to the end node
-                        int predictedDistance = calcEstimatedCostToMove(neighbor.location, end, current.location, board, mustMoveTowardEnd);
-
-                        if (predictedDistance > 90){
-                            // If we returned a very large cost, this path isn't available
-                            continue;
-                        }
-
-                        // calculate distance to neighbor. 2. calculate dist from start node
-                        int totalDistance = calcActualCostToMove(startNode, neighbor) + predictedDistance;
-
-                        // update n's distance
-                        neighbor.f = totalDistance;
-
-                        // if a node with the same position as successor is in the OPEN list which has a lower f than successor, skip this successor
-                        Optional<Node> betterNode = openList.stream().filter(n -> n.hopsFromStart == neighbor.hopsFromStart && n.f < neighbor.f).findFirst();
-                        if (betterNode.isPresent())
-                            continue;
-
-                        // if a node with the same position as successor is in the CLOSED list which has a lower f than successor, skip this successor
-                        betterNode = visited.stream().filter(n -> n.hopsFromStart == neighbor.hopsFromStart && n.f < neighbor.f).findFirst();
-                        if (betterNode.isPresent())
-                            continue;
-
-                        // otherwise, add  the node to the open list
-                        neighbor.parent = current;
-                        openList.add(neighbor);
-                    }
-                }
-            }
+        AStarAlgorithm workspace = WORKSPACE.get();
+        PathQueryEvent event = new PathQueryEvent();
+        event.begin();
+        long began = System.nanoTime();
+        int length = workspace.findPath(board, start.getIndex(), end.getIndex(), incDiagonal, mustMoveTowardEnd, workspace.path);
+        GameMetrics.get().recordPathQuery(System.nanoTime() - began);
+        if (event.shouldCommit()){
+            event.start = start.getIndex();
+            event.end = end.getIndex();
+            event.diagonal = incDiagonal;
+            event.length = length;
+            event.commit();
         }
+        if (length < 0)
+            return null;
+        List<Cell> cells = new ArrayList<>(length);
+        for (int i = 0; i < length; ++i)
+            cells.add(board.getCell(workspace.path[i]));
+        return cells;
+    }
 
-        return null;
+    /**
+     * Find a shortest path between two cells of the board, avoiding pieces and islands other than the end cell
+     * @param path receives the cell indexes of the path, excluding start and ending with end
+     * @return the number of cells written to path, or -1 if there is no path
+     */
+    public int findPath(Board board, int start, int end, boolean incDiagonal, boolean mustMoveTowardEnd, int[] path){
+        long blocked = (board.getOccupiedMask() | board.getIslandMask()) & ~BitBoard.bit(end);
+        return findPath(blocked, start, end, incDiagonal, mustMoveTowardEnd, path);
     }
 
-    private static List<Cell> reconstructPath(Node startNode, Node endNode, Board board){
-        List<Cell> path = new ArrayList<>();
-        Node current = endNode;
-        while (current.location != startNode.location){
-            Node parent = current.parent;
-            final Cell currentLocation = current.location;
-            path.add(currentLocation);
-            current = parent;
+    /**
+     * Find a shortest path between two cells that does not pass through any blocked cell
+     * @param blocked mask of the cells the path may not enter
+     * @param path receives the cell indexes of the path, excluding start and ending with end
+     * @return the number of cells written to path, or -1 if there is no path
+     */
+    public int findPath(long blocked, int start, int end, boolean incDiagonal, boolean mustMoveTowardEnd, int[] path){
+        if (start == end)
+            return 0;
+
+        long closed = 0L;
+        long seen = BitBoard.bit(start);  // Cells with a valid g: open or closed
+        heapSize = 0;
+        g[start] = 0;
+        f[start] = estimate(start, end, incDiagonal);
+        parent[start] = -1;
+        push(start);
+
+        while (heapSize > 0){
+            int current = pop();
+            if (current == end)
+                return reconstructPath(start, end, path);
+            closed |= BitBoard.bit(current);
+
+            int distance = BitBoard.distance(current, end);
+            long neighbours = BitBoard.neighboursOf(current, incDiagonal) & ~blocked & ~closed;
+            for (; neighbours != 0; neighbours &= neighbours - 1){
+                int neighbour = Long.numberOfTrailingZeros(neighbours);
+                if (mustMoveTowardEnd && BitBoard.distance(neighbour, end) > distance)
+                    continue;
+                int cost = g[current] + 1;
+                if (BitBoard.isSet(seen, neighbour) && cost >= g[neighbour])
+                    continue;
+                g[neighbour] = cost;
+                f[neighbour] = cost + estimate(neighbour, end, incDiagonal);
+                parent[neighbour] = current;
+                if (BitBoard.isSet(seen, neighbour))
+                    siftUp(heapPosition[neighbour]);
+                else
+                    push(neighbour);
+                seen |= BitBoard.bit(neighbour);
+            }
         }
-        Collections.reverse(path);
-        return path;
+        return -1;
     }
 
-    // Return g
-    private static int calcActualCostToMove(Node location1, Node location2){
-        int cost = location2.hopsFromStart - location1.hopsFromStart;
-        return cost;
+    private int reconstructPath(int start, int end, int[] path){
+        int length = g[end];
+        for (int cell = end, i = length - 1; cell != start; cell = parent[cell], --i)
+            path[i] = cell;
+        return length;
     }
 
-    // Return h
-    private static int calcEstimatedCostToMove(Cell location1, Cell location2, Cell current, Board board, boolean mustMoveTowardEnd){
-        if (location2.getPiece() != null || location2.getIslandOwner() != null)
-            return 99;
-        if (mustMoveTowardEnd){
-            int d1 = getDistanceBetween(current, location2);
-            int d2 = getDistanceBetween(location1, location2);
-            if (d2 > d1)
-                return 99;
-        }
-        return 1;
+    // Steps needed on an empty board: Manhattan distance orthogonally, Chebyshev distance with diagonals
+    private static int estimate(int cell, int end, boolean incDiagonal){
+        int dx = Math.abs(BitBoard.x(cell) - BitBoard.x(end));
+        int dy = Math.abs(BitBoard.y(cell) - BitBoard.y(end));
+        return incDiagonal? Math.max(dx, dy): dx + dy;
     }
 
-    public static int getDistanceBetween(Cell cell1, Cell cell2){
-        int x1 = cell1.getX();
-        int x2 = cell2.getX();
-        int y1 = cell1.getY();
-        int y2 = cell2.getY();
-        return Math.abs(x2 - x1) + Math.abs(y2 - y1);
+    // Lower f first; on equal f prefer the cell farther from the start, which is nearer the end
+    private boolean before(int cell1, int cell2){
+        return f[cell1] < f[cell2] || (f[cell1] == f[cell2] && g[cell1] > g[cell2]);
     }
 
-    static class Node{
-        public Cell location;
-        public Node parent = null;
-        public int hopsFromStart = 0;
-        public int f = Integer.MAX_VALUE;
+    private void push(int cell){
+        heap[heapSize] = cell;
+        heapPosition[cell] = heapSize;
+        siftUp(heapSize++);
+    }
 
-        public Node(Cell l){
-            this.location = l;
+    private int pop(){
+        int top = heap[0];
+        heapPosition[top] = -1;
+        if (--heapSize > 0){
+            heap[0] = heap[heapSize];
+            heapPosition[heap[0]] = 0;
+            siftDown(0);
         }
+        return top;
+    }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            Node node = (Node) o;
-            return location.equals(node.location);
+    private void siftUp(int position){
+        int cell = heap[position];
+        while (position > 0){
+            int parentPosition = (position - 1) >>> 1;
+            int parentCell = heap[parentPosition];
+            if (!before(cell, parentCell))
+                break;
+            heap[position] = parentCell;
+            heapPosition[parentCell] = position;
+            position = parentPosition;
         }
+        heap[position] = cell;
+        heapPosition[cell] = position;
+    }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(location);
+    private void siftDown(int position){
+        int cell = heap[position];
+        while (true){
+            int child = 2 * position + 1;
+            if (child >= heapSize)
+                break;
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child]))
+                ++child;
+            if (!before(heap[child], cell))
+                break;
+            heap[position] = heap[child];
+            heapPosition[heap[child]] = position;
+            position = child;
         }
+        heap[position] = cell;
+        heapPosition[cell] = position;
     }
-}
\ No newline at end of file
+}
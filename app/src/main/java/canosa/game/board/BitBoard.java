@@ -0,0 +1,129 @@
+package canosa.game.board;
+
+/**
+ * Bit-level helpers for the 6x6 board.  Each cell is one bit of a long, indexed as y * 6 + x, so a set
+ * of cells (all sailors, a siren, an island) fits in a single mask and neighbour queries become shifts.
+ *
+ * @author aaron.mitchell
+ */
+public final class BitBoard {
+    public static final int SIZE  = 6;
+    public static final int CELLS = SIZE * SIZE;
+    public static final long ALL  = (1L << CELLS) - 1;
+
+    // Cells in the left-most (x == 0) and right-most (x == 5) columns
+    private static final long WEST_EDGE;
+    private static final long EAST_EDGE;
+
+    // Per-cell tables, built once: neighbour masks and the Manhattan distance between every pair of cells
+    private static final long[] ORTHOGONAL = new long[CELLS];
+    private static final long[] DIAGONAL   = new long[CELLS];
+    private static final int[][] DISTANCE  = new int[CELLS][CELLS];
+
+    static {
+        long west = 0L, east = 0L;
+        for (int y = 0; y < SIZE; ++y){
+            west |= bit(index(0, y));
+            east |= bit(index(SIZE - 1, y));
+        }
+        WEST_EDGE = west;
+        EAST_EDGE = east;
+
+        for (int cell = 0; cell < CELLS; ++cell){
+            ORTHOGONAL[cell] = orthogonalNeighbours(bit(cell));
+            DIAGONAL[cell] = diagonalNeighbours(bit(cell));
+            for (int other = 0; other < CELLS; ++other)
+                DISTANCE[cell][other] = Math.abs(x(cell) - x(other)) + Math.abs(y(cell) - y(other));
+        }
+    }
+
+    public static int index(int x, int y){
+        return y * SIZE + x;
+    }
+
+    public static int x(int index){
+        return index % SIZE;
+    }
+
+    public static int y(int index){
+        return index / SIZE;
+    }
+
+    public static boolean isOnBoard(int x, int y){
+        return x >= 0 && x < SIZE && y >= 0 && y < SIZE;
+    }
+
+    public static long bit(int index){
+        return 1L << index;
+    }
+
+    public static boolean isSet(long mask, int index){
+        return (mask & (1L << index)) != 0;
+    }
+
+    /**
+     * Index of the lowest set cell in the mask, or -1 if the mask is empty
+     */
+    public static int first(long mask){
+        return mask == 0? -1: Long.numberOfTrailingZeros(mask);
+    }
+
+    public static long east(long mask){
+        return (mask & ~EAST_EDGE) << 1;
+    }
+
+    public static long west(long mask){
+        return (mask & ~WEST_EDGE) >>> 1;
+    }
+
+    public static long north(long mask){
+        return mask >>> SIZE;
+    }
+
+    public static long south(long mask){
+        return (mask << SIZE) & ALL;
+    }
+
+    public static long orthogonalNeighbours(long mask){
+        return east(mask) | west(mask) | north(mask) | south(mask);
+    }
+
+    public static long diagonalNeighbours(long mask){
+        long horizontal = east(mask) | west(mask);
+        return north(horizontal) | south(horizontal);
+    }
+
+    public static long neighbours(long mask, boolean incDiagonal){
+        long neighbours = orthogonalNeighbours(mask);
+        if (incDiagonal)
+            neighbours |= diagonalNeighbours(mask);
+        return neighbours;
+    }
+
+    /**
+     * Mask of the cells orthogonally next to a single cell
+     */
+    public static long orthogonalNeighboursOf(int index){
+        return ORTHOGONAL[index];
+    }
+
+    /**
+     * Mask of the cells diagonally next to a single cell
+     */
+    public static long diagonalNeighboursOf(int index){
+        return DIAGONAL[index];
+    }
+
+    public static long neighboursOf(int index, boolean incDiagonal){
+        return incDiagonal? ORTHOGONAL[index] | DIAGONAL[index]: ORTHOGONAL[index];
+    }
+
+    /**
+     * Manhattan distance between two cells
+     */
+    public static int distance(int index1, int index2){
+        return DISTANCE[index1][index2];
+    }
+
+    private BitBoard(){}
+}
@@ -5,28 +5,58 @@ import canosa.game.PieceType;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.Optional;
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  *
  * @author aaron.mitchell
  */
 public class Board {
-    private List<Cell> cells = new ArrayList<>(36);
+    private List<Cell> cells = new ArrayList<>(BitBoard.CELLS);
+    private Cell[] cellIndex = new Cell[BitBoard.CELLS];
+    // Read-only neighbour sets of each cell, built once so neighbour queries never allocate
+    private List<Set<Cell>> orthogonalNeighbours = new ArrayList<>(BitBoard.CELLS);
+    private List<Set<Cell>> allNeighbours = new ArrayList<>(BitBoard.CELLS);
+
+    // Occupancy masks, one bit per cell (see BitBoard), kept in sync by the cells themselves
+    private long sailors     = 0L;
+    private long goldSiren   = 0L;
+    private long silverSiren = 0L;
+    private long goldIsland   = 0L;
+    private long silverIsland = 0L;
+    private int goldIslandIndex   = -1;
+    private int silverIslandIndex = -1;
+    // Packed ring stack (see RingStack) of the piece on each cell
+    private int[] ringStacks = new int[BitBoard.CELLS];
+    // Zobrist hash of the pieces, rings and islands, updated with every change
+    private long hash = 0L;
 
     public Board(){
+        for (int y = 0; y < BitBoard.SIZE; ++y){
+            for (int x = 0; x < BitBoard.SIZE; ++x){
+                Cell cell = new Cell(this, x, y);
+                cells.add(cell);
+                cellIndex[cell.getIndex()] = cell;
+            }
+        }
+        for (int index = 0; index < BitBoard.CELLS; ++index){
+            orthogonalNeighbours.add(toCells(BitBoard.orthogonalNeighboursOf(index)));
+            allNeighbours.add(toCells(BitBoard.neighboursOf(index, true)));
+        }
+    }
 
+    private Set<Cell> toCells(long mask){
+        Set<Cell> set = new LinkedHashSet<>();
+        for (; mask != 0; mask &= mask - 1)
+            set.add(cellIndex[Long.numberOfTrailingZeros(mask)]);
+        return Collections.unmodifiableSet(set);
     }
 
     public void init(){
-        cells.clear();
-        for (int y = 0; y < 6; ++y){
-            for (int x = 0; x < 6; ++x){
-                cells.add(new Cell(x, y));
-            }
+        for (Cell cell: cells){
+            cell.setPiece(null);
+            cell.setIslandOwner(null);
         }
         getCell(0, 5).setIslandOwner(PieceType.SILVER_SIREN);
         getCell(5, 0).setIslandOwner(PieceType.GOLD_SIREN);
@@ -47,52 +77,112 @@ public class Board {
         getCell(5, 4).setPiece(new Piece(PieceType.SAILOR, PieceType.SILVER_SIREN));
     }
 
+    /**
+     * Make this board a copy of another one, with pieces of its own
+     */
+    public void copyFrom(Board other){
+        for (Cell cell: cells){
+            Cell otherCell = other.getCell(cell.getIndex());
+            cell.setIslandOwner(otherCell.getIslandOwner());
+            cell.setPiece(otherCell.getPiece() != null? new Piece(otherCell.getPiece()): null);
+        }
+    }
+
+    void pieceChanged(Cell cell){
+        int index = cell.getIndex();
+        long bit = BitBoard.bit(index);
+        hash ^= pieceHash(index);
+        sailors     &= ~bit;
+        goldSiren   &= ~bit;
+        silverSiren &= ~bit;
+        Piece piece = cell.getPiece();
+        if (piece != null){
+            switch (piece.getType()){
+                case SAILOR:       sailors     |= bit; break;
+                case GOLD_SIREN:   goldSiren   |= bit; break;
+                case SILVER_SIREN: silverSiren |= bit; break;
+            }
+        }
+        ringStacks[index] = pack(piece);
+        hash ^= pieceHash(index);
+    }
+
+    void ringsChanged(Cell cell){
+        int index = cell.getIndex();
+        hash ^= Zobrist.rings(index, ringStacks[index]);
+        ringStacks[index] = pack(cell.getPiece());
+        hash ^= Zobrist.rings(index, ringStacks[index]);
+    }
+
+    void islandChanged(Cell cell){
+        int index = cell.getIndex();
+        long bit = BitBoard.bit(index);
+        if ((goldIsland & bit) != 0)
+            hash ^= Zobrist.goldIsland(index);
+        if ((silverIsland & bit) != 0)
+            hash ^= Zobrist.silverIsland(index);
+        goldIsland   &= ~bit;
+        silverIsland &= ~bit;
+        if (cell.getIslandOwner() == PieceType.GOLD_SIREN){
+            goldIsland |= bit;
+            hash ^= Zobrist.goldIsland(index);
+        }
+        else if (cell.getIslandOwner() == PieceType.SILVER_SIREN){
+            silverIsland |= bit;
+            hash ^= Zobrist.silverIsland(index);
+        }
+        goldIslandIndex = BitBoard.first(goldIsland);
+        silverIslandIndex = BitBoard.first(silverIsland);
+    }
+
+    // Hash contribution of whatever piece (and rings) the masks currently hold on a cell
+    private long pieceHash(int index){
+        long bit = BitBoard.bit(index);
+        long key;
+        if ((sailors & bit) != 0)
+            key = Zobrist.sailor(index);
+        else if ((goldSiren & bit) != 0)
+            key = Zobrist.goldSiren(index);
+        else if ((silverSiren & bit) != 0)
+            key = Zobrist.silverSiren(index);
+        else
+            return 0L;
+        return key ^ Zobrist.rings(index, ringStacks[index]);
+    }
+
+    private static int pack(Piece piece){
+        return piece == null? RingStack.EMPTY: piece.getRingStack();
+    }
+
     public boolean isAdjacent(Cell cell1, Cell cell2){
-        return Math.abs(cell1.getX() - cell2.getX()) <= 1 && Math.abs(cell1.getY() - cell2.getY()) <= 1;
+        return cell1.getIndex() == cell2.getIndex() || BitBoard.isSet(BitBoard.neighboursOf(cell1.getIndex(), true), cell2.getIndex());
     }
 
     public boolean isOrthogonallyAdjacent(Cell cell1, Cell cell2){
-        int dx = Math.abs(cell1.getX() - cell2.getX());
-        int dy = Math.abs(cell1.getY() - cell2.getY());
-        return (dx <= 1 && dy <= 1 && dx != dy);
+        return BitBoard.isSet(BitBoard.orthogonalNeighboursOf(cell1.getIndex()), cell2.getIndex());
     }
 
     public boolean isCloserToIsland(Cell origCell, Cell destCell, PieceType island){
-        Cell islandCell = island == PieceType.GOLD_SIREN? getIslandCell(PieceType.GOLD_SIREN): getIslandCell(PieceType.SILVER_SIREN);
-        int distanceOrig = getDistanceBetween(origCell, islandCell);
-        int distanceDest = getDistanceBetween(destCell, islandCell);
-        return distanceDest <= distanceOrig;
+        return getIslandDistance(island, destCell.getIndex()) <= getIslandDistance(island, origCell.getIndex());
     }
 
     public int getDistanceBetween(Cell cell1, Cell cell2){
-        int x1 = cell1.getX();
-        int x2 = cell2.getX();
-        int y1 = cell1.getY();
-        int y2 = cell2.getY();
-        return Math.abs(x2 - x1) + Math.abs(y2 - y1);
+        return BitBoard.distance(cell1.getIndex(), cell2.getIndex());
     }
 
+    /**
+     * @return Manhattan distance from the cell to the island of the given siren, or -1 if it has no island
+     */
+    public int getIslandDistance(PieceType island, int index){
+        int islandIndex = island == PieceType.GOLD_SIREN? goldIslandIndex: island == PieceType.SILVER_SIREN? silverIslandIndex: -1;
+        return islandIndex < 0? -1: BitBoard.distance(islandIndex, index);
+    }
+
+    /**
+     * @return a read-only set of the cells next to the given one, shared between calls
+     */
     public Set<Cell> getNeighboringCells(Cell cell, boolean incDiagonal){
-        Set<Cell> neighbors = new HashSet<>();
-        Cell neighbor = getCell(cell.getX() - 1, cell.getY());
-        if (neighbor != null) neighbors.add(neighbor);
-        neighbor = getCell(cell.getX() + 1, cell.getY());
-        if (neighbor != null) neighbors.add(neighbor);
-        neighbor = getCell(cell.getX(), cell.getY() - 1);
-        if (neighbor != null) neighbors.add(neighbor);
-        neighbor = getCell(cell.getX(), cell.getY() + 1);
-        if (neighbor != null) neighbors.add(neighbor);
-        if (incDiagonal){
-            neighbor = getCell(cell.getX() - 1, cell.getY() - 1);
-            if (neighbor != null) neighbors.add(neighbor);
-            neighbor = getCell(cell.getX() + 1, cell.getY() - 1);
-            if (neighbor != null) neighbors.add(neighbor);
-            neighbor = getCell(cell.getX() - 1, cell.getY() + 1);
-            if (neighbor != null) neighbors.add(neighbor);
-            neighbor = getCell(cell.getX() + 1, cell.getY() + 1);
-            if (neighbor != null) neighbors.add(neighbor);
-        }
-        return neighbors;
+        return incDiagonal? allNeighbours.get(cell.getIndex()): orthogonalNeighbours.get(cell.getIndex());
     }
 
     public List<Cell> findShortestPath(Cell fromCell, Cell toCell){
@@ -104,53 +194,43 @@ public class Board {
     }
 
     public List<Cell> findClosestUncontrolledSailors(Cell fromCell){
+        int siren = RingStack.code(fromCell.getPiece().getType());
         List<Cell> closest = new ArrayList<>();
-        cells.stream()
-                .filter(c -> c.getPiece() != null && c.getPiece().getType() == PieceType.SAILOR)
-                .filter(c -> c.getPiece().peekTopRing() == null || c.getPiece().peekTopRing() != fromCell.getPiece().getType())
-                .filter(c -> c.getPiece().getRings().size() < 3)
-                .sorted((c1, c2) -> getDistanceBetween(c1, c2))
-                .collect(Collectors.toList());
+        for (long mask = sailors; mask != 0; mask &= mask - 1){
+            int index = Long.numberOfTrailingZeros(mask);
+            int stack = ringStacks[index];
+            if (RingStack.peek(stack) != siren && !RingStack.isFull(stack))
+                closest.add(cellIndex[index]);
+        }
+        closest.sort((c1, c2) -> Integer.compare(getDistanceBetween(fromCell, c1), getDistanceBetween(fromCell, c2)));
         return closest;
     }
 
     public List<Cell> findFarthestControlledSailors(Cell fromCell){
-        List<Cell> farthest =
-            cells.stream()
-                .filter(c -> c.getPiece() != null && c.getPiece().getType() == PieceType.SAILOR)
-                .filter(c -> c.getPiece().peekTopRing() == fromCell.getPiece().getType())
-                .sorted((c1, c2) -> {
-                    int d1 = getDistanceBetween(fromCell, c1);
-                    int d2 = getDistanceBetween(fromCell, c2);
-                    return d1 > d2? -1: d1 < d2? 1: 0;
-                })
-                .collect(Collectors.toList());
+        int siren = RingStack.code(fromCell.getPiece().getType());
+        List<Cell> farthest = new ArrayList<>();
+        for (long mask = sailors; mask != 0; mask &= mask - 1){
+            int index = Long.numberOfTrailingZeros(mask);
+            if (RingStack.peek(ringStacks[index]) == siren)
+                farthest.add(cellIndex[index]);
+        }
+        farthest.sort((c1, c2) -> Integer.compare(getDistanceBetween(fromCell, c2), getDistanceBetween(fromCell, c1)));
         return farthest;
     }
 
     public Cell getSirenCell(PieceType type){
-        Optional<Cell> cell = 
-                cells.stream()
-                        .filter(c -> c.getPiece() != null && c.getPiece().getType() == type)
-                        .findFirst();
-        return cell.isPresent()? cell.get(): null;
+        int index = BitBoard.first(getPieceMask(type));
+        return index < 0? null: cellIndex[index];
     }
 
     public Piece findPieceWithType(PieceType type){
-        Optional<Piece> piece = 
-                cells.stream()
-                        .filter(cell -> cell.getPiece() != null && cell.getPiece().getType() == type)
-                        .map(cell -> cell.getPiece())
-                        .findFirst();
-        return piece.isPresent()? piece.get(): null;
+        int index = BitBoard.first(getPieceMask(type));
+        return index < 0? null: cellIndex[index].getPiece();
     }
 
     public Cell getIslandCell(PieceType type){
-        Optional<Cell> cell = 
-                cells.stream()
-                        .filter(c -> c.getIslandOwner() == type)
-                        .findFirst();
-        return cell.isPresent()? cell.get(): null;
+        int index = BitBoard.first(getIslandMask(type));
+        return index < 0? null: cellIndex[index];
     }
 
     public List<Cell> getCells() {
@@ -158,7 +238,52 @@ public class Board {
     }
 
     public Cell getCell(int x, int y){
-        Optional<Cell> cell = cells.stream().filter(c -> c.getX() == x && c.getY() == y).findFirst();
-        return cell.isPresent()? cell.get(): null;
+        return BitBoard.isOnBoard(x, y)? cellIndex[BitBoard.index(x, y)]: null;
+    }
+
+    public Cell getCell(int index){
+        return cellIndex[index];
+    }
+
+    /**
+     * Mask of the cells holding pieces of the given type (all sailors, or the single siren)
+     */
+    public long getPieceMask(PieceType type){
+        switch (type){
+            case GOLD_SIREN:   return goldSiren;
+            case SILVER_SIREN: return silverSiren;
+            default:           return sailors;
+        }
+    }
+
+    public long getSailorMask(){
+        return sailors;
+    }
+
+    public long getSirenMask(){
+        return goldSiren | silverSiren;
+    }
+
+    public long getOccupiedMask(){
+        return sailors | goldSiren | silverSiren;
+    }
+
+    public long getIslandMask(PieceType type){
+        return type == PieceType.GOLD_SIREN? goldIsland: type == PieceType.SILVER_SIREN? silverIsland: 0L;
+    }
+
+    public long getIslandMask(){
+        return goldIsland | silverIsland;
+    }
+
+    public int getRingStack(int index){
+        return ringStacks[index];
+    }
+
+    /**
+     * Zobrist hash of everything on the board (see Game.getHash for the full position)
+     */
+    public long getHash(){
+        return hash;
     }
 }
@@ -8,13 +8,21 @@ import canosa.game.PieceType;
  * @author aaron.mitchell
  */
 public class Cell {
+    private Board board;    // Board this cell belongs to, kept up to date on every change
     private Piece piece;    
     private int x = 0, y = 0;
+    private int index;
     private PieceType islandOwner;
 
     public Cell(int x, int y){
+        this(null, x, y);
+    }
+
+    Cell(Board board, int x, int y){
+        this.board = board;
         this.x = x;
         this.y = y;
+        this.index = BitBoard.index(x, y);
     }
 
     public int getX() {
@@ -25,12 +33,33 @@ public class Cell {
         return y;
     }
 
+    /**
+     * Position of this cell in the board's bit masks (y * 6 + x)
+     */
+    public int getIndex() {
+        return index;
+    }
+
     public Piece getPiece() {
         return piece;
     }
 
     public void setPiece(Piece piece) {
+        if (this.piece != null && this.piece.getCell() == this)
+            this.piece.setCell(null);
         this.piece = piece;
+        if (piece != null)
+            piece.setCell(this);
+        if (board != null)
+            board.pieceChanged(this);
+    }
+
+    /**
+     * Called by the piece on this cell whenever its ring stack changes
+     */
+    public void ringsChanged() {
+        if (board != null)
+            board.ringsChanged(this);
     }
 
     public PieceType getIslandOwner() {
@@ -39,6 +68,8 @@ public class Cell {
 
     public void setIslandOwner(PieceType islandOwner) {
         this.islandOwner = islandOwner;
+        if (board != null)
+            board.islandChanged(this);
     }
 
     public String toString(){
@@ -0,0 +1,98 @@
+package canosa.game.board;
+
+import canosa.game.PieceType;
+
+/**
+ * A ring stack packed into an int: the low two bits hold the number of rings (0-3) and each ring takes
+ * two more bits, bottom ring first (1 = gold, 2 = silver).
+ *
+ * @author aaron.mitchell
+ */
+public final class RingStack {
+    public static final int EMPTY     = 0;
+    public static final int MAX_RINGS = 3;
+
+    public static final int GOLD   = 1;
+    public static final int SILVER = 2;
+
+    private static final int COUNT_MASK = 0x3;
+    private static final int RING_MASK  = 0x3;
+
+    public static int size(int stack){
+        return stack & COUNT_MASK;
+    }
+
+    public static boolean isEmpty(int stack){
+        return (stack & COUNT_MASK) == 0;
+    }
+
+    public static boolean isFull(int stack){
+        return (stack & COUNT_MASK) == MAX_RINGS;
+    }
+
+    /**
+     * Push a ring onto the stack.  The caller must make sure the stack is not full.
+     */
+    public static int push(int stack, int ring){
+        int size = stack & COUNT_MASK;
+        return (stack | (ring << shift(size))) + 1;
+    }
+
+    public static int push(int stack, PieceType ring){
+        return push(stack, code(ring));
+    }
+
+    /**
+     * Remove the top ring.  The caller must make sure the stack is not empty.
+     */
+    public static int pop(int stack){
+        int size = stack & COUNT_MASK;
+        return (stack & ~(RING_MASK << shift(size - 1))) - 1;
+    }
+
+    /**
+     * Code of the top ring, or 0 if the stack is empty
+     */
+    public static int peek(int stack){
+        int size = stack & COUNT_MASK;
+        return size == 0? 0: (stack >>> shift(size - 1)) & RING_MASK;
+    }
+
+    /**
+     * Code of the ring at the given depth, 0 being the top ring
+     */
+    public static int get(int stack, int fromTop){
+        return (stack >>> shift(size(stack) - 1 - fromTop)) & RING_MASK;
+    }
+
+    public static boolean contains(int stack, int ring){
+        int size = stack & COUNT_MASK;
+        for (int i = 0; i < size; ++i){
+            if (((stack >>> shift(i)) & RING_MASK) == ring)
+                return true;
+        }
+        return false;
+    }
+
+    public static int code(PieceType ring){
+        if (ring == PieceType.GOLD_SIREN)
+            return GOLD;
+        if (ring == PieceType.SILVER_SIREN)
+            return SILVER;
+        throw new IllegalArgumentException("Not a ring: " + ring);
+    }
+
+    public static PieceType type(int ring){
+        switch (ring){
+            case GOLD:   return PieceType.GOLD_SIREN;
+            case SILVER: return PieceType.SILVER_SIREN;
+            default:     return null;
+        }
+    }
+
+    private static int shift(int position){
+        return 2 + (position << 1);
+    }
+
+    private RingStack(){}
+}
@@ -0,0 +1,102 @@
+package canosa.game.board;
+
+/**
+ * Zobrist keys for hashing positions.  A position's hash is the XOR of the keys of everything on it, so
+ * Board can keep its hash up to date by XORing keys in and out as pieces and rings change.
+ *
+ * Keys come from a fixed-seed generator so hashes are identical from one run to the next and can be
+ * stored on disk.
+ *
+ * @author aaron.mitchell
+ */
+public final class Zobrist {
+    public static final int MAX_SCORE = 7;
+
+    // Piece keys by kind: 0 = sailor, 1 = gold siren, 2 = silver siren
+    private static final long[][] PIECE  = new long[3][BitBoard.CELLS];
+    // Ring keys by cell, position in the stack (bottom first) and ring code
+    private static final long[][][] RING = new long[BitBoard.CELLS][RingStack.MAX_RINGS][3];
+    // Island keys by owner: 0 = gold, 1 = silver
+    private static final long[][] ISLAND = new long[2][BitBoard.CELLS];
+
+    public static final long SILVER_TO_MOVE;
+    public static final long OPENING_TURN;
+    private static final long[] ACTIONS_TAKEN = new long[2];
+    private static final long[] GOLD_SCORE    = new long[MAX_SCORE + 1];
+    private static final long[] SILVER_SCORE  = new long[MAX_SCORE + 1];
+
+    private static long seed = 0x43414E4F5341L;
+
+    static {
+        for (int kind = 0; kind < PIECE.length; ++kind)
+            for (int cell = 0; cell < BitBoard.CELLS; ++cell)
+                PIECE[kind][cell] = next();
+        for (int cell = 0; cell < BitBoard.CELLS; ++cell)
+            for (int position = 0; position < RingStack.MAX_RINGS; ++position)
+                for (int ring = RingStack.GOLD; ring <= RingStack.SILVER; ++ring)
+                    RING[cell][position][ring] = next();
+        for (int owner = 0; owner < ISLAND.length; ++owner)
+            for (int cell = 0; cell < BitBoard.CELLS; ++cell)
+                ISLAND[owner][cell] = next();
+        SILVER_TO_MOVE = next();
+        OPENING_TURN = next();
+        for (int i = 0; i < ACTIONS_TAKEN.length; ++i)
+            ACTIONS_TAKEN[i] = next();
+        for (int i = 0; i <= MAX_SCORE; ++i){
+            GOLD_SCORE[i] = next();
+            SILVER_SCORE[i] = next();
+        }
+    }
+
+    public static long sailor(int cell){
+        return PIECE[0][cell];
+    }
+
+    public static long goldSiren(int cell){
+        return PIECE[1][cell];
+    }
+
+    public static long silverSiren(int cell){
+        return PIECE[2][cell];
+    }
+
+    public static long goldIsland(int cell){
+        return ISLAND[0][cell];
+    }
+
+    public static long silverIsland(int cell){
+        return ISLAND[1][cell];
+    }
+
+    /**
+     * Combined key of every ring in a packed stack sitting on the given cell
+     */
+    public static long rings(int cell, int stack){
+        long key = 0L;
+        for (int position = 0, size = RingStack.size(stack); position < size; ++position)
+            key ^= RING[cell][position][RingStack.get(stack, size - 1 - position)];
+        return key;
+    }
+
+    public static long actionsTaken(int actionsTaken){
+        return ACTIONS_TAKEN[actionsTaken & 1];
+    }
+
+    public static long goldScore(int score){
+        return GOLD_SCORE[Math.min(score, MAX_SCORE)];
+    }
+
+    public static long silverScore(int score){
+        return SILVER_SCORE[Math.min(score, MAX_SCORE)];
+    }
+
+    // SplitMix64, spelled out so the keys never depend on the JDK's random number generators
+    private static long next(){
+        long z = (seed += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private Zobrist(){}
+}
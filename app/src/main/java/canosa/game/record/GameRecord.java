@@ -0,0 +1,161 @@
+package canosa.game.record;
+
+import canosa.game.ActionType;
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.Move;
+import canosa.game.Phase;
+import canosa.game.board.BitBoard;
+import java.util.Arrays;
+
+/**
+ * A played game: who played it, how it ended, the seed it was played with and every action from the
+ * start position, as packed moves (see Move).  Written and read in bulk by GameRecordWriter and
+ * GameRecordReader.
+ *
+ * In the file each action takes two bytes.  Every action's target is next to its source, and an
+ * attack's bump target is next to the attacked siren, so both are stored as one of the eight
+ * directions instead of a cell:
+ *
+ *  bits 0-5 source cell index, 6-8 target direction, 9-11 bump direction (attacks only), 12-14 type
+ *
+ * @author aaron.mitchell
+ */
+public class GameRecord {
+    public enum Result { UNFINISHED, GOLD_WON, SILVER_WON, DRAW }
+
+    // Directions clockwise from north
+    private static final int[] DX = {  0,  1, 1, 1, 0, -1, -1, -1 };
+    private static final int[] DY = { -1, -1, 0, 1, 1,  1,  0, -1 };
+    private static final ActionType[] TYPES = ActionType.values();
+
+    private final String goldPlayer;
+    private final String silverPlayer;
+    private final long seed;
+    private final Result result;
+    private final int[] moves;
+
+    public GameRecord(String goldPlayer, String silverPlayer, long seed, Result result, int[] moves){
+        this.goldPlayer = goldPlayer;
+        this.silverPlayer = silverPlayer;
+        this.seed = seed;
+        this.result = result;
+        this.moves = moves.clone();
+    }
+
+    public String getGoldPlayer() {
+        return goldPlayer;
+    }
+
+    public String getSilverPlayer() {
+        return silverPlayer;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Result getResult() {
+        return result;
+    }
+
+    public int getMoveCount() {
+        return moves.length;
+    }
+
+    /**
+     * @return the actions in the order played, as packed moves
+     */
+    public int[] getMoves() {
+        return moves.clone();
+    }
+
+    /**
+     * Play the game again through the rules engine
+     * @return the game after the last action, in the PLAY phase with the actions on its undo stack
+     * @throws IllegalStateException if an action was not legal when it was played
+     */
+    public Game replay(){
+        Game game = new Game();
+        game.init();
+        game.setPhase(Phase.PLAY);
+        int[] legal = new int[GameEngine.MAX_MOVES];
+        for (int i = 0; i < moves.length; ++i){
+            int count = GameEngine.isGameOver(game)? 0: GameEngine.generateLegalMoves(game, legal);
+            boolean found = false;
+            for (int j = 0; j < count && !found; ++j)
+                found = legal[j] == moves[i];
+            if (!found)
+                throw new IllegalStateException("Action " + i + " (" + Move.toString(moves[i]) + ") is not legal");
+            game.makeMove(moves[i]);
+        }
+        return game;
+    }
+
+    /**
+     * @return the move packed into the two byte record form
+     * @throws IllegalArgumentException if a target is not next to where it must be
+     */
+    public static short encode(int move){
+        ActionType type = Move.type(move);
+        int source = Move.source(move);
+        int code = (type.ordinal() << 12) | (direction(source, Move.target(move)) << 6) | source;
+        if (type == ActionType.ATTACK_OPPONENT)
+            code |= direction(Move.target(move), Move.bumpTarget(move)) << 9;
+        return (short) code;
+    }
+
+    /**
+     * @return the packed move of the two byte record form
+     */
+    public static int decode(short code){
+        int type = (code >>> 12) & 0x7;
+        if (type >= TYPES.length)
+            throw new IllegalArgumentException("Unknown action type " + type);
+        int source = code & 0x3F;
+        int target = step(source, (code >>> 6) & 0x7);
+        if (TYPES[type] != ActionType.ATTACK_OPPONENT)
+            return Move.of(TYPES[type], source, target);
+        return Move.of(TYPES[type], source, target, step(target, (code >>> 9) & 0x7));
+    }
+
+    private static int direction(int from, int to){
+        int dx = BitBoard.x(to) - BitBoard.x(from);
+        int dy = BitBoard.y(to) - BitBoard.y(from);
+        for (int d = 0; d < DX.length; ++d){
+            if (DX[d] == dx && DY[d] == dy)
+                return d;
+        }
+        throw new IllegalArgumentException("Cell " + to + " is not next to cell " + from);
+    }
+
+    private static int step(int from, int direction){
+        int x = BitBoard.x(from) + DX[direction];
+        int y = BitBoard.y(from) + DY[direction];
+        if (!BitBoard.isOnBoard(x, y))
+            throw new IllegalArgumentException("Step off the board from cell " + from);
+        return BitBoard.index(x, y);
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if (this == o)
+            return true;
+        if (!(o instanceof GameRecord))
+            return false;
+        GameRecord other = (GameRecord) o;
+        return seed == other.seed && result == other.result && goldPlayer.equals(other.goldPlayer)
+                && silverPlayer.equals(other.silverPlayer) && Arrays.equals(moves, other.moves);
+    }
+
+    @Override
+    public int hashCode(){
+        return Arrays.hashCode(moves) * 31 + Long.hashCode(seed);
+    }
+
+    @Override
+    public String toString(){
+        return "GameRecord[" + goldPlayer + " vs " + silverPlayer + ", seed " + seed + ", " + result + ", "
+                + moves.length + " actions]";
+    }
+}
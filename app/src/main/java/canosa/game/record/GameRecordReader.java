@@ -0,0 +1,126 @@
+package canosa.game.record;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Streams game records back from a channel written by GameRecordWriter, one block at a time.  Each
+ * block's CRC32 is checked before any of its records are handed out.  Not thread-safe.
+ *
+ * @author aaron.mitchell
+ */
+public class GameRecordReader implements Closeable {
+    private final ReadableByteChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocateDirect(GameRecordWriter.BLOCK_HEADER);
+    private ByteBuffer payload = ByteBuffer.allocateDirect(GameRecordWriter.BLOCK_SIZE);
+    private final CRC32 crc = new CRC32();
+    private int recordsLeft = 0;  // In the current block
+
+    public GameRecordReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer fileHeader = ByteBuffer.allocate(GameRecordWriter.FILE_HEADER);
+        if (!readFully(fileHeader) || fileHeader.getInt(0) != GameRecordWriter.MAGIC)
+            throw new IOException("Not a game record file");
+        if (fileHeader.getInt(4) != GameRecordWriter.VERSION)
+            throw new IOException("Game record version " + fileHeader.getInt(4) + ", expected " + GameRecordWriter.VERSION);
+        payload.limit(0);
+    }
+
+    public static GameRecordReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new GameRecordReader(channel);
+        }
+        catch (IOException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the next record, or null at the end of the stream
+     * @throws IOException if the stream is truncated or a block is corrupt
+     */
+    public GameRecord read() throws IOException {
+        if (recordsLeft == 0 && !readBlock())
+            return null;
+        try {
+            long seed = payload.getLong();
+            int result = payload.get();
+            String gold = name();
+            String silver = name();
+            int count = payload.getInt();
+            if (result < 0 || result >= GameRecord.Result.values().length || count < 0 || count > payload.remaining() / 2)
+                throw new IOException("Corrupt game record");
+            int[] moves = new int[count];
+            for (int i = 0; i < count; ++i)
+                moves[i] = GameRecord.decode(payload.getShort());
+            --recordsLeft;
+            return new GameRecord(gold, silver, seed, GameRecord.Result.values()[result], moves);
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e){
+            throw new IOException("Corrupt game record", e);
+        }
+    }
+
+    private boolean readBlock() throws IOException {
+        header.clear();
+        if (!readFully(header))
+            return false;
+        int length = header.getInt(0);
+        int records = header.getInt(4);
+        int checksum = header.getInt(8);
+        if (length < 0 || records <= 0)
+            throw new IOException("Corrupt block header");
+
+        if (length > payload.capacity())
+            payload = ByteBuffer.allocateDirect(length);
+        payload.clear().limit(length);
+        if (!readFully(payload))
+            throw new EOFException("Truncated block");
+        payload.flip();
+        crc.reset();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum)
+            throw new IOException("Block checksum mismatch");
+        recordsLeft = records;
+        return true;
+    }
+
+    private String name(){
+        byte[] bytes = new byte[payload.get() & 0xFF];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fill the buffer from the channel
+     * @return false if the stream ended before the first byte
+     * @throws EOFException if it ended part way through
+     */
+    private boolean readFully(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()){
+            if (channel.read(buffer) < 0){
+                if (buffer.position() == start)
+                    return false;
+                throw new EOFException("Truncated game record file");
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,137 @@
+package canosa.game.record;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Streams game records to a channel.  Records are packed into blocks of about 64 KB, each written as
+ * one gathering write: a block header (payload length, record count, CRC32 of the payload) followed by
+ * the payload.  The file starts with a header of its own.  Not thread-safe.
+ *
+ * File:    magic "CNGR" (4 bytes), version (4)
+ * Block:   payload length (4), records (4), payload CRC32 (4), payload
+ * Record:  seed (8), result ordinal (1), gold player (1 byte length + UTF-8), silver player (same),
+ *          action count (4), actions (2 bytes each, see GameRecord)
+ *
+ * @author aaron.mitchell
+ */
+public class GameRecordWriter implements Closeable {
+    static final int MAGIC        = 0x434E4752;  // CNGR
+    static final int VERSION      = 1;
+    static final int FILE_HEADER  = 8;
+    static final int BLOCK_HEADER = 12;
+    static final int BLOCK_SIZE   = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocateDirect(BLOCK_HEADER);
+    private ByteBuffer payload = ByteBuffer.allocateDirect(BLOCK_SIZE);
+    private final CRC32 crc = new CRC32();
+    private int records = 0;
+    private long written = 0;
+
+    public GameRecordWriter(WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER).putInt(MAGIC).putInt(VERSION);
+        fileHeader.flip();
+        writeFully(fileHeader);
+    }
+
+    /**
+     * Create (or replace) a record file
+     */
+    public static GameRecordWriter create(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return new GameRecordWriter(channel);
+        }
+        catch (IOException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    public void write(GameRecord record) throws IOException {
+        byte[] gold = name(record.getGoldPlayer());
+        byte[] silver = name(record.getSilverPlayer());
+        int[] moves = record.getMoves();
+        int size = 8 + 1 + 1 + gold.length + 1 + silver.length + 4 + 2 * moves.length;
+        if (size > payload.remaining()){
+            flush();
+            if (size > payload.capacity())
+                payload = ByteBuffer.allocateDirect(size);
+        }
+
+        payload.putLong(record.getSeed());
+        payload.put((byte) record.getResult().ordinal());
+        payload.put((byte) gold.length).put(gold);
+        payload.put((byte) silver.length).put(silver);
+        payload.putInt(moves.length);
+        for (int move: moves)
+            payload.putShort(GameRecord.encode(move));
+        ++records;
+    }
+
+    /**
+     * Write out the records buffered so far as a block
+     */
+    public void flush() throws IOException {
+        if (records == 0)
+            return;
+        payload.flip();
+        crc.reset();
+        crc.update(payload.duplicate());
+        header.clear();
+        header.putInt(payload.remaining()).putInt(records).putInt((int) crc.getValue());
+        header.flip();
+
+        if (channel instanceof GatheringByteChannel){
+            ByteBuffer[] buffers = { header, payload };
+            while (payload.hasRemaining())
+                written += ((GatheringByteChannel) channel).write(buffers);
+        }
+        else {
+            writeFully(header);
+            writeFully(payload);
+        }
+        payload.clear();
+        records = 0;
+    }
+
+    /**
+     * @return bytes written to the channel so far, not counting buffered records
+     */
+    public long getBytesWritten(){
+        return written;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            written += channel.write(buffer);
+    }
+
+    private static byte[] name(String player){
+        byte[] bytes = (player == null? "": player).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 255)
+            throw new IllegalArgumentException("Player name longer than 255 bytes: " + player);
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        }
+        finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package canosa.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one computer player decision
+ *
+ * @author aaron.mitchell
+ */
+@Name("canosa.AiDecision")
+@Label("AI Decision")
+@Category({ "Canosa", "AI" })
+@Description("A computer player choosing an action")
+@StackTrace(false)
+public class AiDecisionEvent extends Event {
+    @Label("Player")
+    public String player;
+
+    @Label("Siren")
+    public String siren;
+
+    @Label("Source")
+    @Description("Where the action came from: search, book or tablebase")
+    public String source;
+
+    @Label("Nodes")
+    @Description("Positions searched, or playouts for Monte Carlo players")
+    public long nodes;
+
+    @Label("Depth")
+    public int depth;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    public long elapsed;
+
+    @Label("Action")
+    @Description("The chosen action, or NONE if the player has none")
+    public String action;
+}
@@ -0,0 +1,33 @@
+package canosa.monitor;
+
+import canosa.game.PieceType;
+
+/**
+ * Receives typed game events from the controller and the computer players in place of log messages.
+ * Recording an event must not allocate or block: an implementation copies the arguments and returns
+ * (see RingBufferEventSink), and NONE drops them, so code can record unconditionally.
+ *
+ * @author aaron.mitchell
+ */
+public interface GameEventSink {
+    /** Drops every event */
+    GameEventSink NONE = (type, player, a, b, c) -> {};
+
+    /**
+     * @param player the player the event is about, or null
+     * @param a first argument, a cell index or count (see GameEventType), -1 if unused; likewise b and c
+     */
+    void record(GameEventType type, PieceType player, int a, int b, int c);
+
+    default void record(GameEventType type, PieceType player){
+        record(type, player, -1, -1, -1);
+    }
+
+    default void record(GameEventType type, PieceType player, int a){
+        record(type, player, a, -1, -1);
+    }
+
+    default void record(GameEventType type, PieceType player, int a, int b){
+        record(type, player, a, b, -1);
+    }
+}
@@ -0,0 +1,71 @@
+package canosa.monitor;
+
+import canosa.game.ActionType;
+import canosa.game.board.BitBoard;
+
+/**
+ * The kinds of event a GameEventSink records.  Each event carries up to three int arguments, cell
+ * indexes (see BitBoard) or counts, which its message template fills in for its "{}" placeholders.
+ *
+ * @author aaron.mitchell
+ */
+public enum GameEventType {
+    TURN_START("Player's turn", false),
+
+    // Actions, in ActionType order: source, target and for attacks the bump target
+    MOVE_SIREN("Moving siren from {} to {}", true),
+    ATTACK_OPPONENT("Siren at {} bumping siren at {} to {}", true),
+    TRANSFER_RING_TO_SAILOR("Transferring ring from siren at {} to sailor at {}", true),
+    TRANSFER_RING_TO_SIREN("Transferring ring from sailor at {} to siren at {}", true),
+    MOVE_SAILOR("Moving sailor at {} to {}", true),
+    SCORE_SAILOR("Scoring sailor at {}", true),
+
+    // EasyComputerPlayer's reasoning
+    EASY_SCORE_SAILOR("Found sailor at {} to score", true),
+    EASY_MOVE_SAILOR_HOME("Found controlled sailor at {}, moving to {}", true),
+    EASY_NO_PATH_HOME("Found {} controlled sailors, but none have a path to the island", false),
+    EASY_NO_CONTROLLED_SAILOR("No controlled sailors found", false),
+    EASY_MOVE_TOWARD_SAILOR("Found uncontrolled sailor, moving siren at {} to {}", true),
+    EASY_TRANSFER_RING("Found adjacent uncontrolled sailor, transferring ring to sailor at {}", true),
+    EASY_MOVE_TO_EMPTY("Moving siren at {} to an adjacent empty cell {}", true),
+    EASY_ANY_LEGAL("No better action, taking the first legal one", false),
+    EASY_TRAPPED("No legal action, trapped", false);
+
+    private static final GameEventType[] ACTIONS = {
+        MOVE_SIREN, ATTACK_OPPONENT, TRANSFER_RING_TO_SAILOR, TRANSFER_RING_TO_SIREN, MOVE_SAILOR
+    };
+
+    private final String template;
+    private final boolean cells;  // Whether the arguments are cell indexes rather than counts
+
+    GameEventType(String template, boolean cells){
+        this.template = template;
+        this.cells = cells;
+    }
+
+    /**
+     * @return the event recording an action of the type
+     */
+    public static GameEventType of(ActionType type){
+        return ACTIONS[type.ordinal()];
+    }
+
+    /**
+     * Append the message with the arguments filled in
+     */
+    public void format(StringBuilder out, int a, int b, int c){
+        int[] args = { a, b, c };
+        int next = 0;
+        int from = 0;
+        for (int at = template.indexOf("{}"); at >= 0; at = template.indexOf("{}", from)){
+            out.append(template, from, at);
+            int arg = args[next++];
+            if (cells && arg >= 0 && arg < BitBoard.CELLS)
+                out.append('[').append(BitBoard.x(arg)).append(", ").append(BitBoard.y(arg)).append(']');
+            else
+                out.append(arg);
+            from = at + 2;
+        }
+        out.append(template, from, template.length());
+    }
+}
@@ -0,0 +1,156 @@
+package canosa.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the computer players and the game loop, shared by the whole
+ * process and published over JMX as "canosa:type=GameMetrics" once register() is called.  Updating
+ * them costs a few uncontended adds, so they are always on; the matching Flight Recorder events
+ * (AiDecisionEvent, PathQueryEvent, TurnEvent, ScoreEvent) carry the detail when a recording runs.
+ *
+ * @author aaron.mitchell
+ */
+public class GameMetrics implements GameMetricsMBean {
+    private static final Logger logger = Logger.getLogger(GameMetrics.class.getName());
+
+    public static final String OBJECT_NAME = "canosa:type=GameMetrics";
+
+    private static final GameMetrics INSTANCE = new GameMetrics();
+
+    private final LatencyHistogram decisionLatency = new LatencyHistogram();
+    private final LongAdder searchNodes = new LongAdder();
+    private final LatencyHistogram pathQueryLatency = new LatencyHistogram();
+    private final LongAdder turns = new LongAdder();
+    private final LongAdder actionsPlayed = new LongAdder();
+    private final LongAdder sailorsScored = new LongAdder();
+
+    GameMetrics(){
+    }
+
+    public static GameMetrics get(){
+        return INSTANCE;
+    }
+
+    /**
+     * Publish the metrics on the platform MBean server; does nothing if they already are
+     */
+    public static void register(){
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        }
+        catch (InstanceAlreadyExistsException e){
+            // Already published
+        }
+        catch (JMException e){
+            logger.log(Level.WARNING, "Could not register game metrics", e);
+        }
+    }
+
+    public void recordDecision(long nanos, long nodes){
+        decisionLatency.record(nanos);
+        searchNodes.add(nodes);
+    }
+
+    public void recordPathQuery(long nanos){
+        pathQueryLatency.record(nanos);
+    }
+
+    public void recordTurn(){
+        turns.increment();
+    }
+
+    public void recordAction(boolean scored){
+        actionsPlayed.increment();
+        if (scored)
+            sailorsScored.increment();
+    }
+
+    public LatencyHistogram getDecisionLatency(){
+        return decisionLatency;
+    }
+
+    public LatencyHistogram getPathQueryLatency(){
+        return pathQueryLatency;
+    }
+
+    @Override
+    public long getDecisions(){
+        return decisionLatency.getCount();
+    }
+
+    @Override
+    public long getSearchNodes(){
+        return searchNodes.sum();
+    }
+
+    @Override
+    public long getDecisionMeanMicros(){
+        return micros(decisionLatency.getMean());
+    }
+
+    @Override
+    public long getDecisionP50Micros(){
+        return micros(decisionLatency.getPercentile(0.50));
+    }
+
+    @Override
+    public long getDecisionP99Micros(){
+        return micros(decisionLatency.getPercentile(0.99));
+    }
+
+    @Override
+    public long getDecisionMaxMicros(){
+        return micros(decisionLatency.getMax());
+    }
+
+    @Override
+    public long getPathQueries(){
+        return pathQueryLatency.getCount();
+    }
+
+    @Override
+    public long getPathQueryP50Micros(){
+        return micros(pathQueryLatency.getPercentile(0.50));
+    }
+
+    @Override
+    public long getPathQueryP99Micros(){
+        return micros(pathQueryLatency.getPercentile(0.99));
+    }
+
+    @Override
+    public long getTurns(){
+        return turns.sum();
+    }
+
+    @Override
+    public long getActionsPlayed(){
+        return actionsPlayed.sum();
+    }
+
+    @Override
+    public long getSailorsScored(){
+        return sailorsScored.sum();
+    }
+
+    @Override
+    public void reset(){
+        decisionLatency.reset();
+        searchNodes.reset();
+        pathQueryLatency.reset();
+        turns.reset();
+        actionsPlayed.reset();
+        sailorsScored.reset();
+    }
+
+    private static long micros(long nanos){
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,25 @@
+package canosa.monitor;
+
+/**
+ * JMX view of GameMetrics.  Times are in microseconds.
+ *
+ * @author aaron.mitchell
+ */
+public interface GameMetricsMBean {
+    long getDecisions();
+    long getSearchNodes();
+    long getDecisionMeanMicros();
+    long getDecisionP50Micros();
+    long getDecisionP99Micros();
+    long getDecisionMaxMicros();
+
+    long getPathQueries();
+    long getPathQueryP50Micros();
+    long getPathQueryP99Micros();
+
+    long getTurns();
+    long getActionsPlayed();
+    long getSailorsScored();
+
+    void reset();
+}
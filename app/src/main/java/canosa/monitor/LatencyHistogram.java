@@ -0,0 +1,73 @@
+package canosa.monitor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds.  Bucket b counts durations in [2^b, 2^(b+1)), so
+ * recording is one increment and percentiles are accurate to within a factor of two, which is enough
+ * to tell a slow path from a fast one.
+ *
+ * @author aaron.mitchell
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos){
+        nanos = Math.max(1, nanos);
+        buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos));
+        count.increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    public long getCount(){
+        return count.sum();
+    }
+
+    public long getMean(){
+        long n = count.sum();
+        return n == 0? 0: total.sum() / n;
+    }
+
+    public long getMax(){
+        return max.get();
+    }
+
+    /**
+     * @param fraction 0.5 for the median, 0.99 for the 99th percentile and so on
+     * @return upper bound in nanoseconds of the bucket holding the percentile, or 0 if nothing was recorded
+     */
+    public long getPercentile(double fraction){
+        long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int b = 0; b < BUCKETS; ++b){
+            counts[b] = buckets.get(b);
+            n += counts[b];
+        }
+        if (n == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * n));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; ++b){
+            seen += counts[b];
+            if (seen >= rank)
+                return Math.min((1L << (b + 1)) - 1, getMax());
+        }
+        return getMax();
+    }
+
+    public void reset(){
+        for (int b = 0; b < BUCKETS; ++b)
+            buckets.set(b, 0);
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+}
@@ -0,0 +1,32 @@
+package canosa.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one shortest path query on the board (see AStarAlgorithm)
+ *
+ * @author aaron.mitchell
+ */
+@Name("canosa.PathQuery")
+@Label("Path Query")
+@Category({ "Canosa", "Board" })
+@StackTrace(false)
+public class PathQueryEvent extends Event {
+    @Label("Start Cell")
+    public int start;
+
+    @Label("End Cell")
+    public int end;
+
+    @Label("Diagonal")
+    public boolean diagonal;
+
+    @Label("Length")
+    @Description("Cells on the path, or -1 if there is none")
+    public int length;
+}
@@ -0,0 +1,249 @@
+package canosa.monitor;
+
+import canosa.game.PieceType;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * GameEventSink that copies events into preallocated arrays and leaves formatting and I/O to a
+ * background thread.  Any number of threads may record at once: each claims the next slot with a CAS
+ * and publishes it once written.  Recording never blocks; when the drain falls a full buffer behind,
+ * new events are counted as dropped instead.
+ *
+ * The drain writes either text, one line per event, or binary:
+ *
+ * File:   magic "CNEV" (4 bytes), version (4)
+ * Event:  time in epoch milliseconds (8), event type ordinal (1), player PieceType ordinal + 1 or 0
+ *         for none (1), three arguments (2 bytes each)
+ *
+ * @author aaron.mitchell
+ */
+public class RingBufferEventSink implements GameEventSink, Closeable {
+    private static final Logger logger = Logger.getLogger(RingBufferEventSink.class.getName());
+
+    public static final int DEFAULT_CAPACITY = 4096;  // events, rounded up to a power of two
+    public static final int MAGIC            = 0x434E4556;  // CNEV
+    public static final int VERSION          = 1;
+    public static final int FILE_HEADER      = 8;
+    public static final int EVENT_SIZE       = 16;
+
+    private static final long DRAIN_INTERVAL = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final GameEventType[] TYPES = GameEventType.values();
+    private static final PieceType[] PLAYERS = PieceType.values();
+
+    // Event slots: the sequence number of an event picks its slot
+    private final int mask;
+    private final long[] times;
+    private final int[] kinds;  // type ordinal << 8 | player ordinal + 1 (0 for none)
+    private final int[] args;   // three per slot
+    private final AtomicLongArray published;  // sequence + 1 of the event in each slot once it is written
+
+    private final AtomicLong head = new AtomicLong();  // Next sequence to claim
+    private volatile long tail = 0;                     // Next sequence to drain
+    private final LongAdder dropped = new LongAdder();
+
+    private final Output output;
+    private final Thread drainer;
+    private volatile boolean closed = false;  // No more events are taken
+    private boolean finished = false;          // close has run
+
+    private RingBufferEventSink(int capacity, Output output){
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        times = new long[size];
+        kinds = new int[size];
+        args = new int[3 * size];
+        published = new AtomicLongArray(size);
+        this.output = output;
+        drainer = new Thread(this::drainLoop, "game-events");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Drain events as lines of text to the writer, which is closed along with the sink
+     */
+    public static RingBufferEventSink text(Writer writer){
+        return text(writer, DEFAULT_CAPACITY);
+    }
+
+    public static RingBufferEventSink text(Writer writer, int capacity){
+        return new RingBufferEventSink(capacity, new TextOutput(writer));
+    }
+
+    /**
+     * Drain events in the binary form to the channel, which is closed along with the sink
+     */
+    public static RingBufferEventSink binary(WritableByteChannel channel) throws IOException {
+        return binary(channel, DEFAULT_CAPACITY);
+    }
+
+    public static RingBufferEventSink binary(WritableByteChannel channel, int capacity) throws IOException {
+        return new RingBufferEventSink(capacity, new BinaryOutput(channel));
+    }
+
+    @Override
+    public void record(GameEventType type, PieceType player, int a, int b, int c){
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail > mask || closed){
+                dropped.increment();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        times[slot] = System.currentTimeMillis();
+        kinds[slot] = type.ordinal() << 8 | (player == null? 0: player.ordinal() + 1);
+        args[3 * slot] = a;
+        args[3 * slot + 1] = b;
+        args[3 * slot + 2] = c;
+        published.lazySet(slot, sequence + 1);
+    }
+
+    /**
+     * @return events thrown away because the buffer was full or the sink closed
+     */
+    public long getDropped(){
+        return dropped.sum();
+    }
+
+    private void drainLoop(){
+        try {
+            while (!closed){
+                if (drain() == 0)
+                    LockSupport.parkNanos(DRAIN_INTERVAL);
+            }
+        }
+        catch (IOException e){
+            logger.log(Level.WARNING, "Could not write game events, recording no more", e);
+            closed = true;
+        }
+    }
+
+    /**
+     * Write out the events published so far, in order
+     * @return number of events written
+     */
+    private int drain() throws IOException {
+        int count = 0;
+        long sequence = tail;
+        int slot = (int) sequence & mask;
+        while (published.get(slot) == sequence + 1){
+            int kind = kinds[slot];
+            output.write(times[slot], kind >>> 8, kind & 0xFF, args[3 * slot], args[3 * slot + 1], args[3 * slot + 2]);
+            tail = ++sequence;  // The slot may be reused from here on
+            slot = (int) sequence & mask;
+            ++count;
+        }
+        if (count > 0)
+            output.flush();
+        return count;
+    }
+
+    /**
+     * Stop recording, write out what has been recorded and close the output
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (finished)
+            return;
+        finished = true;
+        closed = true;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        try {
+            drain();
+        }
+        finally {
+            output.close();
+        }
+    }
+
+    private interface Output extends Closeable {
+        void write(long time, int type, int player, int a, int b, int c) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    private static class TextOutput implements Output {
+        private final Writer writer;
+        private final StringBuilder line = new StringBuilder(128);
+        private final ZoneId zone = ZoneId.systemDefault();
+
+        TextOutput(Writer writer){
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(long time, int type, int player, int a, int b, int c) throws IOException {
+            line.setLength(0);
+            line.append(LocalTime.ofInstant(Instant.ofEpochMilli(time), zone)).append(' ');
+            line.append(player == 0? "-": PLAYERS[player - 1].name()).append(' ');
+            TYPES[type].format(line, a, b, c);
+            line.append(System.lineSeparator());
+            writer.append(line);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static class BinaryOutput implements Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+        BinaryOutput(WritableByteChannel channel) throws IOException {
+            this.channel = channel;
+            buffer.putInt(MAGIC).putInt(VERSION);
+            flush();
+        }
+
+        @Override
+        public void write(long time, int type, int player, int a, int b, int c) throws IOException {
+            if (buffer.remaining() < EVENT_SIZE)
+                flush();
+            buffer.putLong(time).put((byte) type).put((byte) player)
+                    .putShort((short) a).putShort((short) b).putShort((short) c);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
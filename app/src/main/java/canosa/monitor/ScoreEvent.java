@@ -0,0 +1,27 @@
+package canosa.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a sailor being scored
+ *
+ * @author aaron.mitchell
+ */
+@Name("canosa.Score")
+@Label("Sailor Scored")
+@Category({ "Canosa", "Game" })
+@StackTrace(false)
+public class ScoreEvent extends Event {
+    @Label("Player")
+    public String player;
+
+    @Label("Gold Scored")
+    public int goldScored;
+
+    @Label("Silver Scored")
+    public int silverScored;
+}
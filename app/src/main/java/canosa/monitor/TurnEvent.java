@@ -0,0 +1,28 @@
+package canosa.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one player's turn in the game loop, from the start of the turn to the
+ * end of its last action
+ *
+ * @author aaron.mitchell
+ */
+@Name("canosa.Turn")
+@Label("Turn")
+@Category({ "Canosa", "Game" })
+@StackTrace(false)
+public class TurnEvent extends Event {
+    @Label("Turn")
+    public int turn;
+
+    @Label("Player")
+    public String player;
+
+    @Label("Computer")
+    public boolean computer;
+}
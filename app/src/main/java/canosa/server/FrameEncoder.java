@@ -0,0 +1,146 @@
+package canosa.server;
+
+import canosa.game.Game;
+import canosa.game.PieceType;
+import canosa.game.board.BitBoard;
+import canosa.game.board.Board;
+import canosa.game.board.RingStack;
+import canosa.game.record.GameRecord;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes a game for spectators as a stream of binary frames: a keyframe holding the whole position,
+ * then one delta per action holding only what the action changed.  The encoder remembers the position
+ * of the last frame it made, so deltas must be made after every action, in order.  Not thread-safe;
+ * SpectatorBroadcast calls it under the session's lock.  SpectatorBoard decodes the frames.
+ *
+ * Frame:     length of the rest of the frame (2 bytes), type (1), sequence (4), body
+ * KEYFRAME:  player to move (PieceType ordinal, 1), gold scored (1), silver scored (1), 36 cell codes (2 each)
+ * DELTA:     operation count (1), operations, each an opcode (1) and its arguments:
+ *              CELL   cell index (1), cell code (2)     anything else about a cell changed
+ *              PUSH   cell index (1), ring code (1)     a ring was put on a piece
+ *              POP    cell index (1)                    a piece's top ring was taken off
+ *              SCORE  gold scored (1), silver scored (1)
+ *              TURN   player to move (1)
+ * END:       result (GameRecord.Result ordinal, 1)
+ *
+ * The sequence of a keyframe or delta is the number of actions played to reach its position, so a
+ * delta follows on from the frame with the sequence before it.
+ * A cell code holds the piece in bits 0-1 (0 none, 1 gold siren, 2 silver siren, 3 sailor) and its
+ * RingStack in bits 2-9.
+ *
+ * @author aaron.mitchell
+ */
+public class FrameEncoder {
+    public static final int KEYFRAME = 1;
+    public static final int DELTA    = 2;
+    public static final int END      = 3;
+
+    public static final int CELL  = 0;
+    public static final int PUSH  = 1;
+    public static final int POP   = 2;
+    public static final int SCORE = 3;
+    public static final int TURN  = 4;
+
+    static final int HEADER = 7;
+    static final int KEYFRAME_SIZE = HEADER + 3 + 2 * BitBoard.CELLS;
+    private static final int MAX_DELTA_SIZE = HEADER + 1 + 4 * BitBoard.CELLS + 3 + 2;
+
+    // The position of the last frame
+    private final int[] cells = new int[BitBoard.CELLS];
+    private int goldScored = 0;
+    private int silverScored = 0;
+    private PieceType toMove = null;
+
+    /**
+     * @return a frame with the whole position, which the following deltas build on
+     */
+    public ByteBuffer keyframe(Game game, int sequence){
+        remember(game);
+        ByteBuffer frame = ByteBuffer.allocate(KEYFRAME_SIZE);
+        header(frame, KEYFRAME, sequence);
+        frame.put((byte) toMove.ordinal()).put((byte) goldScored).put((byte) silverScored);
+        for (int code: cells)
+            frame.putShort((short) code);
+        return frame.flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a frame with the changes since the last frame
+     */
+    public ByteBuffer delta(Game game, int sequence){
+        ByteBuffer frame = ByteBuffer.allocate(MAX_DELTA_SIZE);
+        header(frame, DELTA, sequence);
+        int countAt = frame.position();
+        frame.put((byte) 0);
+        int count = 0;
+
+        Board board = game.getBoard();
+        for (int i = 0; i < BitBoard.CELLS; ++i){
+            int code = cellCode(board, i);
+            if (code == cells[i])
+                continue;
+            int before = stack(cells[i]);
+            int after = stack(code);
+            if (piece(code) != 0 && piece(code) == piece(cells[i]) && RingStack.size(after) == RingStack.size(before) + 1
+                    && RingStack.push(before, RingStack.peek(after)) == after)
+                frame.put((byte) PUSH).put((byte) i).put((byte) RingStack.peek(after));
+            else if (piece(code) != 0 && piece(code) == piece(cells[i]) && RingStack.size(before) == RingStack.size(after) + 1
+                    && RingStack.pop(before) == after)
+                frame.put((byte) POP).put((byte) i);
+            else
+                frame.put((byte) CELL).put((byte) i).putShort((short) code);
+            cells[i] = code;
+            ++count;
+        }
+        if (game.getGoldSailorsScored() != goldScored || game.getSilverSailorsScored() != silverScored){
+            goldScored = game.getGoldSailorsScored();
+            silverScored = game.getSilverSailorsScored();
+            frame.put((byte) SCORE).put((byte) goldScored).put((byte) silverScored);
+            ++count;
+        }
+        if (game.getCurrentPlayer() != toMove){
+            toMove = game.getCurrentPlayer();
+            frame.put((byte) TURN).put((byte) toMove.ordinal());
+            ++count;
+        }
+        frame.put(countAt, (byte) count);
+        frame.putShort(0, (short) (frame.position() - 2));
+        return frame.flip().asReadOnlyBuffer();
+    }
+
+    public ByteBuffer end(GameRecord.Result result, int sequence){
+        ByteBuffer frame = ByteBuffer.allocate(HEADER + 1);
+        header(frame, END, sequence);
+        frame.put((byte) result.ordinal());
+        return frame.flip().asReadOnlyBuffer();
+    }
+
+    private void remember(Game game){
+        for (int i = 0; i < BitBoard.CELLS; ++i)
+            cells[i] = cellCode(game.getBoard(), i);
+        goldScored = game.getGoldSailorsScored();
+        silverScored = game.getSilverSailorsScored();
+        toMove = game.getCurrentPlayer();
+    }
+
+    private static void header(ByteBuffer frame, int type, int sequence){
+        frame.putShort((short) (frame.capacity() - 2)).put((byte) type).putInt(sequence);
+    }
+
+    static int cellCode(Board board, int index){
+        long bit = BitBoard.bit(index);
+        int piece = (board.getPieceMask(PieceType.GOLD_SIREN) & bit) != 0? 1
+                : (board.getPieceMask(PieceType.SILVER_SIREN) & bit) != 0? 2
+                : (board.getSailorMask() & bit) != 0? 3: 0;
+        return piece == 0? 0: piece | board.getRingStack(index) << 2;
+    }
+
+    static int piece(int code){
+        return code & 0x3;
+    }
+
+    static int stack(int code){
+        return code >>> 2;
+    }
+}
@@ -0,0 +1,437 @@
+package canosa.server;
+
+import canosa.game.ActionType;
+import canosa.game.Move;
+import canosa.game.PieceType;
+import canosa.game.board.BitBoard;
+import canosa.game.record.GameRecord;
+import canosa.monitor.GameMetrics;
+import canosa.monitor.LatencyHistogram;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Serves a SessionManager's games to clients over a line-based text protocol on a local socket.  One
+ * thread runs a selector over every connection and handles requests as they arrive; computer players
+ * take their turns on the manager's compute pool and their actions are queued to the clients, so no
+ * thread ever waits on a client or a client on another's game.
+ *
+ * Requests, one per line, and their replies:
+ *
+ *  NEW gold silver                    OK id              players as for SessionManager, e.g. NEW human hard:250
+ *  MOVE id source target [bump]       OK                 cells as indexes (y * 6 + x)
+ *  STATE id                           STATE id result to_move actions gold_scored silver_scored p50_us p99_us
+ *  STATS                              STATS sessions in_flight completed queued_turns
+ *  WATCH id                           OK                 then spectator frames (see below)
+ *  CLOSE id                           OK
+ *  QUIT                               the server closes the connection
+ *
+ * A request that fails gets "ERR reason" instead.  The connection that created a session is also sent
+ *
+ *  MOVED id player source target bump    for every action played, bump -1 unless an attack
+ *  OVER id result                         once the game ends
+ *
+ * at any time, so these may come before the reply to the request that caused them.  Only that
+ * connection may MOVE in or CLOSE a session, and its sessions are closed when it is.  A client that
+ * lets more than 64 KB of replies and notes pile up unread is disconnected.
+ *
+ * After WATCH the connection carries nothing but the session's SpectatorBroadcast: binary frames as
+ * written by FrameEncoder, starting with a keyframe and ending with the END frame.  Anything more the
+ * client sends is ignored.  A spectator whose socket falls more than 64 KB behind misses deltas until
+ * the next keyframe.
+ *
+ * Usage: GameServer [--port 7878] [--threads N] [--max-actions 400]
+ *
+ * @author aaron.mitchell
+ */
+public class GameServer implements Closeable {
+    private static final Logger logger = Logger.getLogger(GameServer.class.getName());
+
+    public static final int DEFAULT_PORT = 7878;
+    private static final int MAX_LINE = 256;
+    private static final int MAX_GATHER = 64;          // Queued buffers written with one call
+    private static final int MAX_QUEUED = 64 * 1024;  // Bytes queued before frames are dropped or a client is cut off
+
+    private final SessionManager sessions;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Queue<Connection> flushes = new ConcurrentLinkedQueue<>();  // Connections with new output
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * Listen on the loopback address
+     * @param port port to listen on, 0 for any free one
+     */
+    public GameServer(SessionManager sessions, int port) throws IOException {
+        this.sessions = sessions;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::run, "game-server");
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, JMException {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxActions = SessionManager.DEFAULT_MAX_ACTIONS;
+        for (int i = 0; i < args.length; ++i){
+            String value = i + 1 < args.length? args[i + 1]: null;
+            switch (args[i]){
+                case "--port":        port = Integer.parseInt(value); break;
+                case "--threads":     threads = Integer.parseInt(value); break;
+                case "--max-actions": maxActions = Integer.parseInt(value); break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            ++i;
+        }
+        Logger.getLogger("canosa").setLevel(Level.WARNING);
+        GameMetrics.register();
+        SessionManager manager = new SessionManager(threads);
+        manager.setMaxActions(maxActions);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(manager, new ObjectName("canosa:type=SessionManager"));
+
+        GameServer gameServer = new GameServer(manager, port);
+        gameServer.start();
+        System.out.printf("Serving games on port %d with %d compute threads%n", gameServer.getPort(), threads);
+        gameServer.thread.join();
+    }
+
+    public void start(){
+        thread.start();
+    }
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Stop serving, closing every connection and with them their sessions
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(){
+        try {
+            while (running){
+                // Output queued since the last pass, by this thread or (waking the selector) by others
+                for (Connection connection; (connection = flushes.poll()) != null;)
+                    flush(connection);
+                selector.select();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()){
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()){
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isReadable())
+                        read(connection);
+                    if (key.isValid() && key.isWritable())
+                        flush(connection);
+                }
+            }
+        }
+        catch (IOException e){
+            logger.log(Level.SEVERE, "Game server stopped", e);
+        }
+        finally {
+            for (SelectionKey key: selector.keys()){
+                if (key.attachment() instanceof Connection)
+                    disconnect((Connection) key.attachment());
+            }
+            try {
+                server.close();
+                selector.close();
+            }
+            catch (IOException e){
+                logger.log(Level.WARNING, "Could not close the game server", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void read(Connection connection){
+        try {
+            if (connection.channel.read(connection.in) < 0){
+                disconnect(connection);
+                return;
+            }
+        }
+        catch (IOException e){
+            disconnect(connection);
+            return;
+        }
+
+        ByteBuffer in = connection.in;
+        if (connection.watching != null){
+            in.clear();  // A spectator has nothing more to say
+            return;
+        }
+        in.flip();
+        int start = 0;
+        for (int i = 0; i < in.limit(); ++i){
+            if (in.get(i) == '\n'){
+                String line = new String(in.array(), start, i - start, StandardCharsets.US_ASCII).trim();
+                start = i + 1;
+                if (!line.isEmpty())
+                    handle(connection, line);
+                if (connection.closed)
+                    return;
+            }
+        }
+        in.position(start);
+        in.compact();
+        if (!in.hasRemaining()){
+            connection.send("ERR Line too long");
+            flush(connection);
+            disconnect(connection);
+        }
+    }
+
+    private void handle(Connection connection, String line){
+        String[] words = line.split("\\s+");
+        try {
+            switch (words[0].toUpperCase()){
+                case "NEW": {
+                    arguments(words, 3, 3);
+                    GameSession session = sessions.create(words[1], words[2]);
+                    session.addListener(connection);
+                    connection.owned.add(session.getId());
+                    connection.send("OK " + session.getId());
+                    session.start();
+                    break;
+                }
+                case "MOVE": {
+                    arguments(words, 4, 5);
+                    int bump = words.length > 4? cell(words[4]): -1;
+                    owned(connection, words[1]).play(cell(words[2]), cell(words[3]), bump);
+                    connection.send("OK");
+                    break;
+                }
+                case "STATE": {
+                    arguments(words, 2, 2);
+                    GameSession session = session(words[1]);
+                    LatencyHistogram latency = session.getLatency();
+                    connection.send("STATE " + session.getId() + " " + session.getResult() + " " + session.getCurrentPlayer()
+                            + " " + session.getActions() + " " + session.getGoldSailorsScored() + " " + session.getSilverSailorsScored()
+                            + " " + TimeUnit.NANOSECONDS.toMicros(latency.getPercentile(0.50))
+                            + " " + TimeUnit.NANOSECONDS.toMicros(latency.getPercentile(0.99)));
+                    break;
+                }
+                case "STATS":
+                    connection.send("STATS " + sessions.getSessions() + " " + sessions.getGamesInFlight() + " "
+                            + sessions.getGamesCompleted() + " " + sessions.getQueuedTurns());
+                    break;
+                case "WATCH": {
+                    arguments(words, 2, 2);
+                    GameSession session = session(words[1]);
+                    if (!connection.owned.isEmpty())
+                        throw new IllegalStateException("Watch from a connection without sessions of its own");
+                    connection.send("OK");
+                    connection.watching = session.getBroadcast();
+                    connection.watching.subscribe(connection);
+                    break;
+                }
+                case "CLOSE": {
+                    arguments(words, 2, 2);
+                    long id = owned(connection, words[1]).getId();
+                    connection.owned.remove(id);
+                    sessions.close(id);
+                    connection.send("OK");
+                    break;
+                }
+                case "QUIT":
+                    disconnect(connection);
+                    break;
+                default:
+                    connection.send("ERR Unknown request " + words[0]);
+            }
+        }
+        catch (IllegalArgumentException | IllegalStateException e){
+            connection.send("ERR " + e.getMessage());
+        }
+    }
+
+    private static void arguments(String[] words, int min, int max){
+        if (words.length < min || words.length > max)
+            throw new IllegalArgumentException("Wrong number of arguments to " + words[0]);
+    }
+
+    private GameSession session(String id){
+        GameSession session = sessions.get(Long.parseLong(id));
+        if (session == null)
+            throw new IllegalArgumentException("No session " + id);
+        return session;
+    }
+
+    private GameSession owned(Connection connection, String id){
+        GameSession session = session(id);
+        if (!connection.owned.contains(session.getId()))
+            throw new IllegalStateException("Session " + id + " belongs to another connection");
+        return session;
+    }
+
+    private static int cell(String index){
+        int cell = Integer.parseInt(index);
+        if (cell < 0 || cell >= BitBoard.CELLS)
+            throw new IllegalArgumentException("No cell " + index);
+        return cell;
+    }
+
+    /**
+     * Write as much of the connection's queued output as the socket takes, and ask to hear when it
+     * can take more if that was not all of it
+     */
+    private void flush(Connection connection){
+        if (connection.closed)
+            return;
+        if (connection.overflowed){
+            disconnect(connection);
+            return;
+        }
+        ByteBuffer[] batch = connection.batch;
+        try {
+            while (true){
+                int count = connection.out.peek(batch);
+                if (count == 0)
+                    break;
+                connection.channel.write(batch, 0, count);
+                connection.out.removeWritten();
+                if (batch[count - 1].hasRemaining())
+                    break;  // The socket is full
+            }
+        }
+        catch (IOException e){
+            disconnect(connection);
+            return;
+        }
+        connection.key.interestOps(connection.out.isEmpty()? SelectionKey.OP_READ: SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void disconnect(Connection connection){
+        if (connection.closed)
+            return;
+        connection.closed = true;
+        if (connection.watching != null)
+            connection.watching.unsubscribe(connection);
+        for (Long id: connection.owned)
+            sessions.close(id);
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        }
+        catch (IOException e){
+            // Gone either way
+        }
+    }
+
+    /**
+     * A client: its partly read request, its queued output, the sessions it created and the one it
+     * watches, if any
+     */
+    private class Connection implements SessionListener, SpectatorBroadcast.Subscriber {
+        final SocketChannel channel;
+        SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+        final OutputQueue out = new OutputQueue(MAX_QUEUED);
+        final ByteBuffer[] batch = new ByteBuffer[MAX_GATHER];
+        final Set<Long> owned = ConcurrentHashMap.newKeySet();
+        SpectatorBroadcast watching = null;
+        volatile boolean closed = false;
+        volatile boolean overflowed = false;  // The client stopped reading, the server thread disconnects it
+
+        Connection(SocketChannel channel){
+            this.channel = channel;
+        }
+
+        /**
+         * Queue a line for the client; safe from any thread
+         */
+        void send(String line){
+            if (closed)
+                return;
+            if (!out.reply(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.US_ASCII))))
+                overflowed = true;
+            wakeUp();
+        }
+
+        @Override
+        public void offer(ByteBuffer frame, boolean keyframe){
+            if (!closed && out.offer(frame, keyframe))
+                wakeUp();
+        }
+
+        @Override
+        public void end(ByteBuffer frame){
+            if (closed)
+                return;
+            out.end(frame);
+            wakeUp();
+        }
+
+        /**
+         * Have the server thread write out the queued output
+         */
+        private void wakeUp(){
+            flushes.add(this);
+            if (Thread.currentThread() != thread)
+                selector.wakeup();
+        }
+
+        @Override
+        public void actionPlayed(GameSession session, PieceType player, int move){
+            send("MOVED " + session.getId() + " " + player + " " + Move.source(move) + " " + Move.target(move) + " "
+                    + (Move.type(move) == ActionType.ATTACK_OPPONENT? Move.bumpTarget(move): -1));
+        }
+
+        @Override
+        public void gameOver(GameSession session, GameRecord.Result result){
+            send("OVER " + session.getId() + " " + result);
+        }
+    }
+}
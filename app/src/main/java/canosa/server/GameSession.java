@@ -0,0 +1,258 @@
+package canosa.server;
+
+import canosa.Model;
+import canosa.ai.ComputerPlayer;
+import canosa.game.Action;
+import canosa.game.ActionType;
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.Move;
+import canosa.game.PieceType;
+import canosa.game.record.GameRecord;
+import canosa.monitor.LatencyHistogram;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One game hosted by a SessionManager, with its own Model (so its own rules state) and, for each side,
+ * either a ComputerPlayer or a remote client.  A session owns no thread: a client's action is played
+ * on the thread that submits it, and a computer side's turn is one task on the manager's shared compute
+ * pool.  Sessions waiting on a client cost no thread at all, and AI-vs-AI games take turns on the pool
+ * one action at a time.
+ *
+ * The game only changes under the session's lock.  A computer player reads the game without it while
+ * choosing, which is safe because nobody else may act on its turn.
+ *
+ * Latency is measured per action on the server's side: for a computer action from the start of its
+ * turn (queueing for the pool included) to the action being played, for a client action the time to
+ * check and play it.
+ *
+ * @author aaron.mitchell
+ */
+public class GameSession {
+    private static final Logger logger = Logger.getLogger(GameSession.class.getName());
+
+    private final long id;
+    private final SessionManager manager;
+    private final Game game;
+    private final ComputerPlayer[] players;  // Gold then silver, null for a side played by a client
+    private final Executor compute;
+    private final int maxActions;
+    private final List<SessionListener> listeners = new CopyOnWriteArrayList<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final int[] moves = new int[GameEngine.MAX_MOVES];
+
+    private GameRecord.Result result = GameRecord.Result.UNFINISHED;
+    private int actions = 0;
+    private boolean started = false;
+    private boolean closed = false;
+    private SpectatorBroadcast broadcast = null;
+
+    GameSession(long id, SessionManager manager, Model model, ComputerPlayer gold, ComputerPlayer silver,
+            Executor compute, int maxActions){
+        this.id = id;
+        this.manager = manager;
+        this.game = model.getGame();
+        this.players = new ComputerPlayer[]{ gold, silver };
+        this.compute = compute;
+        this.maxActions = maxActions;
+    }
+
+    /**
+     * Start play; a computer playing gold starts thinking
+     */
+    public synchronized void start(){
+        if (started)
+            return;
+        started = true;
+        scheduleComputer();
+    }
+
+    /**
+     * Play an action for the client whose turn it is
+     * @param bumpTarget where an attacked siren is bumped to, ignored for other actions
+     * @throws IllegalStateException if the session is closed, the game over or it is a computer's turn
+     * @throws IllegalArgumentException if no legal action matches
+     */
+    public synchronized void play(int source, int target, int bumpTarget){
+        long start = System.nanoTime();
+        if (closed)
+            throw new IllegalStateException("Session closed");
+        if (result != GameRecord.Result.UNFINISHED)
+            throw new IllegalStateException("Game over");
+        if (!started || players[side(game.getCurrentPlayer())] != null)
+            throw new IllegalStateException("Not a client's turn");
+        int count = GameEngine.generateLegalMoves(game, moves);
+        for (int i = 0; i < count; ++i){
+            int move = moves[i];
+            if (Move.source(move) == source && Move.target(move) == target
+                    && (Move.type(move) != ActionType.ATTACK_OPPONENT || Move.bumpTarget(move) == bumpTarget)){
+                apply(move, start);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Illegal action");
+    }
+
+    /**
+     * Stop the game; a computer still thinking finishes and its action is dropped
+     */
+    public synchronized void close(){
+        if (closed)
+            return;
+        closed = true;
+        if (result == GameRecord.Result.UNFINISHED){
+            releasePlayers();
+            manager.ended(this);
+            for (SessionListener listener: listeners)
+                listener.gameOver(this, result);
+        }
+        listeners.clear();
+    }
+
+    private void scheduleComputer(){
+        if (closed || result != GameRecord.Result.UNFINISHED)
+            return;
+        ComputerPlayer player = players[side(game.getCurrentPlayer())];
+        if (player == null)
+            return;
+        long queued = System.nanoTime();
+        try {
+            compute.execute(() -> think(player, queued));
+        }
+        catch (RejectedExecutionException e){
+            logger.warning("Compute pool shut down, closing session " + id);
+            close();
+        }
+    }
+
+    private void think(ComputerPlayer player, long queued){
+        Action action = null;
+        try {
+            action = player.chooseAction();
+        }
+        catch (RuntimeException e){
+            logger.log(Level.SEVERE, "Computer player failed in session " + id, e);
+        }
+        synchronized (this){
+            if (closed)
+                return;
+            // A computer with no action (or a broken one) loses, as if trapped
+            if (action == null || !GameEngine.isLegal(game, action))
+                finish(game.getOpponent() == PieceType.GOLD_SIREN? GameRecord.Result.GOLD_WON: GameRecord.Result.SILVER_WON);
+            else
+                apply(Move.of(action), queued);
+        }
+    }
+
+    private void apply(int move, long since){
+        PieceType player = game.getCurrentPlayer();
+        game.makeMove(move);
+        ++actions;
+        latency.record(System.nanoTime() - since);
+        for (SessionListener listener: listeners)
+            listener.actionPlayed(this, player, move);
+
+        PieceType winner = GameEngine.getWinner(game);
+        if (winner != null)
+            finish(winner == PieceType.GOLD_SIREN? GameRecord.Result.GOLD_WON: GameRecord.Result.SILVER_WON);
+        else if (!GameEngine.hasLegalMove(game))
+            finish(game.getOpponent() == PieceType.GOLD_SIREN? GameRecord.Result.GOLD_WON: GameRecord.Result.SILVER_WON);
+        else if (actions >= maxActions)
+            finish(GameRecord.Result.DRAW);
+        else
+            scheduleComputer();
+    }
+
+    private void finish(GameRecord.Result result){
+        this.result = result;
+        releasePlayers();
+        manager.ended(this);
+        for (SessionListener listener: listeners)
+            listener.gameOver(this, result);
+    }
+
+    private void releasePlayers(){
+        for (ComputerPlayer player: players){
+            if (player != null)
+                player.shutdown();
+        }
+    }
+
+    private static int side(PieceType player){
+        return player == PieceType.GOLD_SIREN? 0: 1;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return the broadcast of this game to spectators, set up the first time it is asked for
+     */
+    public synchronized SpectatorBroadcast getBroadcast(){
+        if (broadcast == null){
+            broadcast = new SpectatorBroadcast(this);
+            if (!closed)
+                listeners.add(broadcast);
+        }
+        return broadcast;
+    }
+
+    public void addListener(SessionListener listener){
+        listeners.add(listener);
+    }
+
+    public void removeListener(SessionListener listener){
+        listeners.remove(listener);
+    }
+
+    public synchronized GameRecord.Result getResult() {
+        return result;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public synchronized PieceType getCurrentPlayer() {
+        return game.getCurrentPlayer();
+    }
+
+    /**
+     * @return whether the player's side is played by a computer
+     */
+    public boolean isComputer(PieceType player){
+        return players[side(player)] != null;
+    }
+
+    /**
+     * The game itself, for listeners; only to be read with the session's lock held
+     */
+    Game getGame() {
+        return game;
+    }
+
+    public synchronized int getActions() {
+        return actions;
+    }
+
+    public synchronized int getGoldSailorsScored() {
+        return game.getGoldSailorsScored();
+    }
+
+    public synchronized int getSilverSailorsScored() {
+        return game.getSilverSailorsScored();
+    }
+
+    /**
+     * @return the server's time to play each action, see the class comment
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
@@ -0,0 +1,109 @@
+package canosa.server;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A connection's output waiting for its socket.  Any thread may add to it; only the server thread
+ * takes from it.  Replies are queued up to the limit; past it the client has stopped reading and
+ * should be disconnected.  Broadcast frames are offered instead: once the queue holds
+ * more than its limit the frame is dropped and so is every later delta, until a keyframe fits again,
+ * so a slow spectator costs a bounded amount of memory and never holds up the game it watches.  The
+ * frame ending a broadcast is always queued, however far behind the connection is, since nothing
+ * follows it to catch up with.
+ *
+ * Buffers must be added at position 0.
+ *
+ * @author aaron.mitchell
+ */
+class OutputQueue {
+    private final int limit;
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger bytes = new AtomicInteger();
+    private boolean lagging = false;  // Dropping deltas until a keyframe fits
+    private long dropped = 0;
+
+    /**
+     * @param limit bytes queued beyond which replies are refused and broadcast frames dropped
+     */
+    OutputQueue(int limit){
+        this.limit = limit;
+    }
+
+    private void add(ByteBuffer buffer){
+        bytes.addAndGet(buffer.limit());
+        buffers.add(buffer);
+    }
+
+    /**
+     * Queue a reply unless the queue is already over its limit
+     * @return whether the reply was queued
+     */
+    synchronized boolean reply(ByteBuffer buffer){
+        if (bytes.get() > limit)
+            return false;
+        add(buffer);
+        return true;
+    }
+
+    /**
+     * Queue a broadcast frame unless the connection is too far behind
+     * @return whether the frame was queued
+     */
+    synchronized boolean offer(ByteBuffer frame, boolean keyframe){
+        if ((lagging && !keyframe) || bytes.get() + frame.limit() > limit){
+            lagging = true;
+            ++dropped;
+            return false;
+        }
+        lagging = false;
+        add(frame.duplicate());
+        return true;
+    }
+
+    /**
+     * Queue the last frame of a broadcast, even over the limit
+     */
+    synchronized void end(ByteBuffer frame){
+        lagging = false;
+        add(frame.duplicate());
+    }
+
+    /**
+     * Put the buffers at the head of the queue into the batch, for one gathering write
+     * @return number of buffers put in the batch
+     */
+    int peek(ByteBuffer[] batch){
+        int count = 0;
+        for (ByteBuffer buffer: buffers){
+            batch[count++] = buffer;
+            if (count == batch.length)
+                break;
+        }
+        return count;
+    }
+
+    /**
+     * Take the buffers that have been written out off the head of the queue
+     */
+    void removeWritten(){
+        for (ByteBuffer buffer = buffers.peek(); buffer != null && !buffer.hasRemaining(); buffer = buffers.peek()){
+            buffers.poll();
+            bytes.addAndGet(-buffer.limit());
+        }
+    }
+
+    boolean isEmpty(){
+        return buffers.isEmpty();
+    }
+
+    int getBytes(){
+        return bytes.get();
+    }
+
+    synchronized long getDropped(){
+        return dropped;
+    }
+}
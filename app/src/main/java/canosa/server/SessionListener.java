@@ -0,0 +1,24 @@
+package canosa.server;
+
+import canosa.game.PieceType;
+import canosa.game.record.GameRecord;
+
+/**
+ * Told about every action played in a GameSession and how the game ends.  Called with the session's
+ * lock held, in the order things happen, so implementations must only hand the news on (queue it,
+ * never block on I/O).
+ *
+ * @author aaron.mitchell
+ */
+public interface SessionListener {
+    /**
+     * @param player the player who acted
+     * @param move the action, packed (see Move)
+     */
+    void actionPlayed(GameSession session, PieceType player, int move);
+
+    /**
+     * @param result how the game ended; UNFINISHED if the session was closed before it did
+     */
+    void gameOver(GameSession session, GameRecord.Result result);
+}
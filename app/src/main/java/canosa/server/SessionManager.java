@@ -0,0 +1,168 @@
+package canosa.server;
+
+import canosa.Model;
+import canosa.ai.ComputerPlayer;
+import canosa.ai.EasyComputerPlayer;
+import canosa.ai.HardComputerPlayer;
+import canosa.ai.TranspositionTable;
+import canosa.game.PieceType;
+import canosa.game.record.GameRecord;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hosts any number of independent GameSessions.  The computer players of every session take their
+ * turns on one shared compute pool with a fixed number of threads, so a burst of sessions queues for
+ * the pool instead of starting threads of their own.
+ *
+ * Players are given as "human" (played by a client), "easy", or "hard" with an optional time budget in
+ * milliseconds per action, e.g. "hard:250".  Hard players get a small transposition table of their own
+ * and do not ponder, so each session stays cheap.
+ *
+ * @author aaron.mitchell
+ */
+public class SessionManager implements SessionManagerMBean {
+    public static final int DEFAULT_MAX_ACTIONS = 400;
+    public static final long DEFAULT_TIME_BUDGET = 250;  // milliseconds per hard action
+    private static final int TABLE_SIZE = 1;              // megabytes per hard player
+
+    private final ThreadPoolExecutor compute;
+    private final ConcurrentHashMap<Long, GameSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private volatile int maxActions = DEFAULT_MAX_ACTIONS;
+
+    /**
+     * @param computeThreads threads shared by every session's computer players
+     */
+    public SessionManager(int computeThreads){
+        AtomicLong threadCount = new AtomicLong();
+        compute = new ThreadPoolExecutor(computeThreads, computeThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "session-compute-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Set up a session; it starts once start() is called on it, so listeners can be added first
+     * @throws IllegalArgumentException if a player is not human, easy or hard[:ms]
+     */
+    public GameSession create(String gold, String silver){
+        Model model = new Model();
+        model.getGame().init();
+        ComputerPlayer goldPlayer = createPlayer(gold, model, PieceType.GOLD_SIREN);
+        ComputerPlayer silverPlayer = createPlayer(silver, model, PieceType.SILVER_SIREN);
+        GameSession session = new GameSession(nextId.getAndIncrement(), this, model, goldPlayer, silverPlayer,
+                compute, maxActions);
+        sessions.put(session.getId(), session);
+        inFlight.increment();
+        return session;
+    }
+
+    /**
+     * @return the session, or null if there is none with the id
+     */
+    public GameSession get(long id){
+        return sessions.get(id);
+    }
+
+    public Collection<GameSession> getAll(){
+        return sessions.values();
+    }
+
+    /**
+     * Close a session and forget it
+     */
+    public void close(long id){
+        GameSession session = sessions.remove(id);
+        if (session != null)
+            session.close();
+    }
+
+    /**
+     * Close every session and stop the compute pool
+     */
+    public void shutdown(){
+        for (Long id: sessions.keySet())
+            close(id);
+        compute.shutdownNow();
+    }
+
+    /**
+     * Called by a session once its game is over or it is closed before that
+     */
+    void ended(GameSession session){
+        inFlight.decrement();
+        if (session.getResult() != GameRecord.Result.UNFINISHED)
+            completed.increment();
+    }
+
+    private ComputerPlayer createPlayer(String spec, Model model, PieceType siren){
+        String[] parts = spec.split(":");
+        ComputerPlayer player;
+        switch (parts[0]){
+            case "human":
+                return null;
+            case "easy":
+                player = new EasyComputerPlayer(model, null);
+                break;
+            case "hard": {
+                HardComputerPlayer hard = new HardComputerPlayer(model, null);
+                hard.setTimeBudget(parts.length > 1? Long.parseLong(parts[1]): DEFAULT_TIME_BUDGET);
+                hard.setTranspositionTable(new TranspositionTable(TABLE_SIZE));
+                hard.setPonder(false);
+                player = hard;
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown player " + spec + ", expected human, easy or hard");
+        }
+        player.setSiren(siren);
+        player.getReady();
+        return player;
+    }
+
+    public int getMaxActions() {
+        return maxActions;
+    }
+
+    /**
+     * @param maxActions games still going after this many actions are draws; applies to new sessions
+     */
+    public void setMaxActions(int maxActions) {
+        this.maxActions = maxActions;
+    }
+
+    @Override
+    public int getSessions() {
+        return sessions.size();
+    }
+
+    @Override
+    public long getGamesInFlight() {
+        return inFlight.sum();
+    }
+
+    @Override
+    public long getGamesCompleted() {
+        return completed.sum();
+    }
+
+    @Override
+    public int getComputeThreads() {
+        return compute.getMaximumPoolSize();
+    }
+
+    @Override
+    public int getQueuedTurns() {
+        return compute.getQueue().size();
+    }
+}
@@ -0,0 +1,14 @@
+package canosa.server;
+
+/**
+ * JMX view of a SessionManager
+ *
+ * @author aaron.mitchell
+ */
+public interface SessionManagerMBean {
+    int getSessions();
+    long getGamesInFlight();
+    long getGamesCompleted();
+    int getComputeThreads();
+    int getQueuedTurns();
+}
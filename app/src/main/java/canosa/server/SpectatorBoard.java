@@ -0,0 +1,147 @@
+package canosa.server;
+
+import canosa.game.PieceType;
+import canosa.game.board.BitBoard;
+import canosa.game.board.RingStack;
+import canosa.game.record.GameRecord;
+import java.nio.ByteBuffer;
+
+/**
+ * A spectator's copy of a game, kept up to date from the frames made by FrameEncoder.  It is only in
+ * sync once it has seen a keyframe; after that every delta must follow on from the frame before it.
+ * Frames it cannot use (deltas before the first keyframe or after a gap in the sequence) are skipped
+ * and the board waits for the next keyframe.
+ *
+ * @author aaron.mitchell
+ */
+public class SpectatorBoard {
+    private static final PieceType[] PIECES = { null, PieceType.GOLD_SIREN, PieceType.SILVER_SIREN, PieceType.SAILOR };
+
+    private final int[] cells = new int[BitBoard.CELLS];
+    private int goldScored = 0;
+    private int silverScored = 0;
+    private PieceType toMove = null;
+    private int sequence = -1;
+    private boolean synced = false;
+    private GameRecord.Result result = GameRecord.Result.UNFINISHED;
+    private boolean over = false;
+
+    /**
+     * Read one frame from the buffer and apply it
+     * @return false if the frame was skipped because the board is out of sync
+     * @throws IllegalArgumentException if the frame is not a valid frame
+     */
+    public boolean apply(ByteBuffer buffer){
+        int length = buffer.getShort() & 0xFFFF;
+        ByteBuffer frame = buffer.slice().limit(length);
+        buffer.position(buffer.position() + length);
+
+        int type = frame.get();
+        int frameSequence = frame.getInt();
+        switch (type){
+            case FrameEncoder.KEYFRAME:
+                toMove = PieceType.values()[frame.get()];
+                goldScored = frame.get();
+                silverScored = frame.get();
+                for (int i = 0; i < BitBoard.CELLS; ++i)
+                    cells[i] = frame.getShort();
+                sequence = frameSequence;
+                synced = true;
+                return true;
+            case FrameEncoder.DELTA:
+                if (!synced || frameSequence != sequence + 1){
+                    synced = false;
+                    return false;
+                }
+                int count = frame.get();
+                for (int op = 0; op < count; ++op)
+                    applyOperation(frame);
+                sequence = frameSequence;
+                return true;
+            case FrameEncoder.END:
+                result = GameRecord.Result.values()[frame.get()];
+                over = true;
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown frame type " + type);
+        }
+    }
+
+    private void applyOperation(ByteBuffer frame){
+        int opcode = frame.get();
+        switch (opcode){
+            case FrameEncoder.CELL: {
+                int cell = frame.get();
+                cells[cell] = frame.getShort();
+                break;
+            }
+            case FrameEncoder.PUSH: {
+                int cell = frame.get();
+                int stack = RingStack.push(FrameEncoder.stack(cells[cell]), frame.get());
+                cells[cell] = FrameEncoder.piece(cells[cell]) | stack << 2;
+                break;
+            }
+            case FrameEncoder.POP: {
+                int cell = frame.get();
+                int stack = RingStack.pop(FrameEncoder.stack(cells[cell]));
+                cells[cell] = FrameEncoder.piece(cells[cell]) | stack << 2;
+                break;
+            }
+            case FrameEncoder.SCORE:
+                goldScored = frame.get();
+                silverScored = frame.get();
+                break;
+            case FrameEncoder.TURN:
+                toMove = PieceType.values()[frame.get()];
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown delta operation " + opcode);
+        }
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    /**
+     * @return actions played to reach the position shown, -1 before the first keyframe
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the piece on the cell, or null if it is empty
+     */
+    public PieceType getPiece(int index){
+        return PIECES[FrameEncoder.piece(cells[index])];
+    }
+
+    public int getRingStack(int index){
+        return FrameEncoder.stack(cells[index]);
+    }
+
+    int getCellCode(int index){
+        return cells[index];
+    }
+
+    public int getGoldSailorsScored() {
+        return goldScored;
+    }
+
+    public int getSilverSailorsScored() {
+        return silverScored;
+    }
+
+    public PieceType getCurrentPlayer() {
+        return toMove;
+    }
+
+    public boolean isOver() {
+        return over;
+    }
+
+    public GameRecord.Result getResult() {
+        return result;
+    }
+}
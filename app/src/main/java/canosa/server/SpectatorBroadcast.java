@@ -0,0 +1,89 @@
+package canosa.server;
+
+import canosa.game.PieceType;
+import canosa.game.record.GameRecord;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Publishes a session's game to any number of spectators as FrameEncoder frames.  Each frame is
+ * encoded once and the same read-only buffer is offered to every subscriber.  A subscriber joining
+ * late is sent a keyframe of the position straight away, and every KEYFRAME_INTERVAL actions all
+ * subscribers get a keyframe instead of a delta, so one that fell behind can pick up again.
+ *
+ * Frames are offered with the session's lock held, from whichever thread played the action, so a
+ * subscriber must queue them and return: one that cannot keep up drops frames (see OutputQueue)
+ * rather than hold up the game, but is always handed the frame ending the game.
+ *
+ * @author aaron.mitchell
+ */
+public class SpectatorBroadcast implements SessionListener {
+    public static final int KEYFRAME_INTERVAL = 16;
+
+    /**
+     * Takes the frames of a broadcast
+     */
+    public interface Subscriber {
+        /**
+         * @param keyframe whether the frame can be used without the ones before it
+         */
+        void offer(ByteBuffer frame, boolean keyframe);
+
+        /**
+         * Take the frame ending the broadcast; unlike other frames it must not be dropped
+         */
+        void end(ByteBuffer frame);
+    }
+
+    private final GameSession session;
+    private final FrameEncoder encoder = new FrameEncoder();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private ByteBuffer endFrame = null;  // Once the game is over
+
+    /**
+     * Called by GameSession.getBroadcast with the session's lock held
+     */
+    SpectatorBroadcast(GameSession session){
+        this.session = session;
+        encoder.keyframe(session.getGame(), session.getActions());
+        if (session.getResult() != GameRecord.Result.UNFINISHED || session.isClosed())
+            endFrame = encoder.end(session.getResult(), session.getActions());
+    }
+
+    public void subscribe(Subscriber subscriber){
+        synchronized (session){
+            subscriber.offer(encoder.keyframe(session.getGame(), session.getActions()), true);
+            if (endFrame != null)
+                subscriber.end(endFrame);
+            else
+                subscribers.add(subscriber);
+        }
+    }
+
+    public void unsubscribe(Subscriber subscriber){
+        subscribers.remove(subscriber);
+    }
+
+    public int getSubscribers(){
+        return subscribers.size();
+    }
+
+    @Override
+    public void actionPlayed(GameSession session, PieceType player, int move){
+        int sequence = session.getActions();
+        boolean keyframe = sequence % KEYFRAME_INTERVAL == 0;
+        // Keep the encoder up to date even with nobody watching, so the next delta is right
+        ByteBuffer frame = keyframe? encoder.keyframe(session.getGame(), sequence): encoder.delta(session.getGame(), sequence);
+        for (Subscriber subscriber: subscribers)
+            subscriber.offer(frame, keyframe);
+    }
+
+    @Override
+    public void gameOver(GameSession session, GameRecord.Result result){
+        endFrame = encoder.end(result, session.getActions());
+        for (Subscriber subscriber: subscribers)
+            subscriber.end(endFrame);
+        subscribers.clear();
+    }
+}
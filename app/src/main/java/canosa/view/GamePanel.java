@@ -1,15 +1,30 @@
 package canosa.view;
 
 import canosa.Model;
+import canosa.game.Action;
+import canosa.game.Piece;
 import canosa.game.PieceType;
+import canosa.game.board.Board;
 import canosa.game.board.Cell;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
-import java.util.Iterator;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
 import javax.swing.JPanel;
 
 /**
+ * Draws the board.  The parts that never change during a game (water, islands and grid) are drawn
+ * once into an image, and each piece is drawn from a sprite rendered the first time its look (type,
+ * ring stack, whether it is the active siren) is needed.  After an action only the cells it touched
+ * are repainted, see refresh(Action).
  *
  * @author aaron.mitchell
  */
@@ -30,10 +45,16 @@ public class GamePanel extends JPanel{
     private static final Color ACTIVE_COLOR   = Color.red;
     private static final Color SELECTED_COLOR = Color.cyan;
     private static final Font SCORE_FONT      = new Font("Serif", Font.BOLD, 16);
+    private static final Font THINKING_FONT   = new Font("Serif", Font.ITALIC, 16);
+    private static final Rectangle THINKING_AREA = new Rectangle(XOFFSET + (3 * CELL_SIZE) - 40, YOFFSET, 90, 30);
 
     private Model model;
     private View view;
 
+    private BufferedImage boardLayer = null;
+    private long boardLayerIslands = -1;  // Island mask the board layer was drawn for
+    private final Map<Integer, BufferedImage> sprites = new HashMap<>();
+
     public GamePanel(Model model, View view){
         super();
         this.model = model;
@@ -50,136 +71,160 @@ public class GamePanel extends JPanel{
 
     @Override
     public void paintComponent(Graphics graphics){
+        Rectangle clip = graphics.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
         graphics.setColor(BACKGROUND);
-        graphics.fillRect(0, 0, getWidth(), getHeight());
+        graphics.fillRect(clip.x, clip.y, clip.width, clip.height);
 
-        model.getGame().getBoard().getCells().stream()
-                .forEach(cell -> drawCell(graphics, cell));
+        Board board = model.getGame().getBoard();
+        graphics.drawImage(getBoardLayer(board), 0, 0, null);
+        for (Cell cell: board.getCells()){
+            if (cell.getPiece() != null && clip.intersects(cellBounds(cell)))
+                graphics.drawImage(getSprite(cell.getPiece()), cellX(cell), cellY(cell), null);
+        }
 
         if (model.getSelectedCell() != null)
             drawSelectedCellBorders(graphics, model.getSelectedCell());
 
         drawScores(graphics);
+        if (model.isComputerThinking())
+            drawThinking(graphics);
     }
 
-    private void drawCell(Graphics g, Cell cell){
-        int px = XOFFSET + (cell.getX() * CELL_SIZE);
-        int py = YOFFSET + (cell.getY() * CELL_SIZE);
-        if (cell.getIslandOwner() == PieceType.GOLD_SIREN)
-            g.setColor(GOLD);
-        else if (cell.getIslandOwner() == PieceType.SILVER_SIREN)
-            g.setColor(SILVER);
-        else
-            g.setColor(BLUE);
-        g.fillRect(px, py, CELL_SIZE, CELL_SIZE);
+    /**
+     * The water, islands and grid, redrawn only when the islands move (i.e. a new game)
+     */
+    private BufferedImage getBoardLayer(Board board){
+        long islands = board.getIslandMask();
+        if (boardLayer != null && boardLayerIslands == islands)
+            return boardLayer;
+
+        boardLayer = createImage(XOFFSET + (6 * CELL_SIZE) + 1, YOFFSET + (6 * CELL_SIZE) + 1, Transparency.OPAQUE);
+        Graphics2D g = boardLayer.createGraphics();
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, boardLayer.getWidth(), boardLayer.getHeight());
+        for (Cell cell: board.getCells()){
+            int px = cellX(cell);
+            int py = cellY(cell);
+            if (cell.getIslandOwner() == PieceType.GOLD_SIREN)
+                g.setColor(GOLD);
+            else if (cell.getIslandOwner() == PieceType.SILVER_SIREN)
+                g.setColor(SILVER);
+            else
+                g.setColor(BLUE);
+            g.fillRect(px, py, CELL_SIZE, CELL_SIZE);
 
-        g.setColor(Color.black);
-        g.drawRect(px, py, CELL_SIZE, CELL_SIZE);
-
-        if (cell.getPiece() != null){
-            switch(cell.getPiece().getType()){
-                case SAILOR: {
-                    drawSailor(g, cell);
-                    break;
-                }
-                case GOLD_SIREN: 
-                case SILVER_SIREN: {
-                    drawSiren(g, cell);
-                    break;
-                }
-            }
+            g.setColor(Color.black);
+            g.drawRect(px, py, CELL_SIZE, CELL_SIZE);
         }
+        g.dispose();
+        boardLayerIslands = islands;
+        return boardLayer;
     }
 
-    private void drawSelectedCellBorders(Graphics g, Cell cell){
-        int px = XOFFSET + (cell.getX() * CELL_SIZE);
-        int py = YOFFSET + (cell.getY() * CELL_SIZE);
+    /**
+     * The piece drawn on a transparent cell-sized image, cached by how it looks
+     */
+    private BufferedImage getSprite(Piece piece){
+        boolean active = piece.getType().isSiren() && model.getGame().getCurrentPlayer() == piece.getType();
+        int key = (piece.getRingStack() << 3) | (piece.getType().ordinal() << 1) | (active? 1: 0);
+        BufferedImage sprite = sprites.get(key);
+        if (sprite == null){
+            sprite = createImage(CELL_SIZE, CELL_SIZE, Transparency.TRANSLUCENT);
+            Graphics2D g = sprite.createGraphics();
+            if (piece.getType() == PieceType.SAILOR)
+                drawSailor(g, piece);
+            else
+                drawSiren(g, piece, active);
+            g.dispose();
+            sprites.put(key, sprite);
+        }
+        return sprite;
+    }
 
+    private BufferedImage createImage(int width, int height, int transparency){
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        if (config != null)
+            return config.createCompatibleImage(width, height, transparency);
+        return new BufferedImage(width, height, transparency == Transparency.OPAQUE? BufferedImage.TYPE_INT_RGB: BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private void drawSelectedCellBorders(Graphics g, Cell cell){
         g.setColor(SELECTED_COLOR);
-        g.drawRect(px, py, CELL_SIZE, CELL_SIZE);
+        g.drawRect(cellX(cell), cellY(cell), CELL_SIZE, CELL_SIZE);
     }
 
-    private void drawSailor(Graphics g, Cell cell){
-        drawTopRing(g, cell);
+    private void drawSailor(Graphics g, Piece piece){
+        drawTopRing(g, piece);
 
-        int px = XOFFSET + (cell.getX() * CELL_SIZE);
-        int py = YOFFSET + (cell.getY() * CELL_SIZE);
+        int px = ((CELL_SIZE - SAILOR_SIZE) / 2);
+        int py = ((CELL_SIZE - SAILOR_SIZE) / 2);
 
-        px += ((CELL_SIZE - SAILOR_SIZE) / 2);
-        py += ((CELL_SIZE - SAILOR_SIZE) / 2);
-        
         g.setColor(SAILOR_COLOR);
         g.fillOval(px, py, SAILOR_SIZE, SAILOR_SIZE);
-        drawRingStack(g, cell);
+        drawRingStack(g, piece);
     }
 
-    private void drawSiren(Graphics g, Cell cell){
-        int px = XOFFSET + (cell.getX() * CELL_SIZE);
-        int py = YOFFSET + (cell.getY() * CELL_SIZE);
+    private void drawSiren(Graphics g, Piece piece, boolean active){
+        int px = ((CELL_SIZE - SIREN_SIZE) / 2);
+        int py = ((CELL_SIZE - SIREN_SIZE) / 2);
 
-        px += ((CELL_SIZE - SIREN_SIZE) / 2);
-        py += ((CELL_SIZE - SIREN_SIZE) / 2);
-
-        if (model.getGame().getCurrentPlayer() == cell.getPiece().getType())
+        if (active)
             g.setColor(ACTIVE_COLOR);
         else
             g.setColor(Color.BLACK);
         g.fillOval(px - 5, py - 5, SIREN_SIZE + 10, SIREN_SIZE + 10);
 
-        if (cell.getPiece().getType() == PieceType.GOLD_SIREN)
+        if (piece.getType() == PieceType.GOLD_SIREN)
             g.setColor(GOLD);
         else
             g.setColor(SILVER);
-        
+
         g.fillOval(px, py, SIREN_SIZE, SIREN_SIZE);
-        drawRingStack(g, cell);
+        drawRingStack(g, piece);
     }
 
-    private void drawTopRing(Graphics g, Cell cell){
-        if (cell.getPiece().getRings().isEmpty())
+    private void drawTopRing(Graphics g, Piece piece){
+        if (piece.getRings().isEmpty())
             return;
 
-        int px = XOFFSET + (cell.getX() * CELL_SIZE);
-        int py = YOFFSET + (cell.getY() * CELL_SIZE);
-
         int size = RING_SIZE;
-        if (cell.getPiece().getType().isSiren()){
+        if (piece.getType().isSiren()){
             size += SIREN_SIZE;
         }
         else {
             size += SAILOR_SIZE;
         }
 
-        px += ((CELL_SIZE - size) / 2);
-        py += ((CELL_SIZE - size) / 2);
+        int px = ((CELL_SIZE - size) / 2);
+        int py = ((CELL_SIZE - size) / 2);
 
-        if (cell.getPiece().peekTopRing() == PieceType.GOLD_SIREN)
+        if (piece.peekTopRing() == PieceType.GOLD_SIREN)
             g.setColor(GOLD);
         else
             g.setColor(SILVER);
-        
+
         g.fillOval(px, py, size, size);
     }
 
-    private void drawRingStack(Graphics g, Cell cell){
-        if (cell.getPiece().getRings().isEmpty())
+    private void drawRingStack(Graphics g, Piece piece){
+        if (piece.getRings().isEmpty())
             return;
 
-        int px = XOFFSET + (cell.getX() * CELL_SIZE);
-        int py = YOFFSET + (cell.getY() * CELL_SIZE);
-
-        px += ((CELL_SIZE - RING_STACK_WIDTH) / 2);
-        py += ((CELL_SIZE - RING_STACK_HEIGHT) / 2);
+        int px = ((CELL_SIZE - RING_STACK_WIDTH) / 2);
+        int py = ((CELL_SIZE - RING_STACK_HEIGHT) / 2);
         py += RING_STACK_HEIGHT;
 
-        Iterator<PieceType> reverseRings = cell.getPiece().getRings().descendingIterator();
-        while (reverseRings.hasNext()){
-            PieceType ring = reverseRings.next();
+        List<PieceType> rings = piece.getRings();
+        ListIterator<PieceType> reverseRings = rings.listIterator(rings.size());
+        while (reverseRings.hasPrevious()){
+            PieceType ring = reverseRings.previous();
             if (ring == PieceType.GOLD_SIREN)
                 g.setColor(GOLD);
             else
                 g.setColor(SILVER);
-            
+
             g.fillRect(px, py, RING_STACK_WIDTH, RING_STACK_HEIGHT);
             g.setColor(Color.BLACK);
             g.drawRect(px, py, RING_STACK_WIDTH, RING_STACK_HEIGHT);
@@ -200,7 +245,61 @@ public class GamePanel extends JPanel{
         g.drawString("" + model.getGame().getSilverSailorsScored(), x, y);
     }
 
+    private void drawThinking(Graphics g){
+        g.setFont(THINKING_FONT);
+        g.setColor(ACTIVE_COLOR);
+        g.drawString("Thinking...", XOFFSET + (3 * CELL_SIZE) - 35, YOFFSET + 20);
+    }
+
+    private static int cellX(Cell cell){
+        return XOFFSET + (cell.getX() * CELL_SIZE);
+    }
+
+    private static int cellY(Cell cell){
+        return YOFFSET + (cell.getY() * CELL_SIZE);
+    }
+
+    // Includes the right and bottom border lines
+    private static Rectangle cellBounds(Cell cell){
+        return new Rectangle(cellX(cell), cellY(cell), CELL_SIZE + 1, CELL_SIZE + 1);
+    }
+
+    /**
+     * Repaint the whole panel
+     */
     public void refresh(){
         repaint();
     }
+
+    /**
+     * Repaint what an action that has just been played can have changed: its cells, both sirens (the
+     * active siren is highlighted), both islands (the scores are drawn on them) and the thinking
+     * indicator
+     */
+    public void refresh(Action action){
+        Board board = model.getGame().getBoard();
+        refreshCell(action.getSourceCell());
+        refreshCell(action.getTargetCell());
+        refreshCell(action.getBumpTargetCell());
+        refreshCell(board.getSirenCell(PieceType.GOLD_SIREN));
+        refreshCell(board.getSirenCell(PieceType.SILVER_SIREN));
+        refreshCell(board.getIslandCell(PieceType.GOLD_SIREN));
+        refreshCell(board.getIslandCell(PieceType.SILVER_SIREN));
+        refreshThinking();
+    }
+
+    /**
+     * Repaint one cell and what is drawn on it; does nothing for null
+     */
+    public void refreshCell(Cell cell){
+        if (cell != null)
+            repaint(cellBounds(cell));
+    }
+
+    /**
+     * Repaint the thinking indicator
+     */
+    public void refreshThinking(){
+        repaint(THINKING_AREA);
+    }
 }
@@ -2,6 +2,7 @@ package canosa.view;
 
 import canosa.Model;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JPanel;
 
 /**
@@ -14,6 +15,7 @@ public class MainMenu extends JPanel{
 
     private JButton btnExit;
     private JButton btnPlay;
+    private JCheckBox chkHard;
 
     public MainMenu(Model model, View view){
         super();
@@ -22,10 +24,13 @@ public class MainMenu extends JPanel{
 
         btnExit = new JButton("Exit");
         btnPlay = new JButton("Play");
+        chkHard = new JCheckBox("Hard opponent");
 
         new GridBagLayoutHelper(this, true)
                 .add(btnPlay)
                 .nextRow()
+                .add(chkHard)
+                .nextRow()
                 .add(btnExit)
                 ;
     }
@@ -37,4 +42,8 @@ public class MainMenu extends JPanel{
     public JButton getBtnPlay() {
         return btnPlay;
     }
+
+    public JCheckBox getChkHard() {
+        return chkHard;
+    }
 }
@@ -0,0 +1,54 @@
+package canosa;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TournamentTest {
+    @TempDir Path dir;
+
+    @Test void playsSeededGamesAndCountsTheResults() throws Exception {
+        List<String> first = play(dir.resolve("first.csv"));
+        List<String> second = play(dir.resolve("second.csv"));
+        // Easy players are deterministic, so the same seeds play the same games
+        assertEquals(withoutMillis(first), withoutMillis(second));
+    }
+
+    @Test void rejectsOptionsWithoutValues() {
+        assertThrows(IllegalArgumentException.class, () -> Tournament.parse(new String[]{ "--games" }));
+        assertThrows(IllegalArgumentException.class, () -> Tournament.parse(new String[]{ "--games", "many" }));
+        assertThrows(IllegalArgumentException.class, () -> Tournament.parse(new String[]{ "--players", "easy" }));
+        assertThrows(IllegalArgumentException.class, () -> Tournament.parse(new String[]{ "--colour", "gold" }));
+    }
+
+    private static List<String> play(Path output) throws Exception {
+        Tournament tournament = Tournament.parse(new String[]{ "--players", "easy,easy", "--games", "6", "--workers", "2",
+                "--seed", "7", "--max-actions", "200", "--out", output.toString() });
+        tournament.run();
+
+        List<String> lines = Files.readAllLines(output);
+        assertEquals("game,seed,gold,silver,winner,reason,actions,gold_scored,silver_scored,millis", lines.get(0));
+        List<String> rows = lines.subList(1, lines.size());
+        assertEquals(6, rows.size());
+        int decided = 0;
+        for (int i = 0; i < rows.size(); ++i){
+            String[] columns = rows.get(i).split(",");
+            assertEquals(String.valueOf(i), columns[0]);
+            assertEquals(String.valueOf(7 + i), columns[1]);
+            if (!columns[4].equals("draw"))
+                ++decided;
+            assertTrue(Integer.parseInt(columns[6]) <= 200);
+        }
+        assertEquals(decided, tournament.getWins(0) + tournament.getWins(1));
+        assertEquals(6 - decided, tournament.getDraws());
+        return rows;
+    }
+
+    private static List<String> withoutMillis(List<String> rows){
+        return rows.stream().map(row -> row.substring(0, row.lastIndexOf(','))).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,69 @@
+package canosa;
+
+import canosa.ai.ComputerPlayer;
+import canosa.game.Action;
+import canosa.game.ActionType;
+import canosa.game.Game;
+import canosa.game.board.Board;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.SwingUtilities;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TurnSchedulerTest {
+    @Test void handsActionBackOnEventThreadUnlessCancelled() throws Exception {
+        Model model = new Model();
+        model.getGame().init();
+        CountDownLatch stopped = new CountDownLatch(1);
+        AtomicReference<Game> thoughtAbout = new AtomicReference<>();
+        ComputerPlayer player = new ComputerPlayer(model, null){
+            @Override
+            public Action chooseAction(){
+                thoughtAbout.set(getGame());
+                // The first decision thinks until it is stopped, ignoring interrupts
+                boolean waited = false;
+                while (!waited){
+                    try {
+                        waited = stopped.await(10, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException e){
+                    }
+                }
+                Board board = getGame().getBoard();
+                return new Action(ActionType.MOVE_SIREN, board.getCell(0, 0), board.getCell(1, 0));
+            }
+
+            @Override
+            public void stop(){
+                stopped.countDown();
+            }
+        };
+        TurnScheduler scheduler = new TurnScheduler();
+        AtomicReference<Action> chosen = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        // A cancelled decision is stopped and never handed back
+        SwingUtilities.invokeAndWait(() -> {
+            scheduler.schedule(player, model.getGame(), a -> fail("Cancelled decision handed back"));
+            assertTrue(scheduler.isThinking());
+            scheduler.cancel();
+            assertFalse(scheduler.isThinking());
+            scheduler.schedule(player, model.getGame(), a -> {
+                assertTrue(SwingUtilities.isEventDispatchThread());
+                chosen.set(a);
+                done.countDown();
+            });
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // The player thought about a copy, and the action comes back on the game's own board
+        assertNotSame(model.getGame(), thoughtAbout.get());
+        assertEquals(ActionType.MOVE_SIREN, chosen.get().getType());
+        assertSame(model.getGame().getBoard().getCell(0, 0), chosen.get().getSourceCell());
+        assertSame(model.getGame().getBoard().getCell(1, 0), chosen.get().getTargetCell());
+        SwingUtilities.invokeAndWait(() -> assertFalse(scheduler.isThinking()));
+        scheduler.shutdown();
+    }
+}
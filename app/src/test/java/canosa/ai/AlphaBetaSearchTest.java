@@ -0,0 +1,104 @@
+package canosa.ai;
+
+import canosa.game.ActionType;
+import canosa.game.Game;
+import canosa.game.Move;
+import canosa.game.Piece;
+import canosa.game.PieceType;
+import canosa.game.board.Board;
+import canosa.game.board.Cell;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlphaBetaSearchTest {
+    private Game game;
+    private int winningMove;
+
+    @BeforeEach void setUp() {
+        game = new Game();
+        game.init();
+        Board board = game.getBoard();
+        for (Cell cell: board.getCells()){
+            cell.setPiece(null);
+            cell.setIslandOwner(null);
+        }
+        board.getCell(5, 0).setIslandOwner(PieceType.GOLD_SIREN);
+        board.getCell(0, 5).setIslandOwner(PieceType.SILVER_SIREN);
+        board.getCell(2, 2).setPiece(new Piece(PieceType.GOLD_SIREN, PieceType.GOLD_SIREN));
+        board.getCell(2, 4).setPiece(new Piece(PieceType.SILVER_SIREN, PieceType.SILVER_SIREN));
+        board.getCell(3, 0).setPiece(new Piece(PieceType.SAILOR, PieceType.GOLD_SIREN));
+        board.getCell(0, 3).setPiece(new Piece(PieceType.SAILOR, PieceType.SILVER_SIREN));
+        game.setGoldSailorsScored(3);
+        game.setTurn(1);
+        // Both of gold's actions walk the sailor home: (3,0) -> (4,0) -> (5,0)
+        winningMove = Move.of(ActionType.MOVE_SAILOR, board.getCell(3, 0).getIndex(), board.getCell(4, 0).getIndex());
+    }
+
+    @Test void findsTheWinningSailorMoveTwoActionsAway() {
+        long hash = game.getHash();
+
+        AlphaBetaSearch search = new AlphaBetaSearch(game, new TranspositionTable(1));
+        int move = search.search(Long.MAX_VALUE, 4);
+
+        assertEquals(winningMove, move);
+        assertTrue(search.getBestScore() > AlphaBetaSearch.WIN_BOUND);
+        assertEquals(hash, game.getHash());
+        assertEquals(0, game.getMovesMade());
+    }
+
+    @Test void lazySmpHelpersShareTheTable() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            LazySmpSearch search = new LazySmpSearch(game, new TranspositionTable(1), 4, executor);
+            assertEquals(winningMove, search.search(Long.MAX_VALUE, 4));
+            assertTrue(search.getBestScore() > AlphaBetaSearch.WIN_BOUND);
+            assertTrue(search.getTimeToDepth(1) >= 0);
+            assertEquals(0, game.getMovesMade());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test void lazySmpHelpersSearchAlongsideTheMainSearch() {
+        game.init();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            LazySmpSearch search = new LazySmpSearch(game, new TranspositionTable(1), 2, executor);
+            int move = search.search(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300), AlphaBetaSearch.MAX_PLY);
+            assertNotEquals(Move.NONE, move);
+            assertTrue(search.getNodes(1) > 0);
+            assertEquals(search.getNodes(0) + search.getNodes(1), search.getNodes());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test void pondersUntilStoppedAndLeavesItsWorkInTheTable() throws Exception {
+        game.init();
+        TranspositionTable table = new TranspositionTable(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Pondering has no deadline, only stop() ends it
+            LazySmpSearch search = new LazySmpSearch(game.copy(), table, 1, null);
+            Future<Integer> ponder = executor.submit(() -> search.search(Long.MAX_VALUE, AlphaBetaSearch.MAX_PLY));
+            Thread.sleep(200);
+            assertFalse(ponder.isDone());
+            search.stop();
+            assertNotEquals(Move.NONE, (int) ponder.get(10, TimeUnit.SECONDS));
+
+            long entry = table.probe(game.getHash());
+            assertNotEquals(0L, entry);
+            assertEquals(search.getBestMove(), TranspositionTable.move(entry));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package canosa.ai;
+
+import canosa.game.ActionType;
+import canosa.game.Game;
+import canosa.game.Move;
+import canosa.game.Piece;
+import canosa.game.PieceType;
+import canosa.game.board.Board;
+import canosa.game.board.Cell;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonteCarloTreeSearchTest {
+    @Test void findsTheWinningSailorMoveOnSeveralThreads() {
+        Game game = new Game();
+        game.init();
+        Board board = game.getBoard();
+        for (Cell cell: board.getCells()){
+            cell.setPiece(null);
+            cell.setIslandOwner(null);
+        }
+        board.getCell(5, 0).setIslandOwner(PieceType.GOLD_SIREN);
+        board.getCell(0, 5).setIslandOwner(PieceType.SILVER_SIREN);
+        board.getCell(2, 2).setPiece(new Piece(PieceType.GOLD_SIREN, PieceType.GOLD_SIREN));
+        board.getCell(2, 4).setPiece(new Piece(PieceType.SILVER_SIREN, PieceType.SILVER_SIREN));
+        board.getCell(3, 0).setPiece(new Piece(PieceType.SAILOR, PieceType.GOLD_SIREN));
+        board.getCell(0, 3).setPiece(new Piece(PieceType.SAILOR, PieceType.SILVER_SIREN));
+        // Both players need one more sailor, so only walking the gold sailor home this turn wins
+        game.setGoldSailorsScored(3);
+        game.setSilverSailorsScored(3);
+        game.setTurn(1);
+        long hash = game.getHash();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MonteCarloTreeSearch search = new MonteCarloTreeSearch(game, pool);
+            int move = search.search(Long.MAX_VALUE, 20000);
+
+            assertEquals(Move.of(ActionType.MOVE_SAILOR, board.getCell(3, 0).getIndex(), board.getCell(4, 0).getIndex()), move);
+            assertTrue(search.getPlayouts() >= 20000);
+            assertTrue(search.getTreeSize() > 1);
+            assertEquals(hash, game.getHash());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package canosa.ai;
+
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.Move;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpeningBookTest {
+    @TempDir Path dir;
+
+    @Test void buildsAndProbesBook() throws Exception {
+        OpeningBookBuilder builder = new OpeningBookBuilder();
+        builder.setGames(6);
+        builder.setDepth(4);
+        builder.setSearchDepth(1);
+        builder.setRandomness(0.0);
+        builder.setMinGames(1);
+        builder.setMaxActions(80);
+        builder.setThreads(2);
+        builder.selfPlay();
+        Path file = dir.resolve("opening.book");
+        int entries = builder.write(file);
+
+        // Without randomness every game plays the same searched actions, so each of the four book
+        // positions has one move
+        assertEquals(4, entries);
+        try (OpeningBook book = OpeningBook.open(file)){
+            assertEquals(entries, book.getEntries());
+            Game game = new Game();
+            game.init();
+            int[] bookMoves = book.getMoves(game);
+            assertEquals(1, bookMoves.length);
+            int move = book.probe(game, new Random(1));
+            assertEquals(bookMoves[0], move);
+            assertTrue(GameEngine.isLegal(game, Move.toAction(move, game.getBoard())));
+
+            game.makeMove(move);
+            // Leave the book line: the position reached is not in the book
+            int[] moves = new int[GameEngine.MAX_MOVES];
+            int count = GameEngine.generateLegalMoves(game, moves);
+            int bookMove = book.probe(game, new Random(1));
+            game.makeMove(moves[0] != bookMove? moves[0]: moves[count - 1]);
+            assertEquals(0, book.getMoves(game).length);
+            assertEquals(Move.NONE, book.probe(game, new Random(1)));
+
+            game.init();
+            book.setMaxPly(0);
+            assertEquals(Move.NONE, book.probe(game, new Random(1)));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package canosa.ai;
+
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.Phase;
+import canosa.game.Piece;
+import canosa.game.PieceType;
+import canosa.game.board.Board;
+import canosa.game.board.Cell;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TablebaseTest {
+    @TempDir Path dir;
+
+    @Test void indexRoundTrips() {
+        Random random = new Random(5);
+        Game game = new Game();
+        for (int rings = 0; rings <= 2; ++rings){
+            TablebaseIndex index = new TablebaseIndex(rings);
+            int valid = 0;
+            for (int i = 0; i < 20000; ++i){
+                long n = (long) (random.nextDouble() * index.size());
+                if (!index.setUp(n, game))
+                    continue;
+                ++valid;
+                assertEquals(TablebaseIndex.SAILORS, Long.bitCount(game.getBoard().getSailorMask()));
+                assertEquals(rings, TablebaseIndex.ringsLeft(game.getBoard()));
+                assertEquals(n, index.indexOf(game));
+                assertEquals(n, index.indexOf(game.copy()));
+            }
+            assertTrue(valid > 10000);
+        }
+    }
+
+    @Test void solvesLikeTheSearchAndResumes() throws Exception {
+        // Without rings only the sirens move, so one sailor layout is a table of its own.  Here the sailors
+        // wall off the two cells beside the silver island, where a siren can be shut in and lose
+        Game game = lastRace();
+        TablebaseIndex index = new TablebaseIndex(0);
+        long from = index.indexOf(game) / index.sailorLayoutSize() * index.sailorLayoutSize();
+        long to = from + index.sailorLayoutSize();
+
+        byte[] solved = new byte[(int) (to - from)];
+        int maxDistance;
+        try (Tablebase tablebase = Tablebase.openForWriting(dir.resolve("endgame.tb"), 0)){
+            new TablebaseGenerator(tablebase, 2).solve(0, from, to);
+            maxDistance = tablebase.getMaxDistance(0);
+            for (long i = from; i < to; ++i)
+                solved[(int) (i - from)] = tablebase.get(0, i);
+
+            assertSearchAgrees(tablebase, index, from, to, 3);    // Won in 3
+            assertSearchAgrees(tablebase, index, from, to, -2);   // Lost after 1
+            assertSearchAgrees(tablebase, index, from, to, -4);   // Lost after 3
+            game.init();
+            assertEquals(Tablebase.NOT_FOUND, tablebase.probe(game));
+        }
+
+        // Interrupted after pass 1 and again halfway through pass 2, then resumed
+        Path file = dir.resolve("resumed.tb");
+        try (Tablebase tablebase = Tablebase.openForWriting(file, 0)){
+            TablebaseGenerator generator = new TablebaseGenerator(tablebase, 2);
+            generator.runPass(0, 0, from, to);
+            tablebase.checkpoint(0, 1, false, 0);
+            generator.runPass(0, 1, from, to);
+            tablebase.checkpoint(0, 2, false, 1);
+            generator.runPass(0, 2, from, from + (to - from) / 2);
+        }
+        try (Tablebase tablebase = Tablebase.openForWriting(file, 0)){
+            new TablebaseGenerator(tablebase, 2).solve(0, from, to);
+            for (long i = from; i < to; ++i)
+                assertEquals(solved[(int) (i - from)], tablebase.get(0, i), "Index " + i);
+        }
+        try (Tablebase tablebase = Tablebase.open(file)){
+            assertEquals(0, tablebase.getMaxRings());
+            assertEquals(maxDistance, tablebase.getMaxDistance(0));
+        }
+
+        // Interrupted after writing all of the last pass that finds anything, before its checkpoint
+        file = dir.resolve("last.tb");
+        try (Tablebase tablebase = Tablebase.openForWriting(file, 0)){
+            TablebaseGenerator generator = new TablebaseGenerator(tablebase, 2);
+            for (int pass = 0; pass < maxDistance; ++pass){
+                generator.runPass(0, pass, from, to);
+                tablebase.checkpoint(0, pass + 1, false, pass);
+            }
+            generator.runPass(0, maxDistance, from, to);
+        }
+        try (Tablebase tablebase = Tablebase.openForWriting(file, 0)){
+            new TablebaseGenerator(tablebase, 2).solve(0, from, to);
+            assertTrue(tablebase.isComplete(0));
+            assertEquals(maxDistance, tablebase.getMaxDistance(0));
+        }
+    }
+
+    @Test void scoringTheLastSailorWinsAtOnce() throws Exception {
+        try (Tablebase tablebase = Tablebase.openForWriting(dir.resolve("endgame.tb"), 1)){
+            // A gold sailor next to the gold island with gold to move wins at once, without solving the table
+            TablebaseIndex index = tablebase.getIndex(1);
+            Game game = new Game();
+            int[] moves = new int[GameEngine.MAX_MOVES];
+            for (long i = 0; ; ++i){
+                if (!index.setUp(i, game))
+                    continue;
+                int count = GameEngine.generateLegalMoves(game, moves);
+                boolean scores = false;
+                for (int m = 0; m < count; ++m)
+                    scores |= tablebase.probeMove(game, moves[m]) == 1;
+                if (scores){
+                    assertEquals(1, tablebase.probeMove(game, tablebase.bestMove(game)));
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find a position with the value and check a search from it finds the same result as far away
+     */
+    private static void assertSearchAgrees(Tablebase tablebase, TablebaseIndex index, long from, long to, int value){
+        Game game = new Game();
+        for (long i = from; i < to; ++i){
+            if (tablebase.get(0, i) != value || !index.setUp(i, game))
+                continue;
+            assertEquals(value, tablebase.probe(game));
+            int distance = Tablebase.getDistance(value);
+            AlphaBetaSearch search = new AlphaBetaSearch(game.copy(), new TranspositionTable(1));
+            int move = search.search(Long.MAX_VALUE, distance + 2);
+            assertEquals(value > 0? AlphaBetaSearch.WIN - distance: -(AlphaBetaSearch.WIN - distance),
+                    search.getBestScore(), "Index " + i);
+            // The search's move keeps the result as far away as the tablebase's
+            assertEquals(tablebase.probeMove(game, tablebase.bestMove(game)), tablebase.probeMove(game, move));
+            return;
+        }
+        fail("No position with value " + value);
+    }
+
+    /**
+     * The last race, both players a sailor short, without rings
+     */
+    private static Game lastRace(){
+        Game game = new Game();
+        game.init();
+        Board board = game.getBoard();
+        for (Cell cell: board.getCells())
+            cell.setPiece(null);
+        for (int[] xy: new int[][]{ {1, 3}, {3, 3}, {1, 4}, {1, 5} })
+            board.getCell(xy[0], xy[1]).setPiece(new Piece(PieceType.SAILOR));
+        board.getCell(3, 0).setPiece(new Piece(PieceType.GOLD_SIREN));
+        board.getCell(4, 4).setPiece(new Piece(PieceType.SILVER_SIREN));
+        game.setGoldSailorsScored(TablebaseIndex.SCORED);
+        game.setSilverSailorsScored(TablebaseIndex.SCORED);
+        game.setTurn(1);
+        game.setPhase(Phase.PLAY);
+        return game;
+    }
+}
@@ -0,0 +1,35 @@
+package canosa.ai;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranspositionTableTest {
+    @Test void storedEntriesRoundTrip() {
+        TranspositionTable table = new TranspositionTable(1);
+        long hash = 0x123456789ABCDEFL;
+        table.store(hash, 0x1ABCDE, -1234, 7, TranspositionTable.LOWER);
+
+        long entry = table.probe(hash);
+        assertNotEquals(0L, entry);
+        assertEquals(0x1ABCDE, TranspositionTable.move(entry));
+        assertEquals(-1234, TranspositionTable.score(entry));
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        assertEquals(0L, table.probe(hash ^ 1L << 40));
+    }
+
+    @Test void deeperEntriesSurviveUntilTheNextSearch() {
+        TranspositionTable table = new TranspositionTable(1);
+        long deep = 42L;
+        long shallow = 42L + ((long) table.size() << 3);   // Same slot, different key
+        table.store(deep, 1, 10, 9, TranspositionTable.EXACT);
+        table.store(shallow, 2, 20, 3, TranspositionTable.EXACT);
+        assertNotEquals(0L, table.probe(deep));
+        assertEquals(0L, table.probe(shallow));
+
+        table.newSearch();
+        table.store(shallow, 2, 20, 3, TranspositionTable.EXACT);
+        assertEquals(0L, table.probe(deep));
+        assertEquals(2, TranspositionTable.move(table.probe(shallow)));
+    }
+}
@@ -0,0 +1,189 @@
+package canosa.game;
+
+import canosa.game.board.Board;
+import canosa.game.board.Cell;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameEngineTest {
+    private Game game;
+    private Board board;
+
+    @BeforeEach void setUp() {
+        game = new Game();
+        game.init();
+        board = game.getBoard();
+    }
+
+    @Test void startPositionHasSirenMovesAndSailorMoves() {
+        List<Action> actions = GameEngine.generateLegalActions(game);
+        assertEquals(13, actions.size());
+        assertEquals(3, actions.stream().filter(a -> a.getType() == ActionType.MOVE_SIREN).count());
+        assertEquals(10, actions.stream().filter(a -> a.getType() == ActionType.MOVE_SAILOR).count());
+    }
+
+    @Test void goldOpensWithASingleAction() {
+        GameEngine engine = new GameEngine(game);
+        engine.apply(new Action(ActionType.MOVE_SIREN, board.getCell(5, 0), board.getCell(4, 1)));
+        assertEquals(PieceType.SILVER_SIREN, game.getCurrentPlayer());
+        assertEquals(0, game.getActionsTaken());
+
+        engine.apply(new Action(ActionType.MOVE_SIREN, board.getCell(0, 5), board.getCell(1, 4)));
+        assertEquals(PieceType.SILVER_SIREN, game.getCurrentPlayer());
+        engine.apply(new Action(ActionType.MOVE_SIREN, board.getCell(1, 4), board.getCell(0, 4)));
+        assertEquals(PieceType.GOLD_SIREN, game.getCurrentPlayer());
+    }
+
+    @Test void illegalActionsAreRejected() {
+        GameEngine engine = new GameEngine(game);
+        // Silver sailors cannot be moved by gold, and sirens cannot jump
+        assertFalse(engine.isLegal(new Action(ActionType.MOVE_SAILOR, board.getCell(1, 0), board.getCell(1, 1))));
+        assertFalse(engine.isLegal(new Action(ActionType.MOVE_SIREN, board.getCell(5, 0), board.getCell(3, 0))));
+        assertTrue(engine.isLegal(new Action(ActionType.MOVE_SAILOR, board.getCell(0, 1), board.getCell(0, 0))));
+    }
+
+    @Test void scoringReturnsOneRingPerSiren() {
+        // Gold siren off its island with two rings, a gold controlled sailor next to the island
+        clear();
+        board.getCell(5, 0).setIslandOwner(PieceType.GOLD_SIREN);
+        board.getCell(0, 5).setIslandOwner(PieceType.SILVER_SIREN);
+        board.getCell(2, 2).setPiece(new Piece(PieceType.GOLD_SIREN, PieceType.GOLD_SIREN, PieceType.GOLD_SIREN));
+        board.getCell(3, 3).setPiece(new Piece(PieceType.SILVER_SIREN, PieceType.SILVER_SIREN, PieceType.SILVER_SIREN, PieceType.SILVER_SIREN));
+        Piece sailor = new Piece(PieceType.SAILOR, PieceType.GOLD_SIREN, PieceType.SILVER_SIREN, PieceType.GOLD_SIREN);
+        board.getCell(4, 0).setPiece(sailor);
+        game.setTurn(1);
+
+        GameEngine.apply(game, Move.of(ActionType.MOVE_SAILOR, board.getCell(4, 0).getIndex(), board.getCell(5, 0).getIndex()));
+
+        assertEquals(1, game.getGoldSailorsScored());
+        assertNull(board.getCell(5, 0).getPiece());
+        assertEquals(0L, board.getSailorMask());
+        assertEquals(3, board.getCell(2, 2).getPiece().getRings().size());
+        // Silver siren was already full, so its ring leaves the game
+        assertEquals(3, board.getCell(3, 3).getPiece().getRings().size());
+    }
+
+    @Test void attackOffersEveryBumpDestination() {
+        clear();
+        board.getCell(5, 0).setIslandOwner(PieceType.GOLD_SIREN);
+        board.getCell(0, 5).setIslandOwner(PieceType.SILVER_SIREN);
+        board.getCell(2, 2).setPiece(new Piece(PieceType.GOLD_SIREN, PieceType.GOLD_SIREN, PieceType.GOLD_SIREN));
+        board.getCell(3, 3).setPiece(new Piece(PieceType.SILVER_SIREN, PieceType.SILVER_SIREN));
+        board.getCell(4, 4).setPiece(new Piece(PieceType.SAILOR));
+
+        List<Action> attacks = GameEngine.generateLegalActions(game);
+        attacks.removeIf(a -> a.getType() != ActionType.ATTACK_OPPONENT);
+        // Eight cells around the silver siren, minus the attacker and the sailor
+        assertEquals(6, attacks.size());
+
+        Cell bump = attacks.get(0).getBumpTargetCell();
+        GameEngine.apply(game, Move.of(attacks.get(0)));
+        assertEquals(PieceType.SILVER_SIREN, bump.getPiece().getType());
+        assertEquals(PieceType.GOLD_SIREN, board.getCell(3, 3).getPiece().getType());
+        assertNull(board.getCell(2, 2).getPiece());
+    }
+
+    @Test void unmakeMoveRestoresEveryPosition() {
+        Random random = new Random(7);
+        int[] moves = new int[GameEngine.MAX_MOVES];
+        for (int playout = 0; playout < 200; ++playout){
+            game.init();
+            List<String> positions = new ArrayList<>();
+            while (!GameEngine.isGameOver(game) && positions.size() < 500){
+                int count = GameEngine.generateLegalMoves(game, moves);
+                if (count == 0)
+                    break;
+                positions.add(describe());
+                game.makeMove(moves[random.nextInt(count)]);
+            }
+            for (int i = positions.size() - 1; i >= 0; --i){
+                game.unmakeMove();
+                assertEquals(positions.get(i), describe());
+            }
+            assertEquals(0, game.getMovesMade());
+        }
+    }
+
+    @Test void mobilityAgreesWithMoveGeneration() {
+        Random random = new Random(11);
+        int[] moves = new int[GameEngine.MAX_MOVES];
+        for (int playout = 0; playout < 100; ++playout){
+            game.init();
+            for (int actions = 0; !GameEngine.isGameOver(game) && actions < 300; ++actions){
+                int count = GameEngine.generateLegalMoves(game, moves);
+                assertEquals(count > 0, GameEngine.hasLegalMove(game));
+                assertEquals(count, GameEngine.countMobility(game, game.getCurrentPlayer()));
+                if (count == 0)
+                    break;
+                game.makeMove(moves[random.nextInt(count)]);
+            }
+        }
+    }
+
+    @Test void sirenBoxedInBySilverSailorsIsTrapped() {
+        // Gold siren without rings in a corner, surrounded by full silver controlled sailors
+        clear();
+        board.getCell(5, 0).setIslandOwner(PieceType.GOLD_SIREN);
+        board.getCell(0, 5).setIslandOwner(PieceType.SILVER_SIREN);
+        board.getCell(0, 0).setPiece(new Piece(PieceType.GOLD_SIREN));
+        board.getCell(4, 4).setPiece(new Piece(PieceType.SILVER_SIREN));
+        for (Cell cell: new Cell[]{ board.getCell(1, 0), board.getCell(0, 1), board.getCell(1, 1) })
+            cell.setPiece(new Piece(PieceType.SAILOR, PieceType.SILVER_SIREN, PieceType.SILVER_SIREN, PieceType.SILVER_SIREN));
+
+        assertFalse(GameEngine.hasLegalMove(game));
+        assertEquals(0, GameEngine.countMobility(game, PieceType.GOLD_SIREN));
+        assertTrue(GameEngine.hasLegalMove(game, PieceType.SILVER_SIREN));
+        assertEquals(0, GameEngine.generateLegalMoves(game, new int[GameEngine.MAX_MOVES]));
+    }
+
+    @Test void hashIsIncrementalAndRecognisesTranspositions() {
+        long start = game.getHash();
+        // Gold opens, then silver moves two sailors in one order...
+        game.makeMove(Move.of(ActionType.MOVE_SIREN, 5, 10));
+        game.makeMove(Move.of(ActionType.MOVE_SAILOR, 1, 7));
+        game.makeMove(Move.of(ActionType.MOVE_SAILOR, 29, 28));
+        long oneOrder = game.getHash();
+        game.unmakeMove();
+        game.unmakeMove();
+        assertNotEquals(oneOrder, game.getHash());
+
+        // ...and in the other
+        game.makeMove(Move.of(ActionType.MOVE_SAILOR, 29, 28));
+        assertNotEquals(oneOrder, game.getHash());
+        game.makeMove(Move.of(ActionType.MOVE_SAILOR, 1, 7));
+        assertEquals(oneOrder, game.getHash());
+
+        game.unmakeMove();
+        game.unmakeMove();
+        game.unmakeMove();
+        assertEquals(start, game.getHash());
+    }
+
+    private String describe() {
+        StringBuilder sb = new StringBuilder();
+        for (Cell cell: board.getCells()){
+            sb.append(cell);
+            if (cell.getPiece() != null){
+                sb.append(cell.getPiece().getRings());
+                assertSame(cell, cell.getPiece().getCell());
+            }
+            sb.append(board.getRingStack(cell.getIndex())).append(';');
+        }
+        sb.append(board.getSailorMask()).append(board.getSirenMask());
+        sb.append(game.getGoldSailorsScored()).append(game.getSilverSailorsScored());
+        sb.append(game.getCurrentPlayer()).append(game.getActionsTaken()).append(game.getTurn());
+        sb.append(game.getHash());
+        return sb.toString();
+    }
+
+    private void clear() {
+        for (Cell cell: board.getCells()){
+            cell.setPiece(null);
+            cell.setIslandOwner(null);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package canosa.game;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameStateTest {
+    @Test void roundTripsRandomPositions() {
+        Random random = new Random(3);
+        int[] moves = new int[GameEngine.MAX_MOVES];
+        Game game = new Game();
+        for (int playout = 0; playout < 100; ++playout){
+            game.init();
+            while (!GameEngine.isGameOver(game) && game.getMovesMade() < 300){
+                GameState state = GameState.from(game);
+                Game copy = state.toGame();
+                assertEquals(game.getHash(), copy.getHash());
+                assertEquals(game.getTurn(), copy.getTurn());
+                assertEquals(state, GameState.from(copy));
+                assertEquals(state.hashCode(), GameState.from(copy).hashCode());
+
+                int count = GameEngine.generateLegalMoves(game, moves);
+                if (count == 0)
+                    break;
+                assertEquals(count, GameEngine.generateLegalMoves(copy, new int[GameEngine.MAX_MOVES]));
+                game.makeMove(moves[random.nextInt(count)]);
+                assertNotEquals(state, GameState.from(game));
+            }
+        }
+    }
+}
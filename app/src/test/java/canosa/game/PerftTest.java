@@ -0,0 +1,80 @@
+package canosa.game;
+
+import canosa.game.board.Board;
+import canosa.game.board.Cell;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerftTest {
+    // Leaf counts from the start position, depth 1 to 6; gold's opening single action is ply 1
+    private static final long[] START_COUNTS = { 13, 151, 1565, 15159, 144902, 1346512 };
+    // Depth 4 from the position in scoringPositionCountIsPinned
+    private static final long SCORING_COUNT = 10585;
+
+    @Test void startPositionCountsArePinned() {
+        Game game = new Game();
+        game.init();
+        for (int depth = 1; depth <= START_COUNTS.length; ++depth)
+            assertEquals(START_COUNTS[depth - 1], Perft.perft(game, depth), "depth " + depth);
+        assertEquals(0, game.getMovesMade());
+    }
+
+    @Test void parallelDivideMatchesSequentialCount() throws InterruptedException {
+        Game game = new Game();
+        game.init();
+        Perft.Result result = Perft.divide(game, 5, 4);
+        assertEquals(START_COUNTS[4], result.getNodes());
+        assertEquals(13, result.getMoves().length);
+        long sum = 0;
+        for (long count: result.getCounts())
+            sum += count;
+        assertEquals(result.getNodes(), sum);
+    }
+
+    @Test void unmakeMatchesCopying() {
+        Game game = new Game();
+        game.init();
+        assertEquals(Perft.perft(game, 4), perftByCopying(game, 4));
+    }
+
+    @Test void scoringPositionCountIsPinned() {
+        // Gold one sailor from winning, silver siren able to attack: exercises scoring, wins and bumps
+        Game game = new Game();
+        game.init();
+        Board board = game.getBoard();
+        for (Cell cell: board.getCells()){
+            if (cell.getIslandOwner() == null)
+                cell.setPiece(null);
+        }
+        board.getCell(5, 0).setPiece(null);
+        board.getCell(0, 5).setPiece(null);
+        board.getCell(2, 2).setPiece(new Piece(PieceType.GOLD_SIREN, PieceType.GOLD_SIREN));
+        board.getCell(3, 2).setPiece(new Piece(PieceType.SILVER_SIREN, PieceType.SILVER_SIREN, PieceType.SILVER_SIREN));
+        board.getCell(4, 1).setPiece(new Piece(PieceType.SAILOR, PieceType.SILVER_SIREN, PieceType.GOLD_SIREN));
+        board.getCell(1, 3).setPiece(new Piece(PieceType.SAILOR, PieceType.SILVER_SIREN));
+        board.getCell(2, 3).setPiece(new Piece(PieceType.SAILOR));
+        game.setGoldSailorsScored(3);
+        game.setSilverSailorsScored(2);
+        game.setTurn(3);
+
+        assertEquals(perftByCopying(game, 4), Perft.perft(game, 4));
+        assertEquals(SCORING_COUNT, Perft.perft(game, 4));
+    }
+
+    // Reference count that never undoes a move: each child is searched on a fresh copy of the game
+    private static long perftByCopying(Game game, int depth) {
+        if (depth == 0)
+            return 1;
+        if (GameEngine.isGameOver(game))
+            return 0;
+        int[] moves = new int[GameEngine.MAX_MOVES];
+        int count = GameEngine.generateLegalMoves(game, moves);
+        long nodes = 0;
+        for (int i = 0; i < count; ++i){
+            Game child = game.copy();
+            child.makeMove(moves[i]);
+            nodes += perftByCopying(child, depth - 1);
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,29 @@
+package canosa.game;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PieceTest {
+    @Test void ringsArePackedAndViewedTopFirst() {
+        Piece sailor = new Piece(PieceType.SAILOR, PieceType.GOLD_SIREN, PieceType.SILVER_SIREN);
+        List<PieceType> rings = sailor.getRings();
+        assertEquals(Arrays.asList(PieceType.GOLD_SIREN, PieceType.SILVER_SIREN), rings);
+        assertEquals(PieceType.GOLD_SIREN, sailor.peekTopRing());
+
+        assertTrue(sailor.pushRing(PieceType.SILVER_SIREN));
+        assertFalse(sailor.pushRing(PieceType.GOLD_SIREN));
+        // The view is live
+        assertEquals(Arrays.asList(PieceType.SILVER_SIREN, PieceType.GOLD_SIREN, PieceType.SILVER_SIREN), rings);
+
+        Piece copy = new Piece(sailor);
+        assertEquals(sailor.getRingStack(), copy.getRingStack());
+        assertEquals(PieceType.SILVER_SIREN, sailor.popRing());
+        assertEquals(3, copy.getRings().size());
+
+        assertThrows(UnsupportedOperationException.class, () -> rings.add(PieceType.GOLD_SIREN));
+        assertNull(new Piece(PieceType.GOLD_SIREN).popRing());
+        assertNull(new Piece(PieceType.GOLD_SIREN).peekTopRing());
+    }
+}
@@ -0,0 +1,110 @@
+package canosa.game.board;
+
+import canosa.game.Piece;
+import canosa.game.PieceType;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AStarAlgorithmTest {
+    @Test void matchesBruteForceSearchOnRandomBoards() {
+        Random random = new Random(11);
+        AStarAlgorithm astar = new AStarAlgorithm();
+        int[] path = new int[BitBoard.CELLS];
+        for (int trial = 0; trial < 20000; ++trial){
+            long blocked = 0L;
+            double density = random.nextDouble() * 0.5;
+            for (int cell = 0; cell < BitBoard.CELLS; ++cell){
+                if (random.nextDouble() < density)
+                    blocked |= BitBoard.bit(cell);
+            }
+            int start = random.nextInt(BitBoard.CELLS);
+            int end = random.nextInt(BitBoard.CELLS);
+            boolean incDiagonal = random.nextBoolean();
+            boolean mustMoveTowardEnd = random.nextBoolean();
+            String description = "blocked " + Long.toBinaryString(blocked) + " " + start + " -> " + end
+                    + (incDiagonal? " diagonal": "") + (mustMoveTowardEnd? " toward end": "");
+
+            int length = astar.findPath(blocked, start, end, incDiagonal, mustMoveTowardEnd, path);
+            assertEquals(bruteForce(blocked, start, end, incDiagonal, mustMoveTowardEnd), length, description);
+            if (length > 0)
+                assertValidPath(blocked, start, end, incDiagonal, mustMoveTowardEnd, Arrays.copyOf(path, length), description);
+        }
+    }
+
+    @Test void boardPathsMayEndOnAPieceOrIsland() {
+        Board board = new Board();
+        board.init();
+        // Gold siren to the silver sailor at (4,3), diagonally around the pieces in the way
+        List<Cell> toSailor = board.findShortestPath(board.getCell(5, 0), board.getCell(4, 3));
+        assertEquals(3, toSailor.size());
+        assertSame(board.getCell(4, 3), toSailor.get(2));
+        for (int i = 0; i < toSailor.size() - 1; ++i)
+            assertNull(toSailor.get(i).getPiece());
+        assertTrue(board.findShortestPath(board.getCell(0, 5), board.getCell(0, 5)).isEmpty());
+
+        // A gold sailor at (2,3) walks home to (5,0) around a silver sailor at (3,3)...
+        for (Cell cell: board.getCells()){
+            if (cell.getIslandOwner() == null)
+                cell.setPiece(null);
+        }
+        board.getCell(2, 3).setPiece(new Piece(PieceType.SAILOR, PieceType.GOLD_SIREN));
+        board.getCell(3, 3).setPiece(new Piece(PieceType.SAILOR, PieceType.SILVER_SIREN));
+        List<Cell> home = board.findShortestPath(board.getCell(2, 3), board.getCell(5, 0), true);
+        assertEquals(6, home.size());
+        assertSame(board.getCell(2, 2), home.get(0));
+        assertSame(board.getCell(5, 0), home.get(5));
+
+        // ...but cannot get past a second one without stepping away from the island
+        board.getCell(2, 2).setPiece(new Piece(PieceType.SAILOR, PieceType.SILVER_SIREN));
+        assertNull(board.findShortestPath(board.getCell(2, 3), board.getCell(5, 0), true));
+        assertEquals(8, board.findShortestPath(board.getCell(2, 3), board.getCell(5, 0), false).size());
+    }
+
+    private static int bruteForce(long blocked, int start, int end, boolean incDiagonal, boolean mustMoveTowardEnd){
+        int[] steps = new int[BitBoard.CELLS];
+        Arrays.fill(steps, -1);
+        steps[start] = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()){
+            int cell = queue.remove();
+            if (cell == end)
+                return steps[cell];
+            for (int next = 0; next < BitBoard.CELLS; ++next){
+                if (steps[next] < 0 && isStep(blocked, cell, next, end, incDiagonal, mustMoveTowardEnd)){
+                    steps[next] = steps[cell] + 1;
+                    queue.add(next);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static void assertValidPath(long blocked, int start, int end, boolean incDiagonal, boolean mustMoveTowardEnd,
+            int[] path, String description){
+        int previous = start;
+        for (int cell: path){
+            assertTrue(isStep(blocked, previous, cell, end, incDiagonal, mustMoveTowardEnd), description);
+            previous = cell;
+        }
+        assertEquals(end, previous, description);
+    }
+
+    // Geometry from coordinates only, so the check does not lean on BitBoard's tables
+    private static boolean isStep(long blocked, int from, int to, int end, boolean incDiagonal, boolean mustMoveTowardEnd){
+        int dx = Math.abs(BitBoard.x(from) - BitBoard.x(to));
+        int dy = Math.abs(BitBoard.y(from) - BitBoard.y(to));
+        boolean adjacent = incDiagonal? Math.max(dx, dy) == 1: dx + dy == 1;
+        if (!adjacent || BitBoard.isSet(blocked, to))
+            return false;
+        return !mustMoveTowardEnd || manhattan(to, end) <= manhattan(from, end);
+    }
+
+    private static int manhattan(int cell1, int cell2){
+        return Math.abs(BitBoard.x(cell1) - BitBoard.x(cell2)) + Math.abs(BitBoard.y(cell1) - BitBoard.y(cell2));
+    }
+}
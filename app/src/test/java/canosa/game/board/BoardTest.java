@@ -0,0 +1,29 @@
+package canosa.game.board;
+
+import canosa.game.PieceType;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoardTest {
+    @Test void tablesMatchTheBoardGeometry() {
+        Board board = new Board();
+        board.init();
+        for (Cell cell1: board.getCells()){
+            Set<Cell> orthogonal = board.getNeighboringCells(cell1, false);
+            Set<Cell> all = board.getNeighboringCells(cell1, true);
+            assertSame(all, board.getNeighboringCells(cell1, true));
+            for (Cell cell2: board.getCells()){
+                int dx = Math.abs(cell1.getX() - cell2.getX());
+                int dy = Math.abs(cell1.getY() - cell2.getY());
+                assertEquals(dx + dy, board.getDistanceBetween(cell1, cell2));
+                assertEquals(dx + dy == 1, orthogonal.contains(cell2));
+                assertEquals(dx + dy == 1, board.isOrthogonallyAdjacent(cell1, cell2));
+                assertEquals(dx <= 1 && dy <= 1 && cell1 != cell2, all.contains(cell2));
+                assertEquals(dx <= 1 && dy <= 1, board.isAdjacent(cell1, cell2));
+            }
+            assertEquals(cell1.getX() + 5 - cell1.getY(), board.getIslandDistance(PieceType.SILVER_SIREN, cell1.getIndex()));
+        }
+        assertThrows(UnsupportedOperationException.class, () -> board.getNeighboringCells(board.getCell(0, 0), true).clear());
+    }
+}
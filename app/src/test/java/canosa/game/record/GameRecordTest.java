@@ -0,0 +1,68 @@
+package canosa.game.record;
+
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameRecordTest {
+    @TempDir Path dir;
+
+    @Test void writesReadsAndReplaysRandomGames() throws IOException {
+        Random random = new Random(11);
+        int[] moves = new int[GameEngine.MAX_MOVES];
+        List<GameRecord> records = new ArrayList<>();
+        List<Long> hashes = new ArrayList<>();
+        for (int g = 0; g < 400; ++g){
+            Game game = new Game();
+            game.init();
+            int[] played = new int[300];
+            int count = 0;
+            while (!GameEngine.isGameOver(game) && count < played.length){
+                int legal = GameEngine.generateLegalMoves(game, moves);
+                if (legal == 0)
+                    break;
+                for (int i = 0; i < legal; ++i)
+                    assertEquals(moves[i], GameRecord.decode(GameRecord.encode(moves[i])));
+                played[count] = moves[random.nextInt(legal)];
+                game.makeMove(played[count++]);
+            }
+            GameRecord.Result result = GameEngine.getWinner(game) == null? GameRecord.Result.DRAW: GameRecord.Result.GOLD_WON;
+            records.add(new GameRecord("random", "random " + g, g, result, Arrays.copyOf(played, count)));
+            hashes.add(game.getHash());
+        }
+
+        // Enough actions to fill more than one block
+        Path file = dir.resolve("games.cgr");
+        try (GameRecordWriter writer = GameRecordWriter.create(file)){
+            for (GameRecord record: records)
+                writer.write(record);
+        }
+        try (GameRecordReader reader = GameRecordReader.open(file)){
+            for (int g = 0; g < records.size(); ++g){
+                GameRecord record = reader.read();
+                assertEquals(records.get(g), record);
+                assertEquals(hashes.get(g), record.replay().getHash());
+            }
+            assertNull(reader.read());
+        }
+
+        // Corrupt a byte in the first block's payload
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)){
+            channel.write(ByteBuffer.wrap(new byte[]{ 0x55 }), GameRecordWriter.FILE_HEADER + GameRecordWriter.BLOCK_HEADER + 100);
+        }
+        try (GameRecordReader reader = GameRecordReader.open(file)){
+            assertThrows(IOException.class, reader::read);
+        }
+    }
+}
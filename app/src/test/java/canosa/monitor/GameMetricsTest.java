@@ -0,0 +1,77 @@
+package canosa.monitor;
+
+import canosa.Model;
+import canosa.ai.HardComputerPlayer;
+import canosa.game.Phase;
+import canosa.game.PieceType;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameMetricsTest {
+    @TempDir Path dir;
+
+    @Test void histogramPercentiles(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(0.5));
+        for (int i = 0; i < 99; ++i)
+            histogram.record(1000);
+        histogram.record(1_000_000);
+
+        // Each percentile lands within a factor of two above the true value
+        assertEquals(100, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        assertTrue(histogram.getPercentile(0.5) >= 1000 && histogram.getPercentile(0.5) < 2000);
+        assertTrue(histogram.getPercentile(0.99) < 2000);
+        assertEquals(1_000_000, histogram.getPercentile(1.0));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test void recordsDecisionsOverJmxAndFlightRecorder() throws Exception {
+        GameMetrics.register();
+        GameMetrics.register();  // Harmless the second time
+        long decisions = GameMetrics.get().getDecisions();
+
+        Model model = new Model();
+        model.getGame().init();
+        model.getGame().setPhase(Phase.PLAY);
+        HardComputerPlayer player = new HardComputerPlayer(model, null);
+        player.setSiren(PieceType.GOLD_SIREN);
+        player.setPonder(false);
+        player.setMaxDepth(3);
+        player.getReady();
+
+        Path file = dir.resolve("decision.jfr");
+        try (Recording recording = new Recording()){
+            recording.enable(AiDecisionEvent.class);
+            recording.start();
+            assertNotNull(player.chooseAction());
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent event = events.stream().filter(e -> e.getEventType().getName().equals("canosa.AiDecision"))
+                .findFirst().orElseThrow();
+        assertEquals("HardComputerPlayer", event.getString("player"));
+        assertEquals("GOLD_SIREN", event.getString("siren"));
+        assertEquals("search", event.getString("source"));
+        assertEquals(3, event.getInt("depth"));
+        assertTrue(event.getLong("nodes") > 0);
+        assertNotEquals("NONE", event.getString("action"));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(GameMetrics.OBJECT_NAME);
+        assertEquals(decisions + 1, (Long) server.getAttribute(name, "Decisions"));
+        assertTrue((Long) server.getAttribute(name, "SearchNodes") >= event.getLong("nodes"));
+    }
+}
@@ -0,0 +1,78 @@
+package canosa.monitor;
+
+import canosa.game.ActionType;
+import canosa.game.PieceType;
+import canosa.game.board.BitBoard;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferEventSinkTest {
+    @TempDir Path dir;
+
+    @Test void drainsText() throws Exception {
+        StringWriter text = new StringWriter();
+        RingBufferEventSink sink = RingBufferEventSink.text(text);
+        sink.record(GameEventType.of(ActionType.ATTACK_OPPONENT), PieceType.GOLD_SIREN,
+                BitBoard.index(1, 2), BitBoard.index(2, 2), BitBoard.index(3, 3));
+        sink.record(GameEventType.EASY_NO_PATH_HOME, PieceType.SILVER_SIREN, 2);
+        sink.record(GameEventType.TURN_START, null);
+        sink.close();
+        sink.record(GameEventType.TURN_START, null);  // After close, dropped
+
+        String[] lines = text.toString().split(System.lineSeparator());
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].endsWith(" GOLD_SIREN Siren at [1, 2] bumping siren at [2, 2] to [3, 3]"), lines[0]);
+        assertTrue(lines[1].endsWith(" SILVER_SIREN Found 2 controlled sailors, but none have a path to the island"), lines[1]);
+        assertTrue(lines[2].endsWith(" - Player's turn"), lines[2]);
+        assertEquals(1, sink.getDropped());
+    }
+
+    @Test void drainsBinaryFromManyThreads() throws Exception {
+        Path file = dir.resolve("events.bin");
+        RingBufferEventSink sink = RingBufferEventSink.binary(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE), 64);
+        int threads = 4;
+        int perThread = 5000;
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; ++t){
+            int id = t;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < perThread; ++i)
+                    sink.record(GameEventType.MOVE_SAILOR, PieceType.SILVER_SIREN, id, i, -1);
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer: producers)
+            producer.join();
+        sink.close();
+
+        // Every event is either in the file, in order for its thread, or counted as dropped
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        assertEquals(RingBufferEventSink.MAGIC, buffer.getInt());
+        assertEquals(RingBufferEventSink.VERSION, buffer.getInt());
+        assertEquals(0, buffer.remaining() % RingBufferEventSink.EVENT_SIZE);
+        int written = buffer.remaining() / RingBufferEventSink.EVENT_SIZE;
+        assertEquals(threads * perThread, written + sink.getDropped());
+        int[] last = { -1, -1, -1, -1 };
+        while (buffer.hasRemaining()){
+            buffer.getLong();
+            assertEquals(GameEventType.MOVE_SAILOR.ordinal(), buffer.get());
+            assertEquals(PieceType.SILVER_SIREN.ordinal() + 1, buffer.get());
+            int id = buffer.getShort();
+            int i = buffer.getShort() & 0xFFFF;
+            assertEquals(-1, buffer.getShort());
+            assertTrue(i > last[id]);
+            last[id] = i;
+        }
+    }
+}
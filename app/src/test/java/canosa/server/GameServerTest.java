@@ -0,0 +1,212 @@
+package canosa.server;
+
+import canosa.game.ActionType;
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.Move;
+import canosa.game.PieceType;
+import canosa.game.record.GameRecord;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameServerTest {
+    @Test void playsManyComputerGamesOnASmallPool() throws Exception {
+        SessionManager manager = new SessionManager(2);
+        manager.setMaxActions(100);
+        int games = 200;
+        CountDownLatch over = new CountDownLatch(games);
+        Queue<GameRecord.Result> results = new ConcurrentLinkedQueue<>();  // Checked here, not on the pool
+        SessionListener listener = new SessionListener(){
+            @Override
+            public void actionPlayed(GameSession session, PieceType player, int move){
+            }
+
+            @Override
+            public void gameOver(GameSession session, GameRecord.Result result){
+                results.add(result);
+                over.countDown();
+            }
+        };
+        try {
+            for (int i = 0; i < games; ++i){
+                GameSession session = manager.create("easy", "easy");
+                session.addListener(listener);
+                session.start();
+            }
+            assertTrue(over.await(60, TimeUnit.SECONDS));
+            assertEquals(games, results.size());
+            assertFalse(results.contains(GameRecord.Result.UNFINISHED));
+            assertEquals(0, manager.getGamesInFlight());
+            assertEquals(games, manager.getGamesCompleted());
+            assertEquals(games, manager.getSessions());
+        }
+        finally {
+            manager.shutdown();
+        }
+        assertEquals(0, manager.getSessions());
+    }
+
+    @Test void servesClientAgainstComputer() throws Exception {
+        SessionManager manager = new SessionManager(1);
+        try (GameServer server = new GameServer(manager, 0)){
+            server.start();
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())){
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                List<String> notes = new ArrayList<>();
+
+                out.println("NEW human nobody");
+                assertTrue(reply(in, notes).startsWith("ERR Unknown player nobody"));
+                out.println("NEW human easy");
+                String id = reply(in, notes).substring("OK ".length());
+
+                // The client plays gold, which moves first with one action
+                Game game = new Game();
+                game.init();
+                int[] moves = new int[GameEngine.MAX_MOVES];
+                GameEngine.generateLegalMoves(game, moves);
+                int move = moves[0];
+                assertNotEquals(ActionType.ATTACK_OPPONENT, Move.type(move));
+                out.println("MOVE " + id + " " + Move.source(move) + " " + Move.target(move));
+                assertEquals("OK", reply(in, notes));
+                out.println("MOVE " + id + " " + Move.source(move) + " " + Move.target(move));
+                assertTrue(reply(in, notes).startsWith("ERR"));
+
+                // Then silver's two actions arrive
+                while (notes.size() < 3)
+                    notes.add(in.readLine());
+                assertEquals("MOVED " + id + " GOLD_SIREN " + Move.source(move) + " " + Move.target(move) + " -1", notes.get(0));
+                assertTrue(notes.get(1).startsWith("MOVED " + id + " SILVER_SIREN "), notes.get(1));
+                assertTrue(notes.get(2).startsWith("MOVED " + id + " SILVER_SIREN "), notes.get(2));
+
+                out.println("STATE " + id);
+                assertTrue(reply(in, notes).startsWith("STATE " + id + " UNFINISHED GOLD_SIREN 3 0 0 "));
+                out.println("STATS");
+                assertEquals("STATS 1 1 0 0", reply(in, notes));
+                out.println("BOGUS");
+                assertEquals("ERR Unknown request BOGUS", reply(in, notes));
+
+                out.println("QUIT");
+                assertNull(in.readLine());
+            }
+            for (int i = 0; i < 100 && manager.getSessions() > 0; ++i)
+                Thread.sleep(10);
+            assertEquals(0, manager.getSessions());
+            assertEquals(0, manager.getGamesInFlight());
+        }
+        finally {
+            manager.shutdown();
+        }
+    }
+
+    @Test void onlyTheCreatorPlaysOrClosesASession() throws Exception {
+        SessionManager manager = new SessionManager(1);
+        try (GameServer server = new GameServer(manager, 0)){
+            server.start();
+            try (Socket owner = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                    Socket other = new Socket(InetAddress.getLoopbackAddress(), server.getPort())){
+                PrintWriter ownerOut = new PrintWriter(owner.getOutputStream(), true, StandardCharsets.US_ASCII);
+                BufferedReader ownerIn = new BufferedReader(new InputStreamReader(owner.getInputStream(), StandardCharsets.US_ASCII));
+                PrintWriter otherOut = new PrintWriter(other.getOutputStream(), true, StandardCharsets.US_ASCII);
+                BufferedReader otherIn = new BufferedReader(new InputStreamReader(other.getInputStream(), StandardCharsets.US_ASCII));
+                List<String> notes = new ArrayList<>();
+                ownerOut.println("NEW human easy");
+                String id = reply(ownerIn, notes).substring("OK ".length());
+
+                Game game = new Game();
+                game.init();
+                int[] moves = new int[GameEngine.MAX_MOVES];
+                GameEngine.generateLegalMoves(game, moves);
+                otherOut.println("MOVE " + id + " " + Move.source(moves[0]) + " " + Move.target(moves[0]));
+                assertEquals("ERR Session " + id + " belongs to another connection", reply(otherIn, notes));
+                otherOut.println("CLOSE " + id);
+                assertEquals("ERR Session " + id + " belongs to another connection", reply(otherIn, notes));
+                otherOut.println("STATE " + id);
+                assertTrue(reply(otherIn, notes).startsWith("STATE " + id + " UNFINISHED "));
+                assertEquals(1, manager.getSessions());
+
+                ownerOut.println("CLOSE " + id);
+                assertEquals("OK", reply(ownerIn, notes));
+                assertEquals(0, manager.getSessions());
+            }
+        }
+        finally {
+            manager.shutdown();
+        }
+    }
+
+    @Test void spectatorFollowsGame() throws Exception {
+        SessionManager manager = new SessionManager(1);
+        manager.setMaxActions(60);
+        try (GameServer server = new GameServer(manager, 0)){
+            server.start();
+            Socket player = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+            Socket spectator = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+            PrintWriter out = new PrintWriter(player.getOutputStream(), true, StandardCharsets.US_ASCII);
+            BufferedReader in = new BufferedReader(new InputStreamReader(player.getInputStream(), StandardCharsets.US_ASCII));
+            List<String> notes = new ArrayList<>();
+            out.println("NEW easy easy");
+            String id = reply(in, notes).substring("OK ".length());
+
+            PrintWriter watch = new PrintWriter(spectator.getOutputStream(), true, StandardCharsets.US_ASCII);
+            DataInputStream frames = new DataInputStream(spectator.getInputStream());
+            watch.println("WATCH " + id);
+            assertEquals('O', frames.read());
+            assertEquals('K', frames.read());
+            assertEquals('\n', frames.read());
+
+            // However far the game got before the spectator joined, the frames start with a keyframe
+            SpectatorBoard board = new SpectatorBoard();
+            while (!board.isOver()){
+                int length = frames.readUnsignedShort();
+                ByteBuffer frame = ByteBuffer.allocate(2 + length).putShort((short) length);
+                frames.readFully(frame.array(), 2, length);
+                assertTrue(board.apply(frame.rewind()));
+            }
+            assertTrue(board.isSynced());
+
+            String over;
+            do {
+                over = in.readLine();
+            } while (!over.startsWith("OVER "));
+            assertEquals("OVER " + id + " " + board.getResult(), over);
+            out.println("STATE " + id);
+            String[] state = reply(in, notes).split(" ");
+            assertEquals(board.getSequence(), Integer.parseInt(state[4]));
+            assertEquals(board.getGoldSailorsScored(), Integer.parseInt(state[5]));
+            assertEquals(board.getSilverSailorsScored(), Integer.parseInt(state[6]));
+            player.close();
+            spectator.close();
+        }
+        finally {
+            manager.shutdown();
+        }
+    }
+
+    /**
+     * @return the next line that is not a notification, which are added to notes
+     */
+    private static String reply(BufferedReader in, List<String> notes) throws Exception {
+        while (true){
+            String line = in.readLine();
+            assertNotNull(line);
+            if (!line.startsWith("MOVED ") && !line.startsWith("OVER "))
+                return line;
+            notes.add(line);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package canosa.server;
+
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import canosa.game.board.BitBoard;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpectatorBroadcastTest {
+    @Test void deltasKeepSpectatorsInSync(){
+        Game game = new Game();
+        game.init();
+        FrameEncoder encoder = new FrameEncoder();
+        SpectatorBoard early = new SpectatorBoard();
+        SpectatorBoard late = new SpectatorBoard();  // Joins after action 5 without a keyframe of its own
+        assertTrue(early.apply(encoder.keyframe(game, 0)));
+        assertMirrors(game, early);
+
+        SplittableRandom random = new SplittableRandom(7);
+        int[] moves = new int[GameEngine.MAX_MOVES];
+        long deltaBytes = 0;
+        int deltas = 0;
+        for (int sequence = 1; sequence <= 200 && !GameEngine.isGameOver(game); ++sequence){
+            int count = GameEngine.generateLegalMoves(game, moves);
+            if (count == 0)
+                break;
+            game.makeMove(moves[random.nextInt(count)]);
+            boolean keyframe = sequence % SpectatorBroadcast.KEYFRAME_INTERVAL == 0;
+            ByteBuffer frame = keyframe? encoder.keyframe(game, sequence): encoder.delta(game, sequence);
+            if (!keyframe){
+                deltaBytes += frame.remaining();
+                ++deltas;
+            }
+            assertTrue(early.apply(frame.duplicate()));
+            assertMirrors(game, early);
+
+            if (sequence > 5){
+                assertEquals(sequence >= SpectatorBroadcast.KEYFRAME_INTERVAL, late.apply(frame.duplicate()));
+                if (late.isSynced())
+                    assertMirrors(game, late);
+            }
+        }
+        assertTrue(late.isSynced());
+        assertTrue(deltaBytes < deltas * FrameEncoder.KEYFRAME_SIZE / 4, "Deltas average " + deltaBytes / deltas + " bytes");
+    }
+
+    @Test void slowSpectatorSkipsToNextKeyframe(){
+        OutputQueue queue = new OutputQueue(100);
+        assertTrue(queue.offer(ByteBuffer.allocate(40), false));
+        assertTrue(queue.offer(ByteBuffer.allocate(40), false));
+        assertFalse(queue.offer(ByteBuffer.allocate(40), false));
+
+        // Written out, but the deltas in between are still no use without a keyframe
+        ByteBuffer[] batch = new ByteBuffer[8];
+        int count = queue.peek(batch);
+        assertEquals(2, count);
+        for (int i = 0; i < count; ++i)
+            batch[i].position(batch[i].limit());
+        queue.removeWritten();
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.getBytes());
+        assertFalse(queue.offer(ByteBuffer.allocate(40), false));
+        assertTrue(queue.offer(ByteBuffer.allocate(80), true));
+        assertFalse(queue.offer(ByteBuffer.allocate(40), false));  // Full again
+        assertEquals(3, queue.getDropped());
+
+        // The end of the game still gets through
+        queue.end(ByteBuffer.allocate(8));
+        assertEquals(2, queue.peek(batch));
+        assertEquals(3, queue.getDropped());
+    }
+
+    @Test void repliesStopPastTheLimit(){
+        OutputQueue queue = new OutputQueue(100);
+        assertTrue(queue.reply(ByteBuffer.allocate(60)));
+        assertTrue(queue.reply(ByteBuffer.allocate(60)));  // Goes over
+        assertFalse(queue.reply(ByteBuffer.allocate(1)));
+        assertEquals(120, queue.getBytes());
+    }
+
+    private static void assertMirrors(Game game, SpectatorBoard board){
+        for (int i = 0; i < BitBoard.CELLS; ++i)
+            assertEquals(FrameEncoder.cellCode(game.getBoard(), i), board.getCellCode(i), "Cell " + i);
+        assertEquals(game.getGoldSailorsScored(), board.getGoldSailorsScored());
+        assertEquals(game.getSilverSailorsScored(), board.getSilverSailorsScored());
+        assertEquals(game.getCurrentPlayer(), board.getCurrentPlayer());
+    }
+}
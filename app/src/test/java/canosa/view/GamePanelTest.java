@@ -0,0 +1,62 @@
+package canosa.view;
+
+import canosa.Model;
+import canosa.game.Action;
+import canosa.game.Game;
+import canosa.game.GameEngine;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GamePanelTest {
+    @Test void dirtyCellsCoverEverythingAnActionChanges() {
+        System.setProperty("java.awt.headless", "true");
+        Model model = new Model();
+        Game game = model.getGame();
+        game.init();
+        List<Rectangle> dirty = new ArrayList<>();
+        GamePanel panel = new GamePanel(model, null){
+            @Override
+            public void repaint(Rectangle r){
+                dirty.add(r);
+            }
+        };
+        panel.setSize(620, 620);
+
+        Random random = new Random(9);
+        BufferedImage screen = paint(panel, null, null);
+        for (int i = 0; i < 200 && !GameEngine.isGameOver(game); ++i){
+            List<Action> actions = GameEngine.generateLegalActions(game);
+            if (actions.isEmpty())
+                break;
+            Action action = actions.get(random.nextInt(actions.size()));
+            game.makeMove(action);
+            dirty.clear();
+            panel.refresh(action);
+
+            // Repainting only the dirty cells over the last frame gives the same picture as painting it all
+            for (Rectangle r: dirty)
+                screen = paint(panel, screen, r);
+            assertArrayEquals(pixels(paint(panel, null, null)), pixels(screen), "after action " + i);
+        }
+    }
+
+    private static int[] pixels(BufferedImage image){
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static BufferedImage paint(GamePanel panel, BufferedImage onto, Rectangle clip){
+        BufferedImage image = onto != null? onto: new BufferedImage(panel.getWidth(), panel.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        if (clip != null)
+            g.setClip(clip);
+        panel.paintComponent(g);
+        g.dispose();
+        return image;
+    }
+}